@@ -15,6 +15,7 @@ public class Constants {
 
     public static final String ATOMIST_ROOT = ".atomist";
     public static final String CLI_CONFIG_NAME = "cli.yml";
+    public static final String CACHE_ROOT = "cache";
     
     public static final String DIVIDER = (SystemUtils.IS_OS_WINDOWS ? ">" : "→");
     public static final String REDIVID = (SystemUtils.IS_OS_WINDOWS ? "<" : "←");
@@ -33,6 +34,13 @@ public class Constants {
     public static final String CATALOG_PATH = "operation/search";
     public static final String CATALOG_URL = "https://api.atomist.com/catalog";
     
+    public static final String DAEMON_PROPERTY = "rug.daemon";
+    public static final String DAEMON_ROOT = "daemon";
+    public static final long DAEMON_IDLE_TIMEOUT = 1000 * 60 * 30;
+
+    public static boolean isDaemon() {
+        return Boolean.getBoolean(DAEMON_PROPERTY);
+    }
     
     public static String cliClient() {
         return ARTIFACT + " " + VersionUtils.readVersion().orElse("0.0.0");
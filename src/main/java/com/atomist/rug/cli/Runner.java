@@ -7,6 +7,7 @@ import com.atomist.rug.cli.command.CommandInfoRegistry;
 import com.atomist.rug.cli.command.CommandUtils;
 import com.atomist.rug.cli.command.ReflectiveCommandRunner;
 import com.atomist.rug.cli.output.Style;
+import com.atomist.rug.cli.utils.Profiler;
 import com.atomist.rug.cli.version.VersionThread;
 import com.atomist.rug.cli.version.VersionUtils;
 import com.atomist.rug.cli.version.VersionUtils.VersionInformation;
@@ -22,7 +23,13 @@ public class Runner {
     }
 
     public void run(String[] args) throws ParseException {
-        
+        System.exit(execute(args));
+    }
+
+    public int execute(String[] args) throws ParseException {
+
+        Profiler.reset();
+
         // Validate the JDK version
         VersionUtils.validateJdkVersion();
         
@@ -53,7 +60,7 @@ public class Runner {
                 printNewVersion(versionThread.getVersion().get());
             }
         }
-        System.exit(returnCode);
+        return returnCode;
     }
 
     private void printNewVersion(String version) {
@@ -1,19 +1,45 @@
 package com.atomist.rug.cli.classloading;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 
+import com.atomist.rug.cli.Constants;
 import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.resolver.ArtifactDescriptor;
 
 public abstract class ClassLoaderFactory {
 
+    // Number of classpaths kept warm by a daemon; each one holds the classes, compiled scripts and
+    // loaded operations of an archive
+    private static final int MAX_CLASSLOADERS = 8;
+
+    // When running as daemon classloaders for identical classpaths are reused so that classes,
+    // compiled scripts and loaded operations stay warm; the least recently used ones get closed
+    private static final Map<List<URL>, ClassLoader> classLoaders = Collections
+            .synchronizedMap(new LinkedHashMap<List<URL>, ClassLoader>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<URL>, ClassLoader> eldest) {
+                    if (size() > MAX_CLASSLOADERS) {
+                        close(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            });
+
     public static void setupClassLoader(ArtifactDescriptor artifact,
             List<ArtifactDescriptor> dependencies) {
         setupClassLoader(artifact, dependencies, null);
@@ -31,18 +57,34 @@ public abstract class ClassLoaderFactory {
         addExtensionsToClasspath(urls);
         addCommandExtensionsToClasspath(artifact, classpathEntryProvider, urls);
 
-        ClassLoader cls = null;
-        if (codeLocation.toString().endsWith("jar")) {
-            // If running from an IDE we need a different classloader hierarchy
-            cls = new DelegatingUrlClassLoader(urls.toArray(new URL[urls.size()]),
-                    Thread.currentThread().getContextClassLoader());
-        }
-        else {
-            cls = new URLClassLoader(urls.toArray(new URL[urls.size()]));
+        ClassLoader cls = (Constants.isDaemon() ? classLoaders.get(urls) : null);
+        if (cls == null) {
+            if (codeLocation.toString().endsWith("jar")) {
+                // If running from an IDE we need a different classloader hierarchy
+                cls = new DelegatingUrlClassLoader(urls.toArray(new URL[urls.size()]),
+                        Thread.currentThread().getContextClassLoader());
+            }
+            else {
+                cls = new URLClassLoader(urls.toArray(new URL[urls.size()]));
+            }
+            if (Constants.isDaemon()) {
+                classLoaders.put(urls, cls);
+            }
         }
         Thread.currentThread().setContextClassLoader(cls);
     }
 
+    private static void close(ClassLoader cls) {
+        if (cls instanceof URLClassLoader) {
+            try {
+                ((URLClassLoader) cls).close();
+            }
+            catch (IOException e) {
+                // Nothing left to do; the loader won't be used again
+            }
+        }
+    }
+
     private static void addCommandExtensionsToClasspath(ArtifactDescriptor artifact,
             ClasspathEntryProvider classpathEntryProvider, List<URL> urls) {
         if (classpathEntryProvider != null) {
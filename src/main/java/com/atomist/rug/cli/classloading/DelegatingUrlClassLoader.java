@@ -8,9 +8,10 @@ import java.util.List;
 class DelegatingUrlClassLoader extends URLClassLoader {
 
     // Nashorn and some of the scripting classes need to come from the system classloader;
-    // everything else we need to isolate and not delegate to the parent class loader
+    // everything else we need to isolate and not delegate to the parent class loader. The
+    // profiler is shared so that phases recorded by commands can be reported by the CLI
     private static final String[] DEFAULT_DELEGATING_PACKAGES = new String[] { "org.slf4j",
-            "jdk.nashorn", "javax.scripting" };
+            "jdk.nashorn", "javax.scripting", "com.atomist.rug.cli.utils.Profiler" };
 
     private List<String> delegatingPackages = Arrays.asList(DEFAULT_DELEGATING_PACKAGES);
 
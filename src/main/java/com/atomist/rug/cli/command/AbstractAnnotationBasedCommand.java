@@ -2,20 +2,13 @@ package com.atomist.rug.cli.command;
 
 import static scala.collection.JavaConversions.asScalaBuffer;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
 import org.apache.commons.cli.CommandLine;
-import org.springframework.core.annotation.AnnotationUtils;
-import org.springframework.util.ReflectionUtils;
 
 import com.atomist.param.ParameterValue;
 import com.atomist.param.SimpleParameterValue;
@@ -24,8 +17,9 @@ import com.atomist.project.SimpleProjectOperationArguments;
 import com.atomist.project.archive.Operations;
 import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.cli.command.annotation.Argument;
-import com.atomist.rug.cli.command.annotation.Option;
-import com.atomist.rug.cli.command.annotation.Validator;
+import com.atomist.rug.cli.command.index.CommandBinding;
+import com.atomist.rug.cli.command.index.CommandIndexUtils;
+import com.atomist.rug.cli.command.index.ParameterBinding;
 import com.atomist.rug.cli.settings.Settings;
 import com.atomist.rug.cli.settings.SettingsReader;
 import com.atomist.rug.cli.utils.StringUtils;
@@ -37,33 +31,23 @@ import com.atomist.source.ArtifactSource;
 public abstract class AbstractAnnotationBasedCommand
         extends AbstractCompilingAndOperationLoadingCommand {
 
-    private <A extends Annotation> Optional<Method> annotatedMethodWith(Class<A> annotationClass) {
-        return Arrays.stream(ReflectionUtils.getAllDeclaredMethods(getClass()))
-                .filter(m -> AnnotationUtils.getAnnotation(m, annotationClass) != null).findFirst();
-    }
-
-    private void invokeMethod(Method method, List<Object> arguments) {
+    private void invokeMethod(CommandBinding.Invoker invoker, List<Object> arguments) {
         try {
-            method.invoke(this, (Object[]) arguments.toArray(new Object[arguments.size()]));
+            invoker.invoke(this, (Object[]) arguments.toArray(new Object[arguments.size()]));
         }
-        catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new RunnerException(e);
+        catch (RuntimeException e) {
+            throw e;
         }
-    }
-
-    private void invokeValidateMethod(List<Object> arguments) {
-        Optional<Method> validateMethod = annotatedMethodWith(Validator.class);
-
-        if (validateMethod.isPresent()) {
-            invokeMethod(validateMethod.get(), arguments);
+        catch (Exception e) {
+            throw new RunnerException(e);
         }
     }
 
-    private Object prepareArgumentMethodArgument(CommandLine commandLine, Parameter p,
-            Argument argument) {
+    private Object prepareArgumentMethodArgument(CommandLine commandLine,
+            ParameterBinding argument) {
         Object argumentValue = null;
         if (argument.start() != -1) {
-            if (p.getType().equals(ProjectOperationArguments.class)) {
+            if (argument.type().equals(ProjectOperationArguments.class)) {
                 List<ParameterValue> pvs = new ArrayList<>();
                 if (argument.start() < commandLine.getArgList().size()) {
 
@@ -104,39 +88,37 @@ public abstract class AbstractAnnotationBasedCommand
         return new SimpleProjectOperationArguments(name, asScalaBuffer(pvs));
     }
 
-    private List<Object> prepareMethodArguments(Method method, OperationsAndHandlers operations,
-            ArtifactDescriptor artifact, ArtifactSource source, CommandLine commandLine) {
+    private List<Object> prepareMethodArguments(CommandBinding binding,
+            OperationsAndHandlers operations, ArtifactDescriptor artifact, ArtifactSource source,
+            CommandLine commandLine) {
 
-        List<Object> arguments = Arrays.stream(method.getParameters()).map(p -> {
+        List<Object> arguments = binding.parameters().stream().map(p -> {
 
-            Argument argument = AnnotationUtils.getAnnotation(p, Argument.class);
-            Option option = AnnotationUtils.getAnnotation(p, Option.class);
-
-            if (argument != null) {
-                return prepareArgumentMethodArgument(commandLine, p, argument);
+            if (p.kind() == ParameterBinding.Kind.ARGUMENT) {
+                return prepareArgumentMethodArgument(commandLine, p);
             }
-            else if (option != null) {
-                return prepareOptionMethodArgument(commandLine, p, option);
+            else if (p.kind() == ParameterBinding.Kind.OPTION) {
+                return prepareOptionMethodArgument(commandLine, p);
             }
-            else if (p.getType().equals(Operations.class)) {
+            else if (p.type().equals(Operations.class)) {
                 return operations.operations();
             }
-            else if (p.getType().equals(Handlers.class)) {
+            else if (p.type().equals(Handlers.class)) {
                 return operations.handlers();
             }
-            else if (p.getType().equals(OperationsAndHandlers.class)) {
+            else if (p.type().equals(OperationsAndHandlers.class)) {
                 return operations;
             }
-            else if (p.getType().equals(ArtifactDescriptor.class)) {
+            else if (p.type().equals(ArtifactDescriptor.class)) {
                 return artifact;
             }
-            else if (p.getType().equals(ArtifactSource.class)) {
+            else if (p.type().equals(ArtifactSource.class)) {
                 return source;
             }
-            else if (p.getType().equals(CommandLine.class)) {
+            else if (p.type().equals(CommandLine.class)) {
                 return commandLine;
             }
-            else if (p.getType().equals(Settings.class)) {
+            else if (p.type().equals(Settings.class)) {
                 return new SettingsReader().read();
             }
             return null;
@@ -145,20 +127,20 @@ public abstract class AbstractAnnotationBasedCommand
         return arguments;
     }
 
-    private Object prepareOptionMethodArgument(CommandLine commandLine, Parameter p,
-            Option option) {
-        if (p.getType().equals(boolean.class)) {
-            return commandLine.hasOption(option.value());
+    private Object prepareOptionMethodArgument(CommandLine commandLine,
+            ParameterBinding option) {
+        if (option.type().equals(boolean.class)) {
+            return commandLine.hasOption(option.option());
         }
-        else if (p.getType().equals(Properties.class)) {
-            return commandLine.getOptionProperties(option.value());
+        else if (option.type().equals(Properties.class)) {
+            return commandLine.getOptionProperties(option.option());
         }
-        else if (p.getType().equals(ProjectOperationArguments.class)) {
-            return prepareArguments(commandLine.getOptionProperties(option.value()),
-                    option.value());
+        else if (option.type().equals(ProjectOperationArguments.class)) {
+            return prepareArguments(commandLine.getOptionProperties(option.option()),
+                    option.option());
         }
         else {
-            return StringUtils.expandEnvironmentVars(commandLine.getOptionValue(option.value()));
+            return StringUtils.expandEnvironmentVars(commandLine.getOptionValue(option.option()));
         }
     }
 
@@ -166,14 +148,18 @@ public abstract class AbstractAnnotationBasedCommand
     protected void run(OperationsAndHandlers operations, ArtifactDescriptor artifact,
             ArtifactSource source, CommandLine commandLine) {
 
-        Optional<Method> method = annotatedMethodWith(com.atomist.rug.cli.command.annotation.Command.class);
+        // Bindings are generated at build time; only falls back to reflection if the index
+        // is missing
+        Optional<CommandBinding> binding = CommandIndexUtils.binding(getClass());
 
-        if (method.isPresent()) {
-            List<Object> arguments = prepareMethodArguments(method.get(), operations, artifact,
+        if (binding.isPresent()) {
+            List<Object> arguments = prepareMethodArguments(binding.get(), operations, artifact,
                     source, commandLine);
 
-            invokeValidateMethod(arguments);
-            invokeMethod(method.get(), arguments);
+            if (binding.get().validator().isPresent()) {
+                invokeMethod(binding.get().validator().get(), arguments);
+            }
+            invokeMethod(binding.get().command(), arguments);
         }
         else {
             throw new CommandException("Command class does not have an @Command-annotated method.");
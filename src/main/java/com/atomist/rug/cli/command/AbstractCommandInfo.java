@@ -30,6 +30,9 @@ public abstract class AbstractCommandInfo implements CommandInfo {
         options.addOption("q", "quiet", false, "Do not display progress messages");
         options.addOption("o", "offline", false, "Use only downloaded archives");
         options.addOption("t", "timer", false, "Print timing information");
+        options.addOption(Option.builder().longOpt("trace").argName("FILE").hasArg(true)
+                .required(false).desc("Write timing information as Chrome trace to FILE")
+                .build());
         options.addOption("r", "resolver-report", false, "Print dependency tree");
         options.addOption("u", "update", false, "Update dependency resolution");
         return options;
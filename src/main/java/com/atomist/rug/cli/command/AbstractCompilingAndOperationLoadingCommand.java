@@ -6,6 +6,8 @@ import java.io.File;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.cli.CommandLine;
 import org.springframework.util.StringUtils;
@@ -15,8 +17,12 @@ import com.atomist.plan.TreeMaterializer;
 import com.atomist.project.archive.Operations;
 import com.atomist.rug.BadRugException;
 import com.atomist.rug.RugRuntimeException;
+import com.atomist.rug.cli.Constants;
 import com.atomist.rug.cli.Log;
+import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.cli.command.utils.ArtifactSourceUtils;
+import com.atomist.rug.cli.command.utils.IncrementalTypeScriptCompiler;
+import com.atomist.rug.cli.command.utils.ScriptCacheUtils;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.settings.SettingsReader;
 import com.atomist.rug.cli.tree.ArtifactSourceTreeCreator;
@@ -24,6 +30,7 @@ import com.atomist.rug.cli.tree.LogVisitor;
 import com.atomist.rug.cli.utils.ArtifactDescriptorUtils;
 import com.atomist.rug.cli.utils.CommandLineOptions;
 import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.Profiler;
 import com.atomist.rug.compiler.Compiler;
 import com.atomist.rug.compiler.ServiceLoaderCompilerRegistry;
 import com.atomist.rug.compiler.typescript.TypeScriptCompiler;
@@ -46,25 +53,117 @@ import com.atomist.tree.pathexpression.PathExpression;
 
 public abstract class AbstractCompilingAndOperationLoadingCommand extends AbstractCommand {
 
+    // Archives loaded into this classloader; only used when running as daemon as this class
+    // gets loaded into a new classloader for every invocation otherwise
+    private static final Map<URI, LoadedArchive> loadedArchives = new ConcurrentHashMap<>();
+
     protected Log log = new Log(getClass());
 
+    private URI[] uri;
+    private ArtifactDescriptor artifact;
+    private volatile LoadedArchive archive;
+
     @Override
     protected final void run(URI[] uri, ArtifactDescriptor artifact, CommandLine commandLine) {
-        OperationsAndHandlers operationsAndHandlers = null;
+        if (artifact == null || artifact.extension() != Extension.ZIP
+                || !registry.findCommand(commandLine).loadArtifactSource()) {
+            runCommand(null, artifact, null, commandLine);
+            return;
+        }
+        // The code cache is configured through system properties; set them once for the whole
+        // command so that concurrent loads by worker threads don't need to touch them
+        ScriptCacheUtils.withCodeCache(artifact, () -> {
+            loadAndRun(uri, artifact, commandLine);
+            return null;
+        });
+    }
+
+    private void loadAndRun(URI[] uri, ArtifactDescriptor artifact, CommandLine commandLine) {
+        LoadedArchive archive = null;
+        if (isCacheable(artifact) && loadedArchives.containsKey(artifact.uri())) {
+            archive = loadedArchives.get(artifact.uri());
+            printArtifactSource(artifact, archive.source);
+        }
+        else {
+            archive = loadArchive(uri, artifact);
+            if (isCacheable(artifact)) {
+                loadedArchives.put(artifact.uri(), archive);
+            }
+        }
+
+        this.uri = uri;
+        this.artifact = artifact;
+        this.archive = archive;
+
+        OperationsAndHandlers operations = archive.operations;
+        CommandEventListenerRegistry.raiseEvent((c) -> c.operationsLoaded(operations));
+
+        runCommand(operations, artifact, archive.source, commandLine);
+    }
+
+    private void runCommand(OperationsAndHandlers operationsAndHandlers,
+            ArtifactDescriptor artifact, ArtifactSource source, CommandLine commandLine) {
+        try (Profiler.Phase phase = Profiler.start("Execute command body")) {
+            run(operationsAndHandlers, artifact, source, commandLine);
+        }
+    }
+
+    // Loads another, independent copy of the operations from the already compiled archive
+    // sources; for commands that must not share script state between units of work. Safe to call
+    // from several threads at once
+    protected OperationsAndHandlers reloadOperationsAndHandlers() {
+        LoadedArchive archive = this.archive;
+        if (archive == null) {
+            return null;
+        }
+        try (Profiler.Phase phase = Profiler.start("Reload operations and handlers")) {
+            return doLoadOperationsAndHandlers(artifact, archive.source,
+                    createOperationsLoader(uri));
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RunnerException(e);
+        }
+    }
+
+    // Operations for worker threads, loaded once per thread; for units of work that may share
+    // script state but must not run concurrently in the same script engine
+    protected ThreadLocal<OperationsAndHandlers> workerOperationsAndHandlers() {
+        return ThreadLocal.withInitial(this::reloadOperationsAndHandlers);
+    }
+
+    // Reads the sources of the archive again, recompiles what changed and loads the operations
+    // from the result; for commands that keep running while a local archive is being worked on
+    protected synchronized OperationsAndHandlers recompileOperationsAndHandlers() {
+        if (archive == null) {
+            return null;
+        }
+        archive = loadArchive(uri, artifact);
+        return archive.operations;
+    }
+
+    private boolean isCacheable(ArtifactDescriptor artifact) {
+        // Local archives are subject to change between invocations
+        return Constants.isDaemon() && !(artifact instanceof LocalArtifactDescriptor)
+                && !CommandLineOptions.hasOption("u");
+    }
+
+    private LoadedArchive loadArchive(URI[] uri, ArtifactDescriptor artifact) {
         ArtifactSource source = null;
-        if (artifact != null && artifact.extension() == Extension.ZIP
-                && registry.findCommand(commandLine).loadArtifactSource()) {
+        try (Profiler.Phase phase = Profiler.start("Load archive sources")) {
             source = ArtifactSourceUtils.createArtifactSource(artifact);
-            printArtifactSource(artifact, source);
+        }
+        printArtifactSource(artifact, source);
+        try (Profiler.Phase phase = Profiler.start("Compile script sources")) {
             source = compile(artifact, source);
+        }
+        try (Profiler.Phase phase = Profiler.start("Load operations and handlers")) {
             OperationsAndHandlers operations = loadOperationsAndHandlers(artifact, source,
                     createOperationsLoader(uri));
-
-            CommandEventListenerRegistry.raiseEvent((c) -> c.operationsLoaded(operations));
-
-            operationsAndHandlers = operations;
+            return new LoadedArchive(source, operations);
         }
-        run(operationsAndHandlers, artifact, source, commandLine);
     }
 
     private void printArtifactSource(ArtifactDescriptor artifact, ArtifactSource source) {
@@ -93,13 +192,22 @@ public abstract class AbstractCompilingAndOperationLoadingCommand extends Abstra
                 return new ProgressReportingOperationRunner<ArtifactSource>(
                         "Processing script sources").run(indicator -> {
                             ArtifactSource compiledSource = source;
-                            for (Compiler compiler : compilers) {
-                                compiler = wrapCompiler(compiler, root);
+                            for (Compiler c : compilers) {
+                                Compiler compiler = wrapCompiler(c, root);
                                 indicator.report(String.format("Invoking %s on %s script sources",
                                         compiler.name(),
                                         StringUtils.collectionToCommaDelimitedString(
                                                 compiler.extensions())));
-                                ArtifactSource cs = compiler.compile(compiledSource);
+                                ArtifactSource cs = null;
+                                if (compiler instanceof TypeScriptCompiler) {
+                                    // Only recompile changed sources and their dependents
+                                    cs = new IncrementalTypeScriptCompiler(
+                                            () -> wrapCompiler(c, root), new File(root))
+                                                    .compile(compiledSource, indicator);
+                                }
+                                else {
+                                    cs = compiler.compile(compiledSource);
+                                }
                                 Deltas deltas = cs.deltaFrom(compiledSource);
                                 if (deltas.empty()) {
                                     indicator.report("  No files modified");
@@ -199,4 +307,15 @@ public abstract class AbstractCompilingAndOperationLoadingCommand extends Abstra
     protected abstract void run(OperationsAndHandlers operationsAndHandlers,
             ArtifactDescriptor artifact, ArtifactSource source, CommandLine commandLine);
 
+    private static class LoadedArchive {
+
+        private final ArtifactSource source;
+        private final OperationsAndHandlers operations;
+
+        public LoadedArchive(ArtifactSource source, OperationsAndHandlers operations) {
+            this.source = source;
+            this.operations = operations;
+        }
+    }
+
 }
@@ -1,92 +1,96 @@
 package com.atomist.rug.cli.command;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.command.utils.DeltaDiffer;
+import com.atomist.rug.cli.command.utils.DeltaTransaction;
+import com.atomist.rug.cli.command.utils.ProjectStats;
 import com.atomist.rug.cli.output.Style;
 import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.Profiler;
+import com.atomist.rug.cli.utils.StringUtils;
 import com.atomist.source.ArtifactSource;
-import com.atomist.source.ByteArrayFileArtifact;
 import com.atomist.source.Delta;
 import com.atomist.source.FileAdditionDelta;
-import com.atomist.source.FileArtifact;
 import com.atomist.source.FileDeletionDelta;
 import com.atomist.source.FileUpdateDelta;
-import com.atomist.source.file.FileSystemArtifactSourceWriter;
-
-import difflib.DiffUtils;
 
 public abstract class AbstractDeltaHandlingCommand extends AbstractParameterizedCommand {
 
+    // With a patch file the project stays untouched; all diffs go into that file instead
     protected void iterateDeltas(Collection<Delta> deltas, ArtifactSource source,
-            ArtifactSource resultSource, File root,
-            boolean dryRun) {
-        FileSystemArtifactSourceWriter writer = new FileSystemArtifactSourceWriter();
-        Delta lastDelta = deltas.stream().reduce((d1, d2) -> d2).orElse(null);
+            ArtifactSource resultSource, File root, boolean dryRun, File patch,
+            ProjectStats stats) {
+        try (Profiler.Phase phase = Profiler
+                .start(dryRun || patch != null ? "Diff changes" : "Write changes")) {
+            if (patch != null) {
+                writePatch(deltas, source, patch);
+            }
+            else if (dryRun) {
+                new DeltaDiffer().diff(deltas, source, d -> logPatch(d.lines()));
+            }
+            else {
+                writeAndLogDeltas(deltas, root, stats);
+            }
+        }
+    }
 
-        deltas.forEach(d -> {
+    private void writeAndLogDeltas(Collection<Delta> deltas, File root, ProjectStats stats) {
+        List<Delta> applied = new DeltaTransaction(root).apply(deltas);
+        stats.written(applied);
+        Delta lastDelta = applied.stream().reduce((d1, d2) -> d2).orElse(null);
+        applied.forEach(d -> {
             if (d instanceof FileAdditionDelta) {
-                FileAdditionDelta delta = ((FileAdditionDelta) d);
-                if (!dryRun) {
-                    writer.write(delta.newFile(), root);
-                    logOperation("created", null, delta.newFile().path(), root,
-                            delta.equals(lastDelta));
-                }
-                else if (!(delta.newFile() instanceof ByteArrayFileArtifact)) {
-                    scala.Option<FileArtifact> opt = source.findFile(delta.newFile().path());
-                    String existingContent = "";
-                    if (opt.isDefined()) {
-                        existingContent = opt.get().content();
-                    }
-                    String newContent = delta.newFile().content();
-                    logPatch(delta.newFile().path(), delta.newFile().path(), existingContent, newContent);
-                }
+                logOperation("created", null, ((FileAdditionDelta) d).newFile().path(), stats,
+                        d.equals(lastDelta));
             }
             else if (d instanceof FileUpdateDelta) {
                 FileUpdateDelta delta = ((FileUpdateDelta) d);
-                if (!dryRun) {
-                    File file = new File(root, delta.oldFile().path());
-                    file.delete();
-                    writer.write(delta.updatedFile(), root);
-                    logOperation("updated", delta.oldFile().path(), delta.updatedFile().path(),
-                            root, delta.equals(lastDelta));
-                }
-                else if (!(delta.updatedFile() instanceof ByteArrayFileArtifact)) {
-                    scala.Option<FileArtifact> opt = source.findFile(delta.updatedFile().path());
-                    String existingContent = "";
-                    if (opt.isDefined()) {
-                        existingContent = opt.get().content();
-                    }
-                    String newContent = delta.updatedFile().content();
-                    logPatch(delta.path(), delta.updatedFile().path(), existingContent, newContent);
-                }
+                logOperation("updated", delta.oldFile().path(), delta.updatedFile().path(),
+                        stats, d.equals(lastDelta));
             }
             else if (d instanceof FileDeletionDelta) {
-                FileDeletionDelta delta = (FileDeletionDelta) d;
-                if (!dryRun) {
-                    File file = new File(root, d.path());
-                    file.delete();
-                    logOperation("deleted", d.path(), null, root,
-                            delta.equals(lastDelta));
-                }
-                else if (!(delta.oldFile() instanceof ByteArrayFileArtifact)) {
-                    scala.Option<FileArtifact> opt = source.findFile(delta.oldFile().path());
-                    String existingContent = "";
-                    if (opt.isDefined()) {
-                        existingContent = opt.get().content();
-                    }
-                    String newContent = "";
-                    logPatch(delta.oldFile().path(), "", existingContent, newContent);
-                }
+                logOperation("deleted", d.path(), null, stats, d.equals(lastDelta));
             }
         });
     }
 
-    protected void logOperation(String operation, String oldPath, String newPath, File root,
-            boolean last) {
+    private void writePatch(Collection<Delta> deltas, ArtifactSource source, File patch) {
+        if (patch.getAbsoluteFile().getParentFile() != null) {
+            patch.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        try (PrintWriter writer = new PrintWriter(
+                Files.newBufferedWriter(patch.toPath(), StandardCharsets.UTF_8))) {
+            List<String> files = new ArrayList<>();
+            new DeltaDiffer().diff(deltas, source, d -> {
+                d.patchLines().forEach(l -> writer.print(l + "\n"));
+                files.add(d.path());
+            });
+            log.info("  Wrote changes to %s %s into %s", files.size(),
+                    StringUtils.puralize("file", files), FileUtils.relativize(patch));
+        }
+        catch (IOException e) {
+            throw new CommandException(String.format("Failed to write patch file %s: %s",
+                    patch.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    // Writes the changes without reporting them; for callers producing their own summary.
+    // Returns the number of files actually changed.
+    protected int writeDeltas(Collection<Delta> deltas, File root) {
+        return new DeltaTransaction(root).apply(deltas).size();
+    }
+
+    protected void logOperation(String operation, String oldPath, String newPath,
+            ProjectStats stats, boolean last) {
         oldPath = (oldPath == null ? "" : oldPath);
         newPath = (newPath == null ? "" : newPath);
 
@@ -107,20 +111,14 @@ public abstract class AbstractDeltaHandlingCommand extends AbstractParameterized
         else {
             sb.append(Style.yellow(oldPath)).append(" ").append(operation);
         }
-        if (root != null) {
-            File file = new File(root, newPath);
-            sb.append(" (").append(FileUtils.sizeOf(file)).append(")");
+        if (stats != null && stats.size(newPath) != null) {
+            sb.append(" (").append(stats.size(newPath)).append(")");
         }
 
         log.info(sb.toString());
     }
 
-    protected void logPatch(String oldPath, String newPath, String existingContent,
-            String newContent) {
-        difflib.Patch<String> patch = DiffUtils.diff(Arrays.asList(existingContent.split("\n")),
-                Arrays.asList(newContent.split("\n")));
-        List<String> diffs = DiffUtils.generateUnifiedDiff(oldPath, newPath,
-                Arrays.asList(existingContent.split("\n")), patch, 2);
+    protected void logPatch(List<String> diffs) {
         diffs.forEach(diff -> {
             if (diff.startsWith("+")) {
                 log.info("  " + Style.green(diff));
@@ -7,7 +7,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.text.WordUtils;
 import org.jline.reader.LineReader;
@@ -146,6 +148,37 @@ public abstract class AbstractParameterizedCommand extends AbstractAnnotationBas
         return arguments;
     }
 
+    // Validates many sets of arguments, eg. rows of a parameter file, and reports the problems of
+    // all of them before failing
+    protected void validate(ArtifactDescriptor artifact, ProjectOperation operation,
+            Map<String, ProjectOperationArguments> arguments) {
+        Map<String, String> problems = new LinkedHashMap<>();
+        arguments.forEach((label, args) -> {
+            Collection<ParameterValue> invalid = asJavaCollection(
+                    operation.findInvalidParameterValues(args));
+            Collection<Parameter> missing = asJavaCollection(
+                    operation.findMissingParameters(args));
+            List<String> messages = new ArrayList<>();
+            missing.forEach(p -> messages.add("missing " + Style.yellow(p.getName())));
+            invalid.forEach(p -> messages.add(
+                    "invalid " + Style.yellow(p.getName()) + " = " + p.getValue()));
+            if (!messages.isEmpty()) {
+                problems.put(label, String.join(", ", messages));
+            }
+        });
+
+        if (!problems.isEmpty()) {
+            log.newline();
+            log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Invalid parameter %s",
+                    StringUtils.puralize("set", problems.keySet())));
+            problems.forEach((label, message) -> log.info("  %s: %s", label, message));
+            throw new CommandException(String.format(
+                    "Missing and/or invalid parameters for %s in %s of %s parameter sets",
+                    StringUtils.stripName(operation.name(), artifact), problems.size(),
+                    arguments.size()));
+        }
+    }
+
     protected ProjectOperationArguments mergeParameters(ProjectOperationArguments arguments,
             ParameterValue... pv) {
         List<ParameterValue> pvs = new ArrayList<>();
@@ -15,6 +15,7 @@ import org.apache.commons.cli.ParseException;
 import com.atomist.rug.cli.command.utils.ParseExceptionProcessor;
 import com.atomist.rug.cli.utils.CommandLineOptions;
 import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.Profiler;
 
 public abstract class CommandUtils {
 
@@ -47,7 +48,7 @@ public abstract class CommandUtils {
     }
 
     public static CommandLine parseCommandline(String[] args, CommandInfoRegistry registry) {
-        try {
+        try (Profiler.Phase phase = Profiler.start("Parse command line")) {
             CommandLineParser parser = new DefaultParser();
             CommandLine commandLine = parser
                     .parse(registry.allOptions(), args);
@@ -7,15 +7,20 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.lang3.StringUtils;
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.LineReader;
 import org.jline.reader.UserInterruptException;
 import org.jline.reader.impl.LineReaderImpl;
 import org.springframework.boot.loader.tools.RunProcess;
 
+import com.atomist.rug.cli.Constants;
 import com.atomist.rug.cli.Log;
 import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.cli.classloading.ClassLoaderFactory;
@@ -28,8 +33,16 @@ import com.atomist.rug.cli.command.utils.CommandHelpFormatter;
 import com.atomist.rug.cli.command.utils.DependencyResolverExceptionProcessor;
 import com.atomist.rug.cli.output.ProgressReporter;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
+import com.atomist.rug.cli.output.Style;
+import com.atomist.rug.cli.resolver.ClasspathCache;
 import com.atomist.rug.cli.resolver.DependencyResolverFactory;
+import com.atomist.rug.cli.resolver.LocalRepositoryIndex;
+import com.atomist.rug.cli.resolver.LockFile;
+import com.atomist.rug.cli.settings.SettingsReader;
 import com.atomist.rug.cli.utils.ArtifactDescriptorUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.Profiler;
 import com.atomist.rug.cli.utils.Timing;
 import com.atomist.rug.cli.version.VersionUtils;
 import com.atomist.rug.resolver.ArtifactDescriptor;
@@ -39,6 +52,9 @@ import com.atomist.rug.resolver.DependencyResolverException;
 
 public class ReflectiveCommandRunner {
 
+    // Resolved dependencies kept across invocations when running as daemon
+    private static final Map<String, List<ArtifactDescriptor>> resolvedDependencies = new ConcurrentHashMap<>();
+
     private final Log log = new Log(ReflectiveCommandRunner.class);
     private final CommandInfoRegistry registry;
 
@@ -99,6 +115,7 @@ public class ReflectiveCommandRunner {
                 }
                 else {
                     String[] args = CommandUtils.splitCommandline(line);
+                    Profiler.reset();
                     invokeCommand(args, artifact, dependencies, null);
                 }
                 
@@ -121,7 +138,12 @@ public class ReflectiveCommandRunner {
             dependencies.addAll(new ProgressReportingOperationRunner<List<ArtifactDescriptor>>(
                     String.format("Resolving dependencies for %s",
                             ArtifactDescriptorUtils.coordinates(rootArtifact))).run(
-                                    indicator -> resolveDependencies(rootArtifact, indicator)));
+                                    indicator -> {
+                                        try (Profiler.Phase phase = Profiler
+                                                .start("Resolve dependencies")) {
+                                            return resolveDependencies(rootArtifact, indicator);
+                                        }
+                                    }));
 
             // Validate that this CLI version is compatible with declared version of Rug
             VersionUtils.validateRugCompatibility(rootArtifact, dependencies);
@@ -132,12 +154,14 @@ public class ReflectiveCommandRunner {
                     .findFirst().orElse(rootArtifact);
 
             // Setup the new classloader for the command to execute in
-            if (info instanceof ClasspathEntryProvider) {
-                ClassLoaderFactory.setupClassLoader(artifact, dependencies,
-                        (ClasspathEntryProvider) info);
-            }
-            else {
-                ClassLoaderFactory.setupClassLoader(rootArtifact, dependencies);
+            try (Profiler.Phase phase = Profiler.start("Create classloader")) {
+                if (info instanceof ClasspathEntryProvider) {
+                    ClassLoaderFactory.setupClassLoader(artifact, dependencies,
+                            (ClasspathEntryProvider) info);
+                }
+                else {
+                    ClassLoaderFactory.setupClassLoader(rootArtifact, dependencies);
+                }
             }
         }
         return artifact;
@@ -201,13 +225,16 @@ public class ReflectiveCommandRunner {
             if (commandLine != null && commandLine.hasOption('t')) {
                 printTimer(timing);
             }
+            if (commandLine != null && commandLine.hasOption("trace")) {
+                writeTrace(commandLine.getOptionValue("trace"));
+            }
         }
         return 0;
     }
 
     private void invokeReflectiveCommand(String[] args, ArtifactDescriptor artifact,
             List<ArtifactDescriptor> dependencies, CommandInfo info) {
-        try {
+        try (Profiler.Phase phase = Profiler.start("Run command " + info.name())) {
             // Invoke the run method on the command class
             new ReflectiveCommandRunMethodRunner().invokeCommand(artifact, info, args,
                     getZipDependencies(dependencies));
@@ -229,18 +256,78 @@ public class ReflectiveCommandRunner {
     }
 
     private void printTimer(Timing timing) {
+        List<Profiler.Summary> phases = Profiler.summary();
+        if (!phases.isEmpty()) {
+            log.newline();
+            log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Timing"));
+            long total = Profiler.elapsed();
+            phases.forEach(p -> {
+                String name = StringUtils.repeat("  ", p.depth()) + p.name()
+                        + (p.count() > 1 ? " (" + p.count() + "x)" : "");
+                log.info("  %-50s %8.3fs %5.1f%%", name, p.duration() / 1000000000F,
+                        (total > 0 ? p.duration() * 100F / total : 0F));
+            });
+        }
         log.info("Command completed in " + timing.duration() + "s");
+        if (ClasspathCache.hits() + ClasspathCache.misses() > 0) {
+            log.info("Classpath cache hits: %s, misses: %s", ClasspathCache.hits(),
+                    ClasspathCache.misses());
+        }
+    }
+
+    private void writeTrace(String path) {
+        File file = FileUtils.createProjectRoot(path);
+        try {
+            Profiler.writeTrace(file);
+            log.info("Timing trace written to %s", FileUtils.relativize(file));
+        }
+        catch (IOException e) {
+            log.error("Failed to write timing trace to %s: %s", path, e.getMessage());
+        }
     }
 
     private List<ArtifactDescriptor> resolveDependencies(ArtifactDescriptor artifact,
             ProgressReporter indicator) {
+        // A lockfile pins the whole graph; no need to ask any repository or build the graph
+        if (!CommandLineOptions.hasOption("u")) {
+            Optional<List<ArtifactDescriptor>> locked = LockFile.find()
+                    .flatMap(l -> l.get(artifact));
+            if (locked.isPresent()) {
+                return locked.get();
+            }
+        }
+
+        if (!Constants.isDaemon()) {
+            return doResolveDependencies(artifact, indicator);
+        }
+
+        // Keyed like the classpath cache so that changes to cli.yml take effect immediately
+        String key = new ClasspathCache().key(artifact);
+        if (CommandLineOptions.hasOption("u")) {
+            resolvedDependencies.remove(key);
+        }
+        return resolvedDependencies.computeIfAbsent(key,
+                k -> doResolveDependencies(artifact, indicator));
+    }
+
+    private List<ArtifactDescriptor> doResolveDependencies(ArtifactDescriptor artifact,
+            ProgressReporter indicator) {
+        ClasspathCache cache = new ClasspathCache();
+        Optional<List<ArtifactDescriptor>> cached = cache.get(artifact);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         DependencyResolver resolver = new DependencyResolverFactory()
                 .createDependencyResolver(artifact, indicator);
         String version = artifact.version();
         try {
             version = resolver.resolveVersion(artifact);
-            return resolver.resolveTransitiveDependencies(
+            List<ArtifactDescriptor> dependencies = resolver.resolveTransitiveDependencies(
                     ArtifactDescriptorFactory.copyFrom(artifact, version));
+            cache.put(artifact, dependencies);
+            indexArchives(dependencies);
+            return dependencies;
         }
         catch (DependencyResolverException e) {
             throw new CommandException(DependencyResolverExceptionProcessor
@@ -248,4 +335,11 @@ public class ReflectiveCommandRunner {
         }
     }
 
+    private void indexArchives(List<ArtifactDescriptor> dependencies) {
+        // Archives just downloaded should show up in rug list without another scan
+        new LocalRepositoryIndex(new File(new SettingsReader().read().getLocalRepository().path()))
+                .record(dependencies.stream().filter(d -> d.uri() != null)
+                        .map(d -> new File(d.uri())).collect(Collectors.toList()));
+    }
+
 }
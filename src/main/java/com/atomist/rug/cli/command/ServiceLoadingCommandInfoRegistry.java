@@ -1,34 +1,58 @@
 package com.atomist.rug.cli.command;
 
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.Set;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import org.apache.commons.io.IOUtils;
 
 import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.rug.cli.command.index.CommandIndex;
+import com.atomist.rug.cli.command.index.CommandIndexUtils;
 import com.atomist.rug.cli.utils.StringUtils;
 
 public class ServiceLoadingCommandInfoRegistry implements CommandInfoRegistry {
 
-    private List<CommandInfo> commands = new ArrayList<>();
+    // Commands and options don't change for the lifetime of a classloader; no need to look them
+    // up again for every new registry instance
+    private static final String SERVICES = "META-INF/services/";
+
+    private static List<CommandInfo> loadedCommands;
+    private static Options loadedOptions;
+
+    private List<CommandInfo> commands;
 
     public ServiceLoadingCommandInfoRegistry() {
         init();
     }
 
     public Options allOptions() {
-        Options options = new Options();
-        commands.forEach(e -> {
-            e.options().getOptions().forEach(options::addOption);
-            e.globalOptions().getOptions().forEach(options::addOption);
-        });
-        return options;
+        synchronized (ServiceLoadingCommandInfoRegistry.class) {
+            if (loadedOptions == null) {
+                Options options = new Options();
+                commands.forEach(e -> {
+                    e.options().getOptions().forEach(options::addOption);
+                    e.globalOptions().getOptions().forEach(options::addOption);
+                });
+                loadedOptions = options;
+            }
+            return loadedOptions;
+        }
     }
 
     public List<CommandInfo> commands() {
@@ -50,12 +74,67 @@ public class ServiceLoadingCommandInfoRegistry implements CommandInfoRegistry {
     }
 
     private void init() {
-        ServiceLoader<CommandInfo> loader = ServiceLoader.load(CommandInfo.class);
-        loader.forEach(c -> commands.add(c));
-        commands = commands.stream().sorted(Comparator.comparingInt(CommandInfo::order))
+        synchronized (ServiceLoadingCommandInfoRegistry.class) {
+            if (loadedCommands == null) {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                loadedCommands = loadCommands(CommandIndexUtils.index(),
+                        (classLoader != null ? classLoader
+                                : ServiceLoadingCommandInfoRegistry.class.getClassLoader()));
+            }
+            commands = loadedCommands;
+        }
+    }
+
+    static List<CommandInfo> loadCommands(Optional<CommandIndex> index,
+            ClassLoader classLoader) {
+        List<CommandInfo> infos = new ArrayList<>();
+        if (index.isPresent()) {
+            infos.addAll(index.get().commands());
+            // Commands of extensions on the classpath, eg. from ~/.atomist/ext, aren't in the
+            // index generated at build time; only load those instead of every registered command
+            Set<String> indexed = infos.stream().map(c -> c.getClass().getName())
+                    .collect(toSet());
+            serviceClassNames(classLoader).stream().filter(n -> !indexed.contains(n))
+                    .forEach(n -> infos.add(instantiate(n, classLoader)));
+        }
+        else {
+            ServiceLoader<CommandInfo> loader = ServiceLoader.load(CommandInfo.class,
+                    classLoader);
+            loader.forEach(c -> infos.add(c));
+        }
+        return infos.stream().sorted(Comparator.comparingInt(CommandInfo::order))
                 .collect(toList());
     }
 
+    private static Set<String> serviceClassNames(ClassLoader classLoader) {
+        Set<String> names = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> resources = classLoader
+                    .getResources(SERVICES + CommandInfo.class.getName());
+            while (resources.hasMoreElements()) {
+                try (InputStream is = resources.nextElement().openStream()) {
+                    IOUtils.readLines(is, StandardCharsets.UTF_8).stream()
+                            .map(l -> l.replaceAll("#.*", "").trim()).filter(l -> !l.isEmpty())
+                            .forEach(names::add);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new RunnerException("Failed to read registered commands", e);
+        }
+        return names;
+    }
+
+    private static CommandInfo instantiate(String className, ClassLoader classLoader) {
+        try {
+            return (CommandInfo) Class.forName(className, true, classLoader).newInstance();
+        }
+        catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+                | ClassCastException e) {
+            throw new RunnerException("Failed to load command " + className, e);
+        }
+    }
+
     private String getAddtionalHelpMessage(String commandName, CommandLine commandLine) {
         Optional<String> closestMatch = StringUtils.computeClosestMatch(commandName,
                 commands.stream().map(CommandInfo::name).collect(toList()));
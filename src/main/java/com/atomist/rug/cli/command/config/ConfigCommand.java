@@ -18,7 +18,6 @@ import com.atomist.rug.cli.settings.Settings;
 import com.atomist.rug.cli.settings.SettingsReader;
 import com.atomist.rug.cli.settings.SettingsWriter;
 import com.atomist.rug.cli.utils.CommandLineOptions;
-import com.atomist.rug.cli.utils.StringUtils;
 
 public class ConfigCommand extends AbstractAnnotationBasedCommand {
 
@@ -124,7 +123,7 @@ public class ConfigCommand extends AbstractAnnotationBasedCommand {
 		File settingsFile = null;
 		Optional<String> settingsFileOption = CommandLineOptions.getOptionValue("s");
 		if (settingsFileOption.isPresent()) {
-			settingsFile = new File(StringUtils.expandEnvironmentVars(settingsFileOption.get()));
+			settingsFile = com.atomist.rug.cli.utils.FileUtils.resolve(settingsFileOption.get());
 		} else {
 			if (global) {
 				settingsFile = new File(SettingsReader.PATH);
@@ -27,6 +27,9 @@ import com.atomist.rug.cli.command.annotation.Option;
 import com.atomist.rug.cli.command.utils.ArtifactSourceUtils;
 import com.atomist.rug.cli.command.utils.GitUtils;
 import com.atomist.rug.cli.command.utils.OperationUtils;
+import com.atomist.rug.cli.command.utils.ParallelUtils;
+import com.atomist.rug.cli.command.utils.ProjectStats;
+import com.atomist.rug.cli.command.utils.ProjectRootUtils;
 import com.atomist.rug.cli.output.ProgressReporter;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.output.Style;
@@ -47,7 +50,8 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
             @Argument(index = 1) String fqArtifactName,
             @Argument(start = 2) ProjectOperationArguments arguments,
             @Option("change-dir") String root, @Option("dry-run") boolean dryRun,
-            @Option("repo") boolean repo) {
+            @Option("repo") boolean repo, @Option("projects") String projects,
+            @Option("parallel") String parallel, @Option("patch") String patch) {
 
         String name = OperationUtils.extractRugTypeName(fqArtifactName);
         if (name == null) {
@@ -65,7 +69,23 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
 
         if (opt.isPresent()) {
             arguments = validate(artifact, opt.get(), arguments);
-            invoke(artifact, name, opt.get(), arguments, root, dryRun, repo);
+            if (projects != null) {
+                if (patch != null) {
+                    throw new CommandException(
+                            "Options --patch and --projects can't be used together.", "edit");
+                }
+                if (root != null) {
+                    throw new CommandException(
+                            "Options --change-dir and --projects can't be used together.",
+                            "edit");
+                }
+                invokeOnProjects(artifact, opt.get(), arguments, projects, parallel, dryRun,
+                        repo);
+            }
+            else {
+                invoke(artifact, name, opt.get(), arguments, root, dryRun, repo,
+                        (patch != null ? FileUtils.createProjectRoot(patch) : null));
+            }
         }
         else {
             log.newline();
@@ -82,15 +102,13 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
     }
 
     private void invoke(ArtifactDescriptor artifact, String name, ProjectEditor editor,
-            ProjectOperationArguments arguments, String rootName, boolean dryRun, boolean commit) {
+            ProjectOperationArguments arguments, String rootName, boolean dryRun, boolean commit,
+            File patch) {
 
         File root = FileUtils.createProjectRoot(rootName);
 
-        if (commit) {
-            GitUtils.isClean(root);
-        }
-
-        ArtifactSource source = ArtifactSourceUtils.createArtifactSource(root);
+        ArtifactSource source = ArtifactSourceUtils.createProjectArtifactSource(root);
+        ProjectStats stats = ProjectStats.collect(root);
 
         ModificationAttempt result = new ProgressReportingOperationRunner<ModificationAttempt>(
                 String.format("Running editor %s of %s",
@@ -109,20 +127,25 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
                     ((SuccessfulModification) result).result(), editor, arguments,
                     Constants.cliClient());
 
+            List<Delta> deltas = asJavaCollection(resultSource.cachedDeltas()).stream()
+                    .collect(Collectors.toList());
+            ProjectStats resultStats = stats.plus(deltas);
+            boolean commitChanges = commit && !dryRun && patch == null;
+            if (commitChanges) {
+                GitUtils.isClean(root, deltas);
+            }
+
             log.newline();
             log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Project"));
             log.info("  %s (%s in %s files)", Style.underline(FileUtils.relativize(root)),
-                    FileUtils.sizeOf(root), resultSource.allFiles().size());
+                    resultStats.size(), resultStats.files());
             log.newline();
             log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Changes"));
 
-            List<Delta> deltas = asJavaCollection(resultSource.cachedDeltas()).stream()
-                    .collect(Collectors.toList());
-
-            iterateDeltas(deltas, source, resultSource, root, dryRun);
-            if (commit) {
+            iterateDeltas(deltas, source, resultSource, root, dryRun, patch, resultStats);
+            if (commitChanges) {
                 log.newline();
-                GitUtils.commitFiles(editor, arguments, root);
+                GitUtils.commitFiles(editor, arguments, root, deltas);
             }
 
             log.newline();
@@ -132,7 +155,7 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
             log.newline();
             log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Project"));
             log.info("  %s (%s in %s files)", Style.underline(FileUtils.relativize(root)),
-                    FileUtils.sizeOf(root), source.allFiles().size());
+                    stats.size(), stats.files());
             log.newline();
             log.info(Style.yellow("Editor made no changes to project %s", root.getName()));
         }
@@ -140,7 +163,7 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
             log.newline();
             log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Project"));
             log.info("  %s (%s in %s files)", Style.underline(FileUtils.relativize(root)),
-                    FileUtils.sizeOf(root), source.allFiles().size());
+                    stats.size(), stats.files());
             log.newline();
             throw new CommandException(String.format(
                     "Editor failed to make changes to project %s:\n  %s", root.getName(),
@@ -148,6 +171,92 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
         }
     }
 
+    private void invokeOnProjects(ArtifactDescriptor artifact, ProjectEditor editor,
+            ProjectOperationArguments arguments, String projects, String parallel,
+            boolean dryRun, boolean commit) {
+
+        List<File> roots = ProjectRootUtils.collectProjectRoots(projects, "edit");
+        int threads = ParallelUtils.threads(parallel, "edit");
+
+        List<ProjectResult> results = new ProgressReportingOperationRunner<List<ProjectResult>>(
+                String.format("Running editor %s of %s on %s projects",
+                        StringUtils.stripName(editor.name(), artifact),
+                        ArtifactDescriptorUtils.coordinates(artifact), roots.size()))
+                                .run(indicator -> ParallelUtils.map(roots, threads, r -> {
+                                    ProjectResult result = editProject(editor.name(),
+                                            arguments, r, dryRun, commit);
+                                    indicator.report("  " + result.summary());
+                                    return result;
+                                }));
+
+        log.newline();
+        log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Projects") + " (%s %s)",
+                results.size(), StringUtils.puralize("project", results));
+        results.forEach(r -> log.info("  " + r.summary()));
+
+        long failed = results.stream().filter(r -> r.status == ProjectStatus.FAILED).count();
+        long modified = results.stream().filter(r -> r.status == ProjectStatus.MODIFIED).count();
+        log.newline();
+        if (failed > 0) {
+            throw new CommandException(String.format("Editor failed to make changes to %s of %s %s",
+                    failed, results.size(), StringUtils.puralize("project", results)));
+        }
+        log.info(Style.green("Successfully edited %s of %s %s", modified, results.size(),
+                StringUtils.puralize("project", results)));
+    }
+
+    private ProjectResult editProject(String editorName, ProjectOperationArguments arguments,
+            File root, boolean dryRun, boolean commit) {
+        long start = System.currentTimeMillis();
+        try {
+            // Every project gets its own copy of the editor; scripts aren't thread-safe and
+            // state left behind by one project must not leak into the next
+            ProjectEditor editor = asJavaCollection(
+                    reloadOperationsAndHandlers().operations().editors()).stream()
+                            .filter(e -> e.name().equals(editorName)).findFirst().get();
+            ArtifactSource source = ArtifactSourceUtils.createProjectArtifactSource(root);
+            ModificationAttempt result = editor.modify(source, arguments);
+
+            if (result instanceof SuccessfulModification) {
+                ArtifactSource resultSource = new ProvenanceInfoWriter().write(
+                        ((SuccessfulModification) result).result(), editor, arguments,
+                        Constants.cliClient());
+                List<Delta> deltas = asJavaCollection(resultSource.cachedDeltas()).stream()
+                        .collect(Collectors.toList());
+                String detail = String.format("%s %s", deltas.size(),
+                        StringUtils.puralize("file", deltas));
+                if (!dryRun) {
+                    if (commit) {
+                        GitUtils.isClean(root, deltas);
+                    }
+                    int written = writeDeltas(deltas, root);
+                    detail = String.format("%s of %s %s written", written, deltas.size(),
+                            StringUtils.puralize("file", deltas));
+                    if (commit) {
+                        GitUtils.CommitResult commitResult = GitUtils.commit(editor, arguments,
+                                root, deltas);
+                        detail += (commitResult.id() != null ? ", commit " + commitResult.id()
+                                : ", nothing to commit");
+                        if (!commitResult.ignored().isEmpty()) {
+                            detail += String.format(", %s ignored by git",
+                                    commitResult.ignored().size());
+                        }
+                    }
+                }
+                return new ProjectResult(root, ProjectStatus.MODIFIED, detail, start);
+            }
+            else if (result instanceof FailedModificationAttempt) {
+                return new ProjectResult(root, ProjectStatus.FAILED,
+                        ((FailedModificationAttempt) result).failureExplanation(), start);
+            }
+            return new ProjectResult(root, ProjectStatus.NO_CHANGE, null, start);
+        }
+        catch (Exception e) {
+            return new ProjectResult(root, ProjectStatus.FAILED,
+                    (e.getMessage() != null ? e.getMessage() : e.getClass().getName()), start);
+        }
+    }
+
     private void printLogEntries(ProgressReporter indicator, ModificationAttempt r) {
         if (r instanceof SuccessfulModification) {
             Collection<ChangeLogEntry<ArtifactSource>> logEntries = JavaConverters
@@ -156,4 +265,37 @@ public class EditCommand extends AbstractDeltaHandlingCommand {
             logEntries.forEach(l -> indicator.report("  " + l.comment()));
         }
     }
+
+    private enum ProjectStatus {
+        MODIFIED, NO_CHANGE, FAILED
+    }
+
+    private static class ProjectResult {
+
+        private final File root;
+        private final ProjectStatus status;
+        private final String detail;
+        private final float duration;
+
+        public ProjectResult(File root, ProjectStatus status, String detail, long start) {
+            this.root = root;
+            this.status = status;
+            this.detail = detail;
+            this.duration = (System.currentTimeMillis() - start) / 1000F;
+        }
+
+        public String summary() {
+            String project = Style.yellow(FileUtils.relativize(root));
+            switch (status) {
+            case MODIFIED:
+                return String.format("%s %s (%s) in %ss", project, Style.green("modified"),
+                        detail, duration);
+            case NO_CHANGE:
+                return String.format("%s no changes in %ss", project, duration);
+            default:
+                return String.format("%s %s in %ss: %s", project, Style.red("failed"), duration,
+                        detail);
+            }
+        }
+    }
 }
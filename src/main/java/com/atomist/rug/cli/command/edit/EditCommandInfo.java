@@ -28,7 +28,16 @@ public class EditCommandInfo extends AbstractVersionCommandInfo {
         Options options = super.options();
         options.addOption(Option.builder("C").longOpt("change-dir").argName("DIR").hasArg(true)
                 .desc("Run editor in directory DIR, default is '.'").required(false).build());
+        options.addOption(Option.builder("P").longOpt("projects").argName("LIST").hasArg(true)
+                .desc("Run editor in every project listed in file LIST, matching glob LIST or read from stdin with '-'")
+                .required(false).build());
+        options.addOption(Option.builder().longOpt("parallel").argName("N").hasArg(true)
+                .desc("Edit up to N projects at the same time, default is number of cores")
+                .required(false).build());
         options.addOption("d", "dry-run", false, "Do not persist changes, print diffs");
+        options.addOption(Option.builder().longOpt("patch").argName("FILE").hasArg(true)
+                .desc("Do not persist changes, write them as unified diff to FILE")
+                .required(false).build());
         options.addOption("R", "repo", false, "Commit files to local git repository");
         options.addOption("I", "interactive", false, "Interactive mode for specifying parameter values");
         return options;
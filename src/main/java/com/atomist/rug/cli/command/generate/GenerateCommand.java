@@ -1,16 +1,25 @@
 package com.atomist.rug.cli.command.generate;
 
 import static scala.collection.JavaConversions.asJavaCollection;
+import static scala.collection.JavaConversions.asScalaBuffer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.apache.commons.lang3.text.WordUtils;
 
 import com.atomist.param.Parameter;
+import com.atomist.param.ParameterValue;
 import com.atomist.param.SimpleParameterValue;
 import com.atomist.project.ProjectOperationArguments;
 import com.atomist.project.ProvenanceInfoWriter;
+import com.atomist.project.SimpleProjectOperationArguments;
 import com.atomist.project.archive.Operations;
 import com.atomist.project.generate.ProjectGenerator;
 import com.atomist.rug.cli.Constants;
@@ -21,12 +30,16 @@ import com.atomist.rug.cli.command.annotation.Command;
 import com.atomist.rug.cli.command.annotation.Option;
 import com.atomist.rug.cli.command.utils.GitUtils;
 import com.atomist.rug.cli.command.utils.OperationUtils;
+import com.atomist.rug.cli.command.utils.ParallelUtils;
+import com.atomist.rug.cli.command.utils.ProjectStats;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.output.Style;
 import com.atomist.rug.cli.tree.ArtifactSourceTreeCreator;
 import com.atomist.rug.cli.tree.LogVisitor;
 import com.atomist.rug.cli.utils.ArtifactDescriptorUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
 import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.Profiler;
 import com.atomist.rug.cli.utils.StringUtils;
 import com.atomist.rug.resolver.ArtifactDescriptor;
 import com.atomist.source.ArtifactSource;
@@ -43,9 +56,27 @@ public class GenerateCommand extends AbstractParameterizedCommand {
             @Argument(index = 1) String fqArtifactName, @Argument(index = 2) String projectName,
             @Argument(start = 3) ProjectOperationArguments arguments,
             @Option("change-dir") String root, @Option("repo") boolean createRepo,
-            @Option("overwrite") boolean overwrite) {
+            @Option("overwrite") boolean overwrite, @Option("matrix") String matrix,
+            @Option("parallel") String parallel) {
 
-        if (projectName != null) {
+        if (matrix != null) {
+            if (projectName != null && projectName.contains("=")) {
+                // With a parameter file there is no PROJECT_NAME; it's just another parameter
+                arguments = mergeParameters(arguments, new SimpleParameterValue(
+                        projectName.substring(0, projectName.indexOf('=')),
+                        projectName.substring(projectName.indexOf('=') + 1)));
+            }
+            else if (projectName != null) {
+                throw new CommandException(
+                        "PROJECT_NAME can't be used with --matrix. Please provide a project_name column in the parameter file.",
+                        "generate");
+            }
+            if (CommandLineOptions.hasOption("I")) {
+                throw new CommandException("Options --interactive and --matrix can't be used together.",
+                        "generate");
+            }
+        }
+        else if (projectName != null) {
             arguments = mergeParameters(arguments,
                     new SimpleParameterValue("project_name", projectName));
         }
@@ -58,8 +89,14 @@ public class GenerateCommand extends AbstractParameterizedCommand {
         Optional<ProjectGenerator> opt = asJavaCollection(operations.generators()).stream()
                 .filter(g -> g.name().equals(name)).findFirst();
         if (opt.isPresent()) {
-            arguments = validate(artifact, opt.get(), arguments);
-            invoke(artifact, name, opt.get(), arguments, root, createRepo, overwrite);
+            if (matrix != null) {
+                invokeMatrix(artifact, opt.get(), arguments, matrix, parallel, root, createRepo,
+                        overwrite);
+            }
+            else {
+                arguments = validate(artifact, opt.get(), arguments);
+                invoke(artifact, name, opt.get(), arguments, root, createRepo, overwrite);
+            }
         }
         else {
             log.newline();
@@ -75,6 +112,14 @@ public class GenerateCommand extends AbstractParameterizedCommand {
     }
 
     private File createProjectRoot(String path, String projectName, boolean overwrite) {
+        File root = projectRoot(path, projectName, overwrite);
+        if (!root.getParentFile().exists()) {
+            root.getParentFile().mkdirs();
+        }
+        return root;
+    }
+
+    private File projectRoot(String path, String projectName, boolean overwrite) {
         path = FileUtils.createProjectRoot(path).getAbsolutePath();
 
         File root = new File(path + File.separator + projectName);
@@ -83,9 +128,6 @@ public class GenerateCommand extends AbstractParameterizedCommand {
                     "Target directory %s already exists. Specify -F to overwrite existing content.",
                     root.getAbsolutePath().toString()), "generate");
         }
-        if (!root.getParentFile().exists()) {
-            root.getParentFile().mkdirs();
-        }
         return root;
     }
 
@@ -106,14 +148,18 @@ public class GenerateCommand extends AbstractParameterizedCommand {
         result = new ProvenanceInfoWriter().write(result, generator, arguments,
                 Constants.cliClient());
 
-        new FileSystemArtifactSourceWriter().write(result,
-                new SimpleFileSystemArtifactSourceIdentifier(root),
-                new SimpleSourceUpdateInfo(name));
+        try (Profiler.Phase phase = Profiler.start("Write changes")) {
+            new FileSystemArtifactSourceWriter().write(result,
+                    new SimpleFileSystemArtifactSourceIdentifier(root),
+                    new SimpleSourceUpdateInfo(name));
+        }
+
+        ProjectStats stats = ProjectStats.collect(root, result);
 
         log.newline();
         log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Project"));
         log.info("  %s (%s in %s files)", Style.underline(FileUtils.relativize(root)),
-                FileUtils.sizeOf(root), result.allFiles().size());
+                stats.size(), stats.files());
         log.newline();
         log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Changes"));
         ArtifactSourceTreeCreator.visitTree(result, new LogVisitor(log));
@@ -126,6 +172,109 @@ public class GenerateCommand extends AbstractParameterizedCommand {
 
     }
 
+    private void invokeMatrix(ArtifactDescriptor artifact, ProjectGenerator generator,
+            ProjectOperationArguments arguments, String matrix, String parallel,
+            String rootName, boolean createRepo, boolean overwrite) {
+
+        List<Map<String, String>> rows = new ParameterMatrixReader()
+                .read(FileUtils.createProjectRoot(matrix));
+        if (rows.isEmpty()) {
+            throw new CommandException(
+                    String.format("No parameters found in parameter file %s", matrix), "generate");
+        }
+
+        // Validate all rows before generating anything
+        Map<String, ProjectOperationArguments> rowArguments = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            rowArguments.put("Row " + (i + 1), rowArguments(arguments, rows.get(i)));
+        }
+        validate(artifact, generator, rowArguments);
+
+        List<GenerationTask> tasks = new ArrayList<>();
+        Set<String> projectNames = new HashSet<>();
+        for (ProjectOperationArguments args : rowArguments.values()) {
+            String projectName = projectName(generator, args);
+            if (!projectNames.add(projectName)) {
+                throw new CommandException(String.format(
+                        "Project %s is listed more than once in parameter file %s", projectName,
+                        matrix), "generate");
+            }
+            tasks.add(new GenerationTask(projectName, args,
+                    projectRoot(rootName, projectName, overwrite)));
+        }
+        // Only touch the file system once every row passed the checks
+        tasks.stream().map(t -> t.root.getParentFile()).filter(f -> !f.exists())
+                .forEach(File::mkdirs);
+
+        int threads = ParallelUtils.threads(parallel, "generate");
+        List<GenerationResult> results = new ProgressReportingOperationRunner<List<GenerationResult>>(
+                String.format("Running generator %s of %s for %s projects", generator.name(),
+                        ArtifactDescriptorUtils.coordinates(artifact), tasks.size()))
+                                .run(indicator -> ParallelUtils.map(tasks, threads, t -> {
+                                    GenerationResult result = generate(generator.name(), t,
+                                            createRepo);
+                                    indicator.report("  " + result.summary());
+                                    return result;
+                                }));
+
+        log.newline();
+        log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Projects") + " (%s %s)",
+                results.size(), StringUtils.puralize("project", results));
+        results.forEach(r -> log.info("  " + r.summary()));
+
+        long failed = results.stream().filter(r -> !r.success).count();
+        log.newline();
+        if (failed > 0) {
+            throw new CommandException(String.format("Generator failed to create %s of %s %s",
+                    failed, results.size(), StringUtils.puralize("project", results)));
+        }
+        log.info(Style.green("Successfully generated %s new %s", results.size(),
+                StringUtils.puralize("project", results)));
+    }
+
+    private ProjectOperationArguments rowArguments(ProjectOperationArguments arguments,
+            Map<String, String> row) {
+        // Values of the row take precedence over the ones given on the command line
+        List<ParameterValue> pvs = new ArrayList<>();
+        if (arguments != null) {
+            asJavaCollection(arguments.parameterValues()).stream()
+                    .filter(pv -> !row.containsKey(pv.getName())).forEach(pvs::add);
+        }
+        row.forEach((k, v) -> pvs.add(new SimpleParameterValue(k, v)));
+        return new SimpleProjectOperationArguments(
+                (arguments != null ? arguments.name() : "parameter"), asScalaBuffer(pvs));
+    }
+
+    private GenerationResult generate(String generatorName, GenerationTask task,
+            boolean createRepo) {
+        long start = System.currentTimeMillis();
+        try {
+            // Every row gets its own copy of the generator; scripts aren't thread-safe and
+            // state left behind by one row must not leak into the next
+            ProjectGenerator generator = asJavaCollection(
+                    reloadOperationsAndHandlers().operations().generators()).stream()
+                            .filter(g -> g.name().equals(generatorName)).findFirst().get();
+            ArtifactSource result = new ProvenanceInfoWriter().write(
+                    generator.generate(task.projectName, task.arguments), generator,
+                    task.arguments, Constants.cliClient());
+
+            new FileSystemArtifactSourceWriter().write(result,
+                    new SimpleFileSystemArtifactSourceIdentifier(task.root),
+                    new SimpleSourceUpdateInfo(generatorName));
+
+            String detail = String.format("%s files", result.allFiles().size());
+            if (createRepo) {
+                detail += ", commit " + GitUtils.initializeRepo(generator, task.arguments,
+                        task.root);
+            }
+            return new GenerationResult(task.root, true, detail, start);
+        }
+        catch (Exception e) {
+            return new GenerationResult(task.root, false,
+                    (e.getMessage() != null ? e.getMessage() : e.getClass().getName()), start);
+        }
+    }
+
     private String projectName(ProjectGenerator generator, ProjectOperationArguments arguments) {
         if (JavaConverters.mapAsJavaMapConverter(arguments.parameterValueMap()).asJava()
                 .containsKey("project_name")) {
@@ -142,4 +291,43 @@ public class GenerateCommand extends AbstractParameterizedCommand {
         }
         throw new CommandException("No PROJECT_NAME provided", "generate");
     }
+
+    private static class GenerationTask {
+
+        private final String projectName;
+        private final ProjectOperationArguments arguments;
+        private final File root;
+
+        public GenerationTask(String projectName, ProjectOperationArguments arguments,
+                File root) {
+            this.projectName = projectName;
+            this.arguments = arguments;
+            this.root = root;
+        }
+    }
+
+    private static class GenerationResult {
+
+        private final File root;
+        private final boolean success;
+        private final String detail;
+        private final float duration;
+
+        public GenerationResult(File root, boolean success, String detail, long start) {
+            this.root = root;
+            this.success = success;
+            this.detail = detail;
+            this.duration = (System.currentTimeMillis() - start) / 1000F;
+        }
+
+        public String summary() {
+            String project = Style.yellow(FileUtils.relativize(root));
+            if (success) {
+                return String.format("%s %s (%s) in %ss", project, Style.green("generated"),
+                        detail, duration);
+            }
+            return String.format("%s %s in %ss: %s", project, Style.red("failed"), duration,
+                    detail);
+        }
+    }
 }
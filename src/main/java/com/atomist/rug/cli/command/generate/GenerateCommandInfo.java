@@ -36,6 +36,12 @@ public class GenerateCommandInfo extends AbstractVersionCommandInfo {
                 .required(false).build());
         options.addOption("I", "interactive", false,
                 "Interactive mode for specifying parameter values");
+        options.addOption(Option.builder("M").longOpt("matrix").argName("FILE")
+                .desc("Generate one project per row of parameters in CSV, YAML or NDJSON file FILE")
+                .hasArg(true).required(false).build());
+        options.addOption(Option.builder().longOpt("parallel").argName("N")
+                .desc("Generate up to N projects at the same time, default is number of cores")
+                .hasArg(true).required(false).build());
         return options;
     }
 
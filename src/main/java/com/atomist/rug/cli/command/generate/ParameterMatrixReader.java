@@ -0,0 +1,177 @@
+package com.atomist.rug.cli.command.generate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yaml.snakeyaml.Yaml;
+
+import com.atomist.rug.cli.command.CommandException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Reads rows of parameter values from CSV files with a header line, YAML files containing a
+// list of maps or newline-delimited JSON objects
+public class ParameterMatrixReader {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public List<Map<String, String>> read(File file) {
+        if (!file.isFile()) {
+            throw new CommandException(
+                    String.format("Parameter file %s does not exist", file.getAbsolutePath()),
+                    "generate");
+        }
+        String name = file.getName().toLowerCase();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            if (name.endsWith(".csv")) {
+                return readCsv(reader);
+            }
+            else if (name.endsWith(".yml") || name.endsWith(".yaml")) {
+                return readYaml(reader);
+            }
+            else if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return readNdjson(reader);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            if (e instanceof CommandException) {
+                throw (CommandException) e;
+            }
+            throw new CommandException(String.format("Failed to read parameter file %s:\n  %s",
+                    file.getAbsolutePath(), e.getMessage()), "generate");
+        }
+        throw new CommandException(String.format(
+                "Unsupported parameter file %s. Please use .csv, .yml, .yaml, .ndjson or .jsonl files.",
+                file.getName()), "generate");
+    }
+
+    private List<Map<String, String>> readCsv(BufferedReader reader) throws IOException {
+        List<List<String>> records = parseCsv(reader);
+        List<Map<String, String>> rows = new ArrayList<>();
+        if (records.isEmpty()) {
+            return rows;
+        }
+        List<String> header = records.get(0);
+        for (int i = 1; i < records.size(); i++) {
+            List<String> record = records.get(i);
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue;
+            }
+            if (record.size() != header.size()) {
+                throw new CommandException(String.format(
+                        "Line %s has %s values but the header defines %s columns", i + 1,
+                        record.size(), header.size()), "generate");
+            }
+            Map<String, String> row = new LinkedHashMap<>();
+            for (int j = 0; j < header.size(); j++) {
+                // empty cells leave the parameter to its default or the command line
+                if (!record.get(j).isEmpty()) {
+                    row.put(header.get(j).trim(), record.get(j));
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // RFC 4180 style: fields may be quoted with " and contain commas, quotes ("") and newlines
+    private List<List<String>> parseCsv(Reader reader) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    }
+                    else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                }
+                else {
+                    field.append((char) c);
+                }
+            }
+            else if (c == '"') {
+                quoted = true;
+            }
+            else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c == '\n') {
+                record.add(field.toString());
+                field.setLength(0);
+                records.add(record);
+                record = new ArrayList<>();
+            }
+            else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (field.length() > 0 || !record.isEmpty()) {
+            record.add(field.toString());
+            records.add(record);
+        }
+        return records;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, String>> readYaml(Reader reader) {
+        Object data = new Yaml().load(reader);
+        List<Map<String, String>> rows = new ArrayList<>();
+        if (data == null) {
+            return rows;
+        }
+        if (!(data instanceof List)) {
+            throw new CommandException("YAML parameter file needs to contain a list of parameter maps",
+                    "generate");
+        }
+        for (Object entry : (List<Object>) data) {
+            if (!(entry instanceof Map)) {
+                throw new CommandException(
+                        "YAML parameter file needs to contain a list of parameter maps",
+                        "generate");
+            }
+            rows.add(toStrings((Map<String, Object>) entry));
+        }
+        return rows;
+    }
+
+    private List<Map<String, String>> readNdjson(BufferedReader reader) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                rows.add(toStrings(
+                        mapper.readValue(line, new TypeReference<Map<String, Object>>() {
+                        })));
+            }
+        }
+        return rows;
+    }
+
+    private Map<String, String> toStrings(Map<String, Object> values) {
+        Map<String, String> row = new LinkedHashMap<>();
+        values.forEach((k, v) -> {
+            if (v != null) {
+                row.put(String.valueOf(k), String.valueOf(v));
+            }
+        });
+        return row;
+    }
+}
@@ -0,0 +1,35 @@
+package com.atomist.rug.cli.command.index;
+
+import java.util.List;
+import java.util.Optional;
+
+public class CommandBinding {
+
+    private final List<ParameterBinding> parameters;
+    private final Invoker command;
+    private final Invoker validator;
+
+    public CommandBinding(List<ParameterBinding> parameters, Invoker command,
+            Invoker validator) {
+        this.parameters = parameters;
+        this.command = command;
+        this.validator = validator;
+    }
+
+    public List<ParameterBinding> parameters() {
+        return parameters;
+    }
+
+    public Invoker command() {
+        return command;
+    }
+
+    public Optional<Invoker> validator() {
+        return Optional.ofNullable(validator);
+    }
+
+    @FunctionalInterface
+    public interface Invoker {
+        void invoke(Object command, Object[] arguments) throws Exception;
+    }
+}
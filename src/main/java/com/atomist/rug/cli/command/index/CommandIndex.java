@@ -0,0 +1,14 @@
+package com.atomist.rug.cli.command.index;
+
+import java.util.List;
+import java.util.Map;
+
+import com.atomist.rug.cli.command.CommandInfo;
+
+// Implemented by the GeneratedCommandIndex the CommandIndexProcessor writes at build time
+public interface CommandIndex {
+
+    Map<String, CommandBinding> bindings();
+
+    List<CommandInfo> commands();
+}
@@ -0,0 +1,236 @@
+package com.atomist.rug.cli.command.index;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+// Writes GeneratedCommandIndex listing all CommandInfos and binding every @Command method to
+// a direct call, so that startup neither scans the classpath nor reflects over command classes.
+// Only depends on javax.lang.model as it gets compiled before the rest of the sources.
+@SupportedAnnotationTypes("*")
+public class CommandIndexProcessor extends AbstractProcessor {
+
+    private static final String PACKAGE = "com.atomist.rug.cli.command.index";
+    private static final String COMMAND_INFO = "com.atomist.rug.cli.command.CommandInfo";
+    private static final String ANNOTATION_BASED_COMMAND = "com.atomist.rug.cli.command.AbstractAnnotationBasedCommand";
+    private static final String COMMAND = "com.atomist.rug.cli.command.annotation.Command";
+    private static final String VALIDATOR = "com.atomist.rug.cli.command.annotation.Validator";
+    private static final String ARGUMENT = "com.atomist.rug.cli.command.annotation.Argument";
+    private static final String OPTION = "com.atomist.rug.cli.command.annotation.Option";
+
+    private final Map<String, TypeElement> commandInfos = new TreeMap<>();
+    private final Map<String, TypeElement> commands = new TreeMap<>();
+
+    private boolean written = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement commandInfo = processingEnv.getElementUtils().getTypeElement(COMMAND_INFO);
+        TypeElement command = processingEnv.getElementUtils()
+                .getTypeElement(ANNOTATION_BASED_COMMAND);
+        if (commandInfo == null || command == null) {
+            return false;
+        }
+
+        if (!roundEnv.processingOver() && !written) {
+            ElementFilter.typesIn(roundEnv.getRootElements()).stream()
+                    .filter(t -> t.getKind() == ElementKind.CLASS
+                            && !t.getModifiers().contains(Modifier.ABSTRACT)
+                            && t.getModifiers().contains(Modifier.PUBLIC))
+                    .forEach(t -> {
+                        if (isAssignable(t, commandInfo)) {
+                            commandInfos.put(t.getQualifiedName().toString(), t);
+                        }
+                        if (isAssignable(t, command)) {
+                            commands.put(t.getQualifiedName().toString(), t);
+                        }
+                    });
+
+            // All command sources are part of the first round; writing the index now lets javac
+            // compile it in the next round instead of warning about a file created in the last
+            if (!commandInfos.isEmpty()) {
+                writeIndex();
+                written = true;
+            }
+        }
+        return false;
+    }
+
+    // javax.annotation.Generated is gone from JDK 9 on; use whichever variant is available
+    private Optional<String> generatedAnnotation() {
+        return Arrays.asList("javax.annotation.processing.Generated", "javax.annotation.Generated")
+                .stream().filter(a -> processingEnv.getElementUtils().getTypeElement(a) != null)
+                .findFirst();
+    }
+
+    private boolean isAssignable(TypeElement type, TypeElement target) {
+        return processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(type.asType()),
+                processingEnv.getTypeUtils().erasure(target.asType()));
+    }
+
+    private void writeIndex() {
+        try (PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(PACKAGE + ".GeneratedCommandIndex").openWriter())) {
+            writer.println("package " + PACKAGE + ";");
+            writer.println();
+            writer.println("import java.util.Arrays;");
+            writer.println("import java.util.Collections;");
+            writer.println("import java.util.HashMap;");
+            writer.println("import java.util.List;");
+            writer.println("import java.util.Map;");
+            writer.println();
+            writer.println("import com.atomist.rug.cli.command.CommandInfo;");
+            writer.println();
+            generatedAnnotation().ifPresent(
+                    a -> writer.println("@" + a + "(\"" + getClass().getName() + "\")"));
+            writer.println("public class GeneratedCommandIndex implements CommandIndex {");
+            writer.println();
+            writer.println("    private final Map<String, CommandBinding> bindings = new HashMap<>();");
+            writer.println();
+            writer.println("    public GeneratedCommandIndex() {");
+            commands.values().forEach(c -> writeBinding(writer, c));
+            writer.println("    }");
+            writer.println();
+            writer.println("    @Override");
+            writer.println("    public Map<String, CommandBinding> bindings() {");
+            writer.println("        return Collections.unmodifiableMap(bindings);");
+            writer.println("    }");
+            writer.println();
+            writer.println("    @Override");
+            writer.println("    public List<CommandInfo> commands() {");
+            writer.println("        return Arrays.asList(" + commandInfos.keySet().stream()
+                    .map(n -> "new " + n + "()").collect(Collectors.joining(",\n                "))
+                    + ");");
+            writer.println("    }");
+            writer.println("}");
+        }
+        catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Failed to write command index: " + e.getMessage());
+        }
+    }
+
+    private void writeBinding(PrintWriter writer, TypeElement type) {
+        Optional<ExecutableElement> command = annotatedMethodWith(type, COMMAND);
+        if (!command.isPresent() || !command.get().getModifiers().contains(Modifier.PUBLIC)) {
+            // Leave it to the reflective fallback to report on
+            return;
+        }
+        Optional<ExecutableElement> validator = annotatedMethodWith(type, VALIDATOR)
+                .filter(v -> v.getModifiers().contains(Modifier.PUBLIC));
+
+        List<String> parameters = command.get().getParameters().stream()
+                .map(this::parameterBinding).collect(Collectors.toList());
+
+        writer.println("        bindings.put(\"" + type.getQualifiedName() + "\", new CommandBinding(");
+        writer.println("                " + (parameters.isEmpty() ? "Collections.emptyList()"
+                : "Arrays.asList(" + String.join(",\n                        ", parameters) + ")")
+                + ",");
+        writer.print("                " + invoker(type, command.get()) + ",");
+        writer.println();
+        writer.println("                " + validator.map(v -> invoker(type, v)).orElse("null")
+                + "));");
+    }
+
+    private Optional<ExecutableElement> annotatedMethodWith(TypeElement type, String annotation) {
+        // Walk the class hierarchy bottom up, same as the reflective lookup does
+        TypeElement current = type;
+        while (current != null) {
+            for (ExecutableElement method : ElementFilter
+                    .methodsIn(current.getEnclosedElements())) {
+                if (annotation(method, annotation).isPresent()) {
+                    return Optional.of(method);
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = (superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) processingEnv.getTypeUtils().asElement(superclass)
+                    : null);
+        }
+        return Optional.empty();
+    }
+
+    private Optional<? extends AnnotationMirror> annotation(Element element, String annotation) {
+        return element.getAnnotationMirrors().stream()
+                .filter(a -> ((TypeElement) a.getAnnotationType().asElement()).getQualifiedName()
+                        .contentEquals(annotation))
+                .findFirst();
+    }
+
+    private Object annotationValue(AnnotationMirror mirror, String name) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv
+                .getElementUtils().getElementValuesWithDefaults(mirror);
+        return values.entrySet().stream()
+                .filter(e -> e.getKey().getSimpleName().contentEquals(name))
+                .map(e -> e.getValue().getValue()).findFirst().orElse(null);
+    }
+
+    private String parameterBinding(VariableElement parameter) {
+        String type = typeName(parameter.asType()) + ".class";
+        Optional<? extends AnnotationMirror> argument = annotation(parameter, ARGUMENT);
+        Optional<? extends AnnotationMirror> option = annotation(parameter, OPTION);
+        if (argument.isPresent()) {
+            return String.format("ParameterBinding.argument(%s, %s, %s, %s)", type,
+                    annotationValue(argument.get(), "index"),
+                    annotationValue(argument.get(), "start"),
+                    processingEnv.getElementUtils().getConstantExpression(
+                            annotationValue(argument.get(), "defaultValue")));
+        }
+        else if (option.isPresent()) {
+            return String.format("ParameterBinding.option(%s, %s)", type,
+                    processingEnv.getElementUtils()
+                            .getConstantExpression(annotationValue(option.get(), "value")));
+        }
+        return String.format("ParameterBinding.context(%s)", type);
+    }
+
+    private String invoker(TypeElement type, ExecutableElement method) {
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            TypeMirror parameterType = method.getParameters().get(i).asType();
+            String castType = (parameterType.getKind().isPrimitive()
+                    ? processingEnv.getTypeUtils()
+                            .boxedClass(processingEnv.getTypeUtils().getPrimitiveType(
+                                    parameterType.getKind()))
+                            .getQualifiedName().toString()
+                    : typeName(parameterType));
+            arguments.add(String.format("(%s) a[%s]", castType, i));
+        }
+        return String.format("(c, a) -> ((%s) c).%s(%s)", type.getQualifiedName(),
+                method.getSimpleName(), String.join(", ", arguments));
+    }
+
+    private String typeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.atomist.rug.cli.command.index;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
+
+import com.atomist.rug.cli.command.annotation.Argument;
+import com.atomist.rug.cli.command.annotation.Command;
+import com.atomist.rug.cli.command.annotation.Option;
+import com.atomist.rug.cli.command.annotation.Validator;
+
+public abstract class CommandIndexUtils {
+
+    private static final String GENERATED_INDEX = CommandIndex.class.getPackage().getName()
+            + ".GeneratedCommandIndex";
+
+    private static final Map<Class<?>, Optional<CommandBinding>> bindings = new ConcurrentHashMap<>();
+
+    private static Optional<CommandIndex> index;
+
+    public static synchronized Optional<CommandIndex> index() {
+        if (index == null) {
+            try {
+                index = Optional.of((CommandIndex) Class.forName(GENERATED_INDEX).newInstance());
+            }
+            catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                // Not compiled with the annotation processor, eg. when running from an IDE
+                index = Optional.empty();
+            }
+        }
+        return index;
+    }
+
+    public static Optional<CommandBinding> binding(Class<?> commandClass) {
+        return bindings.computeIfAbsent(commandClass, c -> {
+            Optional<CommandIndex> index = index();
+            if (index.isPresent() && index.get().bindings().containsKey(c.getName())) {
+                return Optional.of(index.get().bindings().get(c.getName()));
+            }
+            return reflectiveBinding(c);
+        });
+    }
+
+    private static Optional<CommandBinding> reflectiveBinding(Class<?> commandClass) {
+        Optional<Method> command = annotatedMethodWith(commandClass, Command.class);
+        if (!command.isPresent()) {
+            return Optional.empty();
+        }
+
+        List<ParameterBinding> parameters = Arrays.stream(command.get().getParameters())
+                .map(p -> {
+                    Argument argument = AnnotationUtils.getAnnotation(p, Argument.class);
+                    Option option = AnnotationUtils.getAnnotation(p, Option.class);
+                    if (argument != null) {
+                        return ParameterBinding.argument(p.getType(), argument.index(),
+                                argument.start(), argument.defaultValue());
+                    }
+                    else if (option != null) {
+                        return ParameterBinding.option(p.getType(), option.value());
+                    }
+                    return ParameterBinding.context(p.getType());
+                }).collect(Collectors.toList());
+
+        return Optional.of(new CommandBinding(parameters, invoker(command.get()),
+                annotatedMethodWith(commandClass, Validator.class).map(m -> invoker(m))
+                        .orElse(null)));
+    }
+
+    private static <A extends Annotation> Optional<Method> annotatedMethodWith(Class<?> clazz,
+            Class<A> annotationClass) {
+        return Arrays.stream(ReflectionUtils.getAllDeclaredMethods(clazz))
+                .filter(m -> AnnotationUtils.getAnnotation(m, annotationClass) != null).findFirst();
+    }
+
+    private static CommandBinding.Invoker invoker(Method method) {
+        return (command, arguments) -> {
+            try {
+                method.invoke(command, arguments);
+            }
+            catch (InvocationTargetException e) {
+                if (e.getTargetException() instanceof Exception) {
+                    throw (Exception) e.getTargetException();
+                }
+                throw e;
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.atomist.rug.cli.command.index;
+
+public class ParameterBinding {
+
+    public enum Kind {
+        ARGUMENT, OPTION, CONTEXT
+    }
+
+    private final Kind kind;
+    private final Class<?> type;
+    private final int index;
+    private final int start;
+    private final String defaultValue;
+    private final String option;
+
+    private ParameterBinding(Kind kind, Class<?> type, int index, int start,
+            String defaultValue, String option) {
+        this.kind = kind;
+        this.type = type;
+        this.index = index;
+        this.start = start;
+        this.defaultValue = defaultValue;
+        this.option = option;
+    }
+
+    public static ParameterBinding argument(Class<?> type, int index, int start,
+            String defaultValue) {
+        return new ParameterBinding(Kind.ARGUMENT, type, index, start, defaultValue, null);
+    }
+
+    public static ParameterBinding option(Class<?> type, String option) {
+        return new ParameterBinding(Kind.OPTION, type, -1, -1, null, option);
+    }
+
+    public static ParameterBinding context(Class<?> type) {
+        return new ParameterBinding(Kind.CONTEXT, type, -1, -1, null, null);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public Class<?> type() {
+        return type;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public String defaultValue() {
+        return defaultValue;
+    }
+
+    public String option() {
+        return option;
+    }
+}
@@ -2,6 +2,7 @@ package com.atomist.rug.cli.command.install;
 
 import java.io.File;
 import java.net.URI;
+import java.util.Collections;
 
 import org.apache.commons.cli.CommandLine;
 import org.eclipse.aether.AbstractRepositoryListener;
@@ -18,6 +19,7 @@ import com.atomist.rug.cli.command.AbstractRepositoryCommand;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.output.ProgressReportingTransferListener;
 import com.atomist.rug.cli.output.Style;
+import com.atomist.rug.cli.resolver.LocalRepositoryIndex;
 import com.atomist.rug.cli.utils.FileUtils;
 import com.atomist.rug.manifest.Manifest;
 import com.atomist.source.ArtifactSource;
@@ -51,7 +53,11 @@ public class InstallCommand extends AbstractRepositoryCommand {
                     InstallRequest installRequest = new InstallRequest();
                     installRequest.addArtifact(artifact).addArtifact(pom).addArtifact(metadata);
 
-                    return system.install(session, installRequest);
+                    InstallResult result = system.install(session, installRequest);
+                    File repo = session.getLocalRepository().getBasedir();
+                    new LocalRepositoryIndex(repo).record(Collections.singletonList(new File(repo,
+                            session.getLocalRepositoryManager().getPathForLocalArtifact(artifact))));
+                    return result;
                 });
 
         log.newline();
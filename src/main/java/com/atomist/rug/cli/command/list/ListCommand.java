@@ -1,8 +1,6 @@
 package com.atomist.rug.cli.command.list;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,7 +12,6 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
 import org.eclipse.aether.util.version.GenericVersionScheme;
 import org.eclipse.aether.version.InvalidVersionSpecificationException;
 import org.eclipse.aether.version.VersionConstraint;
@@ -29,13 +26,12 @@ import com.atomist.rug.cli.command.annotation.Command;
 import com.atomist.rug.cli.command.annotation.Option;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.output.Style;
+import com.atomist.rug.cli.resolver.LocalRepositoryIndex;
 import com.atomist.rug.cli.settings.Settings;
 import com.atomist.rug.resolver.ArtifactDescriptor;
 import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
 import com.atomist.rug.resolver.ArtifactDescriptor.Scope;
 import com.atomist.rug.resolver.DefaultArtifactDescriptor;
-import com.atomist.source.file.ZipFileArtifactSourceReader;
-import com.atomist.source.file.ZipFileInput;
 
 public class ListCommand extends AbstractAnnotationBasedCommand {
 
@@ -78,13 +74,24 @@ public class ListCommand extends AbstractAnnotationBasedCommand {
 
     private List<ArtifactDescriptor> collectArchives(Properties filter, Settings settings) {
         File repo = new File(settings.getLocalRepository().path());
-        URI repoHome = repo.toURI();
         if (repo.exists()) {
-            Collection<File> archives = FileUtils.listFiles(repo, new String[] { "zip" }, true)
-                    .stream().sorted(Comparator.comparing(File::getAbsolutePath))
+            String group = filter.getProperty("group");
+            // only walk the part of the repository the group filter can match
+            File root = repo;
+            if (group != null) {
+                for (String segment : group.split("\\.")) {
+                    if (segment.contains("*") || segment.contains("?")) {
+                        break;
+                    }
+                    root = new File(root, segment);
+                }
+            }
+
+            Collection<File> archives = new LocalRepositoryIndex(repo).archives(root).stream()
+                    .map(a -> new File(a.getPath()))
+                    .sorted(Comparator.comparing(File::getAbsolutePath))
                     .collect(Collectors.toList());
 
-            String group = filter.getProperty("group");
             if (group != null) {
                 String pattern = "/**/" + group.replace(".", File.separator) + "/*/*/*.zip";
                 PathMatcher matcher = new AntPathMatcher();
@@ -119,17 +126,8 @@ public class ListCommand extends AbstractAnnotationBasedCommand {
                     log.info("Invalid version constraint %s specified in filter", version);
                 }
             }
-            return archives.stream().filter(f -> {
-                try {
-                    // filter out all non-Rug archives
-                    return ZipFileArtifactSourceReader
-                            .fromZipSource(new ZipFileInput(new FileInputStream(f)))
-                            .findDirectory(".atomist").isDefined();
-                }
-                catch (FileNotFoundException e) {
-                    return false;
-                }
-            }).map(f -> {
+            URI repoHome = repo.toURI();
+            return archives.stream().map(f -> {
                 URI relativeUri = repoHome.relativize(f.toURI());
                 List<String> segments = new ArrayList<>(
                         Arrays.asList(relativeUri.toString().split("/")));
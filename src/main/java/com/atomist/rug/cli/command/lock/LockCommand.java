@@ -0,0 +1,72 @@
+package com.atomist.rug.cli.command.lock;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.command.AbstractAnnotationBasedCommand;
+import com.atomist.rug.cli.command.ArtifactDescriptorProvider;
+import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.command.CommandUtils;
+import com.atomist.rug.cli.command.annotation.Command;
+import com.atomist.rug.cli.command.utils.DependencyResolverExceptionProcessor;
+import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
+import com.atomist.rug.cli.output.Style;
+import com.atomist.rug.cli.resolver.DependencyResolverFactory;
+import com.atomist.rug.cli.resolver.LockFile;
+import com.atomist.rug.cli.settings.Settings;
+import com.atomist.rug.cli.utils.ArtifactDescriptorUtils;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.StringUtils;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.ArtifactDescriptorFactory;
+import com.atomist.rug.resolver.DependencyResolver;
+import com.atomist.rug.resolver.DependencyResolverException;
+
+public class LockCommand extends AbstractAnnotationBasedCommand {
+
+    @Command
+    public void run(CommandLine commandLine, Settings settings) {
+        File projectRoot = CommandUtils.getRequiredWorkingDirectory();
+
+        // The artifact as requested, eg. with latest or a version range, not the resolved one
+        ArtifactDescriptor artifact = ((ArtifactDescriptorProvider) registry
+                .findCommand(commandLine)).artifactDescriptor(commandLine);
+
+        // Always resolve from the repositories; the lockfile itself must not be used here
+        List<ArtifactDescriptor> dependencies = new ProgressReportingOperationRunner<List<ArtifactDescriptor>>(
+                String.format("Resolving dependencies for %s",
+                        ArtifactDescriptorUtils.coordinates(artifact))).run(indicator -> {
+                            DependencyResolver resolver = new DependencyResolverFactory()
+                                    .createDependencyResolver(artifact, indicator);
+                            String version = artifact.version();
+                            try {
+                                version = resolver.resolveVersion(artifact);
+                                return resolver.resolveTransitiveDependencies(
+                                        ArtifactDescriptorFactory.copyFrom(artifact, version));
+                            }
+                            catch (DependencyResolverException e) {
+                                throw new CommandException(DependencyResolverExceptionProcessor
+                                        .process(ArtifactDescriptorFactory.copyFrom(artifact,
+                                                version), e));
+                            }
+                        });
+
+        LockFile lockFile = new LockFile(projectRoot,
+                new File(settings.getLocalRepository().path()));
+        lockFile.put(artifact, dependencies);
+
+        log.newline();
+        log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Lockfile"));
+        log.info("  %s", Style.underline(FileUtils.relativize(lockFile.file())));
+        dependencies.forEach(d -> log.info("    %s:%s:%s (%s)", d.group(), d.artifact(),
+                d.version(), d.extension().toString().toLowerCase()));
+
+        log.newline();
+        log.info(Style.green("Successfully locked %s %s of %s", dependencies.size(),
+                StringUtils.puralize("dependency", "dependencies", dependencies),
+                ArtifactDescriptorUtils.coordinates(artifact)));
+    }
+}
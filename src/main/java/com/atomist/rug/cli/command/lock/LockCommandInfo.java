@@ -0,0 +1,55 @@
+package com.atomist.rug.cli.command.lock;
+
+import org.apache.commons.cli.CommandLine;
+
+import com.atomist.rug.cli.command.AbstractVersionCommandInfo;
+import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.command.CommandInfo;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+
+public class LockCommandInfo extends AbstractVersionCommandInfo implements CommandInfo {
+
+    public LockCommandInfo() {
+        super(LockCommand.class, "lock", 1);
+    }
+
+    @Override
+    public ArtifactDescriptor artifactDescriptor(CommandLine commandLine) {
+        if (commandLine.getArgList().size() > 1) {
+            return super.artifactDescriptor(commandLine);
+        }
+        // lock the archive of the current project
+        return localArtifactDescriptor(commandLine).orElseThrow(() -> new CommandException(
+                "No manifest.yml found in .atomist folder. Please add a manifest.yml file or provide an ARTIFACT to lock.",
+                name()));
+    }
+
+    @Override
+    public String description() {
+        return "Pin resolved dependencies of an archive in a lockfile";
+    }
+
+    @Override
+    public String detail() {
+        return "Resolve the dependencies of the current project or ARTIFACT and write their exact versions "
+                + "and checksums to .atomist/rug.lock.  As long as all locked dependencies are in the "
+                + "local repository, commands run in the project use them without contacting any remote "
+                + "repository.  Run the command again after changing dependencies; use -u to also pick up "
+                + "new releases.";
+    }
+
+    @Override
+    public boolean loadArtifactSource() {
+        return false;
+    }
+
+    @Override
+    public int order() {
+        return 65;
+    }
+
+    @Override
+    public String usage() {
+        return "lock [OPTION]... [ARTIFACT]";
+    }
+}
@@ -0,0 +1,99 @@
+package com.atomist.rug.cli.command.repo;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.Log;
+import com.atomist.rug.cli.command.AbstractAnnotationBasedCommand;
+import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.command.annotation.Argument;
+import com.atomist.rug.cli.command.annotation.Command;
+import com.atomist.rug.cli.command.annotation.Option;
+import com.atomist.rug.cli.output.Style;
+import com.atomist.rug.cli.resolver.RepositoryProxy;
+import com.atomist.rug.cli.settings.Settings;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+
+public class RepoCommand extends AbstractAnnotationBasedCommand {
+
+    private static final int DEFAULT_PORT = 8080;
+
+    private Log log = new Log(RepoCommand.class);
+
+    @Command
+    public void run(Settings settings, @Argument(index = 1, defaultValue = "") String command,
+            @Option("port") String port, @Option("bind") String bind,
+            @Option("store") String store) {
+
+        switch (command) {
+        case "serve":
+            serve(settings, port(port), bind, store);
+            break;
+        default:
+            throw new CommandException("No or invalid SUBCOMMAND provided.", "repo");
+        }
+    }
+
+    private void serve(Settings settings, int port, String bind, String store) {
+        File storeDir = (store != null ? FileUtils.createProjectRoot(store)
+                : new File(System.getProperty("user.home") + File.separator + ".atomist"
+                        + File.separator + "repository-proxy"));
+        storeDir.mkdirs();
+
+        boolean verbose = CommandLineOptions.hasOption("V");
+        try (RepositoryProxy proxy = new RepositoryProxy(storeDir, l -> {
+            if (verbose) {
+                log.info("%s", l);
+            }
+        })) {
+            // Requests mostly wait on remote repositories so allow more of them than resolver
+            // threads
+            InetSocketAddress address = proxy.start(bind, port,
+                    settings.getResolver().threads() * 4);
+            String url = String.format("http://%s:%s/",
+                    (bind != null ? bind : "localhost"), address.getPort());
+
+            log.newline();
+            log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Repository Proxy"));
+            log.info("  %s %s", Style.yellow("Store"), FileUtils.relativize(storeDir));
+            proxy.repositories().forEach(
+                    (id, repoUrl) -> log.info("  %s %s (%s)", Style.yellow("Repository"), id,
+                            repoUrl));
+            List<String> authenticated = proxy.authenticatedRepositories();
+            if (!authenticated.isEmpty()) {
+                log.newline();
+                log.info(Style.yellow(
+                        "Repositories %s are accessed with credentials from cli.yml; anyone who can connect to the proxy gets their content without authenticating",
+                        String.join(", ", authenticated)));
+            }
+            log.newline();
+            log.info(Style.green("Serving repositories on %s; press Ctrl-C to stop", url));
+
+            // Runs until the process gets stopped
+            new CountDownLatch(1).await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int port(String port) {
+        if (port == null) {
+            return DEFAULT_PORT;
+        }
+        try {
+            int value = Integer.parseInt(port);
+            if (value >= 0 && value <= 65535) {
+                return value;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new CommandException(String.format("Invalid PORT %s provided.", port), "repo");
+    }
+}
@@ -0,0 +1,61 @@
+package com.atomist.rug.cli.command.repo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import com.atomist.rug.cli.command.AbstractRugScopedCommandInfo;
+
+public class RepoCommandInfo extends AbstractRugScopedCommandInfo {
+
+    private static final List<String> commands = Arrays.asList(new String[] { "serve" });
+
+    public RepoCommandInfo() {
+        super(RepoCommand.class, "repo");
+    }
+
+    @Override
+    public String description() {
+        return "Serve a caching proxy of the configured repositories";
+    }
+
+    @Override
+    public String detail() {
+        return "SUBCOMMAND should be serve.  Starts an HTTP server in Maven repository layout that "
+                + "resolves requested files from the remote repositories configured in cli.yml into "
+                + "a local store and serves them from there.  Point the remote-repositories of "
+                + "other machines to the proxy URL to share one verified download.  The proxy only accepts connections from this machine "
+                + "unless --bind names another address; it doesn't authenticate clients.";
+    }
+
+    @Override
+    public Options options() {
+        Options options = new Options();
+        options.addOption(Option.builder().argName("PORT").desc("Listen on PORT, default 8080")
+                .longOpt("port").hasArg(true).build());
+        options.addOption(Option.builder().argName("ADDRESS")
+                .desc("Bind to ADDRESS, default localhost").longOpt("bind").hasArg(true)
+                .build());
+        options.addOption(Option.builder().argName("DIR")
+                .desc("Store files in DIR, default ~/.atomist/repository-proxy")
+                .longOpt("store").hasArg(true).build());
+        return options;
+    }
+
+    @Override
+    public int order() {
+        return 75;
+    }
+
+    @Override
+    public String usage() {
+        return "repo [OPTION]... SUBCOMMAND";
+    }
+
+    @Override
+    public List<String> subCommands() {
+        return commands;
+    }
+}
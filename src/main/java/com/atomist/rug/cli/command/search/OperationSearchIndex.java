@@ -0,0 +1,230 @@
+package com.atomist.rug.cli.command.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import com.atomist.rug.cli.resolver.LocalRepositoryIndex;
+import com.atomist.rug.cli.resolver.LocalRepositoryIndex.Archive;
+import com.atomist.rug.cli.resolver.LocalRepositoryIndex.Operation;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Inverted index over the operations of all archives in the local repository. Postings are kept
+// per archive so that only archives added, changed or removed since the last search get
+// re-tokenized.
+public class OperationSearchIndex {
+
+    private static final int FORMAT = 1;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File repository;
+    private final File indexFile;
+
+    public OperationSearchIndex(File repository) {
+        this.repository = repository.getAbsoluteFile();
+        this.indexFile = new File(FileUtils.getCacheDirectory("search-index"),
+                ChecksumUtils.sha1(this.repository.getPath()) + ".json");
+    }
+
+    public synchronized List<Archive> search(String search, Collection<String> tags,
+            String type) {
+        Postings postings = update();
+
+        Set<String> candidates = null;
+        for (String token : tokenize(search)) {
+            // Every token of the search has to prefix-match some term of the operation
+            Set<String> matches = postings.getTerms().subMap(token, token + Character.MAX_VALUE)
+                    .values().stream().flatMap(Set::stream).collect(Collectors.toSet());
+            if (candidates == null) {
+                candidates = matches;
+            }
+            else {
+                candidates.retainAll(matches);
+            }
+        }
+
+        Set<String> lowerCaseTags = tags.stream().map(t -> t.toLowerCase(Locale.ENGLISH))
+                .collect(Collectors.toSet());
+        Map<String, Archive> archives = new HashMap<>();
+        Set<String> matches = new LinkedHashSet<>();
+        for (Archive archive : postings.getArchives().values()) {
+            archives.put(archive.getPath(), archive);
+            List<Operation> operations = archive.getOperations();
+            for (int i = 0; i < operations.size(); i++) {
+                Operation operation = operations.get(i);
+                if ((candidates == null || candidates.contains(docId(archive, i)))
+                        && (type == null || type.equalsIgnoreCase(operation.getType()))
+                        && operation.getTags().stream().map(t -> t.toLowerCase(Locale.ENGLISH))
+                                .collect(Collectors.toSet()).containsAll(lowerCaseTags)) {
+                    matches.add(archive.getPath());
+                }
+            }
+        }
+        return matches.stream().map(archives::get).collect(Collectors.toList());
+    }
+
+    private Postings update() {
+        Postings postings = read();
+        Map<String, Archive> current = new LocalRepositoryIndex(repository)
+                .archives(repository).stream()
+                .collect(Collectors.toMap(Archive::getPath, a -> a, (a1, a2) -> a1));
+
+        boolean changed = false;
+        for (Archive archive : new ArrayList<>(postings.getArchives().values())) {
+            Archive now = current.get(archive.getPath());
+            if (now == null || now.getSize() != archive.getSize()
+                    || now.getLastModified() != archive.getLastModified()) {
+                remove(postings, archive);
+                changed = true;
+            }
+        }
+        for (Archive archive : current.values()) {
+            if (!postings.getArchives().containsKey(archive.getPath())) {
+                add(postings, archive);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            write(postings);
+        }
+        return postings;
+    }
+
+    private void add(Postings postings, Archive archive) {
+        postings.getArchives().put(archive.getPath(), archive);
+        for (int i = 0; i < archive.getOperations().size(); i++) {
+            String id = docId(archive, i);
+            terms(archive, archive.getOperations().get(i)).forEach(t -> postings.getTerms()
+                    .computeIfAbsent(t, k -> new TreeSet<>()).add(id));
+        }
+    }
+
+    private void remove(Postings postings, Archive archive) {
+        postings.getArchives().remove(archive.getPath());
+        for (int i = 0; i < archive.getOperations().size(); i++) {
+            String id = docId(archive, i);
+            terms(archive, archive.getOperations().get(i)).forEach(t -> {
+                Set<String> ids = postings.getTerms().get(t);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.getTerms().remove(t);
+                    }
+                }
+            });
+        }
+    }
+
+    private Set<String> terms(Archive archive, Operation operation) {
+        Set<String> terms = new HashSet<>();
+        terms.addAll(tokenize(archive.getGroup()));
+        terms.addAll(tokenize(archive.getArtifact()));
+        terms.addAll(tokenize(operation.getName()));
+        terms.addAll(tokenize(operation.getDescription()));
+        operation.getTags().forEach(t -> terms.addAll(tokenize(t)));
+        operation.getParameters().forEach(p -> terms.addAll(tokenize(p)));
+        return terms;
+    }
+
+    private String docId(Archive archive, int operation) {
+        return archive.getPath() + "#" + operation;
+    }
+
+    // Splits on anything but letters and digits as well as on camel case humps so that
+    // AddSpringBootStarter is found searching for spring
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            tokens.add(word.toLowerCase(Locale.ENGLISH));
+            for (String part : word.split("(?<=\\p{Ll})(?=\\p{Lu})|(?<=\\p{L})(?=\\p{N})")) {
+                tokens.add(part.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return tokens;
+    }
+
+    private Postings read() {
+        if (indexFile.exists()) {
+            try {
+                Postings postings = mapper.readValue(indexFile, Postings.class);
+                if (postings.getFormat() == FORMAT) {
+                    return postings;
+                }
+            }
+            catch (IOException e) {
+                // Corrupt index; rebuild from scratch
+            }
+        }
+        Postings postings = new Postings();
+        postings.setFormat(FORMAT);
+        return postings;
+    }
+
+    private void write(Postings postings) {
+        try {
+            indexFile.getParentFile().mkdirs();
+            File tempFile = new File(indexFile.getPath() + ".tmp");
+            mapper.writeValue(tempFile, postings);
+            if (!tempFile.renameTo(indexFile)) {
+                org.apache.commons.io.FileUtils.copyFile(tempFile, indexFile);
+                tempFile.delete();
+            }
+        }
+        catch (IOException e) {
+            // Next search will rebuild what's missing
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Postings {
+
+        private Map<String, Archive> archives = new HashMap<>();
+        private int format;
+        private TreeMap<String, Set<String>> terms = new TreeMap<>();
+
+        public Map<String, Archive> getArchives() {
+            return archives;
+        }
+
+        public int getFormat() {
+            return format;
+        }
+
+        public TreeMap<String, Set<String>> getTerms() {
+            return terms;
+        }
+
+        public void setArchives(Map<String, Archive> archives) {
+            this.archives = archives;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+
+        public void setTerms(TreeMap<String, Set<String>> terms) {
+            this.terms = terms;
+        }
+    }
+}
@@ -1,20 +1,32 @@
 package com.atomist.rug.cli.command.search;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.springframework.util.StringUtils;
 
 import com.atomist.rug.cli.Constants;
@@ -23,9 +35,13 @@ import com.atomist.rug.cli.command.CommandException;
 import com.atomist.rug.cli.command.annotation.Argument;
 import com.atomist.rug.cli.command.annotation.Command;
 import com.atomist.rug.cli.command.annotation.Option;
+import com.atomist.rug.cli.output.ProgressReporter;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.output.Style;
 import com.atomist.rug.cli.settings.Settings;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
 import com.atomist.rug.cli.utils.HttpClientFactory;
 import com.atomist.rug.cli.version.VersionUtils;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -36,42 +52,81 @@ public class SearchCommand extends AbstractAnnotationBasedCommand {
 
     private ObjectMapper mapper = new ObjectMapper();
 
+    private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(15);
+    private static final int DEFAULT_TIMEOUT = 10;
+
     @Command
     public void run(Settings settings, @Argument(index = 1) String search,
-            @Option("tag") Properties tags, @Option("type") String type) {
+            @Option("tag") Properties tags, @Option("type") String type,
+            @Option("timeout") String timeout) {
 
-        if (settings.getCatalogs().getUrls().isEmpty()) {
+        boolean offline = CommandLineOptions.hasOption("offline");
+        if (!offline && settings.getCatalogs().getUrls().isEmpty()) {
             throw new CommandException("No catalog endpoints configured in cli.yml.");
         }
 
-        Map<String, List<Operation>> operations = new ProgressReportingOperationRunner<Map<String, List<Operation>>>(
-                "Searching catalogs").run(indicator -> {
-                    List<Operation> results = settings.getCatalogs().getUrls().stream().map(u -> {
-                        indicator.report("  Searching " + u);
-                        return collectResults(u, search, type, tags);
-                    }).flatMap(List::stream).collect(Collectors.toList());
+        long deadline = TimeUnit.SECONDS.toMillis(parseTimeout(timeout));
+        String query = getSearchQuery(search, type, tags);
+
+        // Installed archives answer first; catalogs get their own section unless offline
+        Map<String, List<Operation>> local = new ProgressReportingOperationRunner<Map<String, List<Operation>>>(
+                "Searching local repository")
+                        .run(indicator -> groupByArchive(searchLocalRepository(settings, search,
+                                tags.stringPropertyNames(), type, indicator)));
+        printArchives("Local Archives", local);
+        boolean found = !local.isEmpty();
+
+        if (!offline) {
+            Map<String, List<Operation>> remote = new ProgressReportingOperationRunner<Map<String, List<Operation>>>(
+                    "Searching catalogs").run(indicator -> groupByArchive(searchCatalogs(
+                            settings.getCatalogs().getUrls(), query, deadline, indicator)));
+            printArchives("Remote Archives", remote);
+            found |= !remote.isEmpty();
+        }
 
-                    return results.stream()
-                            .collect(Collectors.groupingBy(o -> o.getArchive().key()));
+        if (found) {
+            log.info("For more information on specific archive version, run:\n"
+                    + "  %s describe archive ARCHIVE -a VERSION", Constants.COMMAND);
+        }
+    }
 
-                });
+    private Map<String, List<Operation>> groupByArchive(List<Operation> operations) {
+        return operations.stream().collect(Collectors.groupingBy(o -> o.getArchive().key()));
+    }
 
+    private void printArchives(String title, Map<String, List<Operation>> operations) {
         log.newline();
-        log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Remote Archives") + " ("
+        log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold(title) + " ("
                 + operations.size() + " "
                 + com.atomist.rug.cli.utils.StringUtils.puralize("archive", operations.keySet())
                 + " found)");
 
         if (operations.isEmpty()) {
             log.info(Style.yellow("  No matching archives found"));
-            log.newline();
         }
         else {
             operations.entrySet().stream().sorted(Comparator.comparing(Map.Entry::getKey))
                     .forEach(a -> printArchive(a.getValue()));
-            log.info("\nFor more information on specific archive version, run:\n"
-                    + "  %s describe archive ARCHIVE -a VERSION", Constants.COMMAND);
         }
+        log.newline();
+    }
+
+    private int parseTimeout(String timeout) {
+        if (timeout == null) {
+            return DEFAULT_TIMEOUT;
+        }
+        try {
+            int seconds = Integer.parseInt(timeout);
+            if (seconds > 0) {
+                return seconds;
+            }
+        }
+        catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new CommandException(
+                String.format("Invalid timeout %s. Please specify a number of seconds.", timeout),
+                "search");
     }
 
     private void printArchive(List<Operation> operations) {
@@ -80,38 +135,158 @@ public class SearchCommand extends AbstractAnnotationBasedCommand {
                 archive.getVersion().getValue());
     }
 
-    private List<Operation> collectResults(String endpoint, String search, String type,
-            Properties tags) {
+    private List<Operation> searchLocalRepository(Settings settings, String search,
+            Collection<String> tags, String type, ProgressReporter indicator) {
+        File repo = new File(settings.getLocalRepository().path());
+        if (!repo.exists()) {
+            return new ArrayList<>();
+        }
+        List<Operation> results = new OperationSearchIndex(repo).search(search, tags, type)
+                .stream().map(a -> {
+                    Version version = new Version();
+                    version.setValue(a.getVersion());
+                    Archive archive = new Archive();
+                    archive.setGroup(a.getGroup());
+                    archive.setArtifact(a.getArtifact());
+                    archive.setVersion(version);
+                    Operation operation = new Operation();
+                    operation.setArchive(archive);
+                    return operation;
+                }).collect(Collectors.toList());
+        indicator.report(String.format("  Searched local repository (%s %s)", results.size(),
+                com.atomist.rug.cli.utils.StringUtils.puralize("result", results)));
+        return results;
+    }
 
+    private List<Operation> searchCatalogs(List<String> urls, String query, long deadline,
+            ProgressReporter indicator) {
+        List<String> endpoints = urls.stream().map(this::catalogEndpoint)
+                .collect(Collectors.toList());
+        List<Operation> results = new ArrayList<>();
+
+        // Serve what we can from the cache and only go out for the rest
+        List<String> remaining = new ArrayList<>();
+        endpoints.forEach(e -> {
+            Optional<List<Operation>> cached = readCache(e, query);
+            if (cached.isPresent()) {
+                indicator.report("  Searched " + e + " (cached)");
+                results.addAll(cached.get());
+            }
+            else {
+                remaining.add(e);
+            }
+        });
+        if (remaining.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(remaining.size(), r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        Map<Future<List<Operation>>, String> futures = new HashMap<>();
+        try (CloseableHttpClient client = HttpClientFactory.createPooledHttpClient(
+                remaining, "rug-cli-" + VersionUtils.readVersion().orElse("0.0.0"),
+                remaining.size(), (int) deadline)) {
+            CompletionService<List<Operation>> completionService = new ExecutorCompletionService<>(
+                    executor);
+            remaining.forEach(e -> {
+                indicator.report("  Searching " + e);
+                futures.put(completionService.submit(() -> collectResults(client, e, query)), e);
+            });
+
+            // Merge results as they arrive until all catalogs answered or we run out of time
+            long end = System.currentTimeMillis() + deadline;
+            for (int i = 0; i < remaining.size(); i++) {
+                Future<List<Operation>> future = completionService
+                        .poll(Math.max(0, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    break;
+                }
+                String endpoint = futures.remove(future);
+                try {
+                    List<Operation> operations = future.get();
+                    indicator.report(String.format("  Searched %s (%s %s)", endpoint,
+                            operations.size(), com.atomist.rug.cli.utils.StringUtils
+                                    .puralize("result", operations)));
+                    results.addAll(operations);
+                }
+                catch (ExecutionException e) {
+                    indicator.report(String.format("  Failed searching %s: %s", endpoint,
+                            e.getCause().getMessage()));
+                }
+            }
+            futures.values().forEach(e -> indicator.report("  Timed out searching " + e));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            // closing the client failed; nothing to do about it
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private String catalogEndpoint(String endpoint) {
         if (!endpoint.endsWith(Constants.CATALOG_PATH)) {
             if (!endpoint.endsWith("/")) {
                 endpoint = endpoint + "/";
             }
             endpoint = endpoint + Constants.CATALOG_PATH;
         }
+        return endpoint;
+    }
 
-        HttpClient client = HttpClientFactory.createHttpClient(endpoint,
-                "rug-cli-" + VersionUtils.readVersion().orElse("0.0.0"));
+    private List<Operation> collectResults(HttpClient client, String endpoint, String query)
+            throws IOException {
         HttpPost post = new HttpPost(endpoint);
+        post.setEntity(new StringEntity(query, ContentType.APPLICATION_JSON));
 
-        StringEntity requestEntity = new StringEntity(getSearchQuery(search, type, tags),
-                ContentType.APPLICATION_JSON);
-
-        post.setEntity(requestEntity);
+        HttpResponse response = client.execute(post);
         try {
-            HttpResponse response = client.execute(post);
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                return mapper.readValue(response.getEntity().getContent(), Operations.class)
-                        .getOperations();
+                byte[] body = EntityUtils.toByteArray(response.getEntity());
+                writeCache(endpoint, query, body);
+                return mapper.readValue(body, Operations.class).getOperations();
             }
+            throw new IOException(response.getStatusLine().toString());
+        }
+        finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    private File cacheFile(String endpoint, String query) {
+        return new File(FileUtils.getCacheDirectory("search"),
+                ChecksumUtils.sha1(endpoint + "\n" + query) + ".json");
+    }
+
+    private Optional<List<Operation>> readCache(String endpoint, String query) {
+        File file = cacheFile(endpoint, query);
+        if (CommandLineOptions.hasOption("u") || !file.exists()
+                || System.currentTimeMillis() - file.lastModified() > CACHE_TTL) {
+            return Optional.empty();
         }
-        catch (ClientProtocolException e) {
-            new CommandException("Client error occurred searching online catalog", e);
+        try {
+            return Optional.of(mapper.readValue(file, Operations.class).getOperations());
         }
         catch (IOException e) {
-            new CommandException("IO error occurred searching online catalog", e);
+            return Optional.empty();
+        }
+    }
+
+    private void writeCache(String endpoint, String query, byte[] body) {
+        File file = cacheFile(endpoint, query);
+        try {
+            org.apache.commons.io.FileUtils.writeByteArrayToFile(file, body);
+        }
+        catch (IOException e) {
+            // not being able to cache the response shouldn't fail the search
         }
-        return Collections.emptyList();
     }
 
     private String getSearchQuery(String search, String type, Properties tags) {
@@ -174,6 +349,9 @@ public class SearchCommand extends AbstractAnnotationBasedCommand {
             return archive;
         }
 
+        public void setArchive(Archive archive) {
+            this.archive = archive;
+        }
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
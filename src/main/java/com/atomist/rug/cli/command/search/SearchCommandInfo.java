@@ -18,7 +18,7 @@ public class SearchCommandInfo extends AbstractRugScopedCommandInfo {
 
     @Override
     public String detail() {
-        return "SEARCH could be any text used to search the catalog.  TAG can be any valid tag, eg. spring or elm.  TYPE can be either 'editor', 'generator', 'executor' or 'reviewer'.";
+        return "SEARCH could be any text used to search the catalog.  TAG can be any valid tag, eg. spring or elm.  TYPE can be either 'editor', 'generator', 'executor' or 'reviewer'.  Archives in the local repository are searched as well; with --offline only those are.";
     }
 
     @Override
@@ -28,6 +28,9 @@ public class SearchCommandInfo extends AbstractRugScopedCommandInfo {
                 .desc("Specify a TAG to filter search").longOpt("tag").optionalArg(true).build());
         options.addOption(Option.builder().argName("TYPE").hasArg(true)
                 .desc("Specify a TYPE to filter search based on Rug type").longOpt("type").optionalArg(true).build());
+        options.addOption(Option.builder().argName("SECONDS").hasArg(true)
+                .desc("Give up on catalogs not responding within SECONDS, defaults to 10")
+                .longOpt("timeout").build());
         return options;
     }
 
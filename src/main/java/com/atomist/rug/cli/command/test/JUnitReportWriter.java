@@ -0,0 +1,70 @@
+package com.atomist.rug.cli.command.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.atomist.rug.cli.command.CommandException;
+
+// Writes scenario results in the JUnit XML format understood by most CI servers
+public class JUnitReportWriter {
+
+    public void write(File file, String suite, List<ScenarioResult> results) {
+        if (file.getAbsoluteFile().getParentFile() != null) {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        try (OutputStream os = Files.newOutputStream(file.toPath())) {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(os,
+                    "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("testsuite");
+            xml.writeAttribute("name", suite);
+            xml.writeAttribute("tests", String.valueOf(results.size()));
+            xml.writeAttribute("failures",
+                    String.valueOf(results.stream().filter(r -> !r.isPassed()).count()));
+            xml.writeAttribute("skipped",
+                    String.valueOf(results.stream().filter(ScenarioResult::isSkipped).count()));
+            xml.writeAttribute("time",
+                    seconds(results.stream().mapToLong(ScenarioResult::duration).sum()));
+
+            for (ScenarioResult result : results) {
+                xml.writeStartElement("testcase");
+                xml.writeAttribute("name", result.name());
+                xml.writeAttribute("classname", suite);
+                xml.writeAttribute("time", seconds(result.duration()));
+                if (result.isSkipped()) {
+                    xml.writeEmptyElement("skipped");
+                    xml.writeAttribute("message", "Unchanged since last successful run");
+                }
+                else if (!result.isPassed()) {
+                    List<String> messages = result.failureMessages();
+                    xml.writeStartElement("failure");
+                    xml.writeAttribute("message",
+                            messages.isEmpty() ? "Scenario failed" : messages.get(0));
+                    xml.writeCharacters(String.join("\n", messages));
+                    xml.writeEndElement();
+                }
+                xml.writeEndElement();
+            }
+
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        }
+        catch (IOException | XMLStreamException e) {
+            throw new CommandException(String.format("Failed to write test report %s: %s",
+                    file.getAbsolutePath(), e.getMessage()), "test");
+        }
+    }
+
+    private String seconds(long millis) {
+        return String.format(Locale.ENGLISH, "%.3f", millis / 1000D);
+    }
+}
@@ -0,0 +1,57 @@
+package com.atomist.rug.cli.command.test;
+
+import static scala.collection.JavaConversions.asJavaCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.atomist.rug.test.TestReport;
+import com.atomist.rug.test.TestScenario;
+
+// Outcome of a single scenario; scenarios skipped because they passed before with the same
+// sources don't have a report
+public class ScenarioResult {
+
+    private final TestScenario scenario;
+    private final TestReport report;
+    private final long duration;
+
+    public ScenarioResult(TestScenario scenario, TestReport report, long duration) {
+        this.scenario = scenario;
+        this.report = report;
+        this.duration = duration;
+    }
+
+    public static ScenarioResult skipped(TestScenario scenario) {
+        return new ScenarioResult(scenario, null, 0);
+    }
+
+    public String name() {
+        return scenario.name();
+    }
+
+    public TestReport report() {
+        return report;
+    }
+
+    public long duration() {
+        return duration;
+    }
+
+    public boolean isSkipped() {
+        return report == null;
+    }
+
+    public boolean isPassed() {
+        return report == null || report.passed();
+    }
+
+    public List<String> failureMessages() {
+        List<String> messages = new ArrayList<>();
+        if (report != null) {
+            asJavaCollection(report.failures()).forEach(t -> asJavaCollection(t.failures())
+                    .forEach(a -> messages.add(String.valueOf(a.message()))));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,138 @@
+package com.atomist.rug.cli.command.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.atomist.rug.test.TestScenario;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Durations of test scenarios kept in a file that all workers of a sharded run share, eg. one
+// restored from the CI cache. Shards only get balanced by duration with such a file; local
+// history differs between machines and would make workers disagree on the split.
+public class ScenarioTimings {
+
+    private static final int FORMAT = 1;
+
+    // Assumed duration of scenarios that never ran before
+    private static final long DEFAULT_DURATION = 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File file;
+    private final Timings timings;
+
+    public ScenarioTimings(File file) {
+        this.file = file;
+        this.timings = read();
+    }
+
+    // Splits scenarios into count shards and returns the scenarios of the shard with the given
+    // 1-based index. Without timings scenarios get assigned by a hash of their name; with timings
+    // the shards get about the same total duration. Either way the split only depends on inputs
+    // all workers share.
+    public static List<TestScenario> shard(List<TestScenario> scenarios, int index, int count,
+            ScenarioTimings timings) {
+        List<TestScenario> shard = new ArrayList<>();
+        if (timings == null) {
+            scenarios.stream().filter(s -> Math.floorMod(s.name().hashCode(), count) == index - 1)
+                    .forEach(shard::add);
+            return shard;
+        }
+
+        List<TestScenario> sorted = new ArrayList<>(scenarios);
+        sorted.sort(Comparator.comparingLong((TestScenario s) -> -timings.duration(s.name()))
+                .thenComparing(TestScenario::name));
+        long[] totals = new long[count];
+        for (TestScenario scenario : sorted) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (totals[i] < totals[lightest]) {
+                    lightest = i;
+                }
+            }
+            totals[lightest] += timings.duration(scenario.name());
+            if (lightest == index - 1) {
+                shard.add(scenario);
+            }
+        }
+        // Keep the order the scenarios were defined in
+        return scenarios.stream().filter(shard::contains).collect(Collectors.toList());
+    }
+
+    public synchronized void record(String scenario, long duration) {
+        timings.getScenarios().put(scenario, duration);
+    }
+
+    public synchronized void write() {
+        try {
+            if (file.getAbsoluteFile().getParentFile() != null) {
+                file.getAbsoluteFile().getParentFile().mkdirs();
+            }
+            File tempFile = new File(file.getPath() + ".tmp");
+            mapper.writeValue(tempFile, timings);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            // Shards just don't get balanced as well next time
+        }
+    }
+
+    private long duration(String scenario) {
+        return timings.getScenarios().getOrDefault(scenario, DEFAULT_DURATION);
+    }
+
+    private Timings read() {
+        if (file.exists()) {
+            try {
+                Timings timings = mapper.readValue(file, Timings.class);
+                if (timings.getFormat() == FORMAT) {
+                    return timings;
+                }
+            }
+            catch (IOException e) {
+                // Corrupt file; start over
+            }
+        }
+        Timings timings = new Timings();
+        timings.setFormat(FORMAT);
+        return timings;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Timings {
+
+        private int format;
+        private Map<String, Long> scenarios = new TreeMap<>();
+
+        public int getFormat() {
+            return format;
+        }
+
+        public Map<String, Long> getScenarios() {
+            return scenarios;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+
+        public void setScenarios(Map<String, Long> scenarios) {
+            this.scenarios = scenarios;
+        }
+    }
+}
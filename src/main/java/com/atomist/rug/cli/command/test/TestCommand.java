@@ -4,26 +4,44 @@ import static scala.collection.JavaConversions.asJavaCollection;
 import static scala.collection.JavaConversions.asScalaBuffer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.atomist.project.archive.DefaultAtomistConfig$;
 import com.atomist.project.archive.Operations;
 import com.atomist.rug.cli.Constants;
 import com.atomist.rug.cli.Log;
+import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.cli.command.AbstractAnnotationBasedCommand;
 import com.atomist.rug.cli.command.CommandException;
 import com.atomist.rug.cli.command.CommandUtils;
 import com.atomist.rug.cli.command.annotation.Argument;
 import com.atomist.rug.cli.command.annotation.Command;
+import com.atomist.rug.cli.command.annotation.Option;
 import com.atomist.rug.cli.command.utils.ArtifactSourceUtils;
+import com.atomist.rug.cli.command.utils.ParallelUtils;
+import com.atomist.rug.cli.output.ProgressReporter;
 import com.atomist.rug.cli.output.ProgressReportingOperationRunner;
 import com.atomist.rug.cli.output.Style;
 import com.atomist.rug.cli.tree.ArtifactSourceTreeCreator;
 import com.atomist.rug.cli.tree.LogVisitor;
 import com.atomist.rug.cli.utils.ArtifactDescriptorUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.StringUtils;
+import com.atomist.rug.loader.OperationsAndHandlers;
 import com.atomist.rug.resolver.ArtifactDescriptor;
 import com.atomist.rug.test.RugTestParser;
 import com.atomist.rug.test.TestLoader;
@@ -33,68 +51,155 @@ import com.atomist.rug.test.TestScenario;
 import com.atomist.source.ArtifactSource;
 import com.atomist.source.FileArtifact;
 
-import scala.collection.Seq;
-
 public class TestCommand extends AbstractAnnotationBasedCommand {
 
     private Log log = new Log(getClass());
 
     @Command
     public void run(Operations operations, ArtifactDescriptor artifact,
-            @Argument(index = 1) String testName) {
+            @Argument(index = 1) String testName, @Option("parallel") String parallel,
+            @Option("watch") boolean watch, @Option("changed-only") boolean changedOnly,
+            @Option("shard") String shard, @Option("timings") String timingsFile,
+            @Option("junit") String junit) {
 
+        int threads = (parallel != null ? ParallelUtils.threads(parallel, "test") : 1);
+        int[] shardSpec = (shard != null ? parseShard(shard) : null);
         File workingDir = CommandUtils.getRequiredWorkingDirectory();
         ArtifactSource source = ArtifactSourceUtils.createArtifactSource(workingDir);
+        TestResultCache cache = new TestResultCache(workingDir);
+        ScenarioTimings timings = (timingsFile != null
+                ? new ScenarioTimings(FileUtils.createProjectRoot(timingsFile))
+                : null);
+
+        List<TestScenario> scenarios = selectScenarios(source, testName);
+        if (shardSpec != null) {
+            scenarios = ScenarioTimings.shard(scenarios, shardSpec[0], shardSpec[1], timings);
+            log.info("Running shard %s of %s with %s of the test scenarios", shardSpec[0],
+                    shardSpec[1], scenarios.size());
+        }
+
+        // Scenarios are tracked by position as different test files might use the same names
+        List<String> ids = TestResultCache.ids(scenarios);
+        List<String> keys = cache.keys(source, operations, scenarios);
+        List<Integer> toRun = IntStream.range(0, scenarios.size())
+                .filter(i -> !changedOnly || !cache.isUnchanged(ids.get(i), keys.get(i))).boxed()
+                .collect(Collectors.toList());
+
+        List<ScenarioResult> executed = runTests(
+                toRun.stream().map(scenarios::get).collect(Collectors.toList()), workingDir,
+                source, artifact, operations, threads);
+        List<ScenarioResult> results = scenarios.stream().map(ScenarioResult::skipped)
+                .collect(Collectors.toList());
+        for (int i = 0; i < executed.size(); i++) {
+            int scenario = toRun.get(i);
+            ScenarioResult result = executed.get(i);
+            results.set(scenario, result);
+            cache.record(ids.get(scenario), keys.get(scenario), result.isPassed(),
+                    result.duration());
+            if (timings != null) {
+                timings.record(result.name(), result.duration());
+            }
+        }
+        cache.write();
+        if (timings != null) {
+            timings.write();
+        }
+
+        if (junit != null) {
+            new JUnitReportWriter().write(FileUtils.createProjectRoot(junit),
+                    artifact.group() + ":" + artifact.artifact(), results);
+        }
+        printResults(results, !watch);
 
+        if (watch) {
+            watch(workingDir, artifact, operations, testName, threads);
+        }
+    }
+
+    // Parses I/N into shard index and count
+    private int[] parseShard(String shard) {
+        String[] parts = shard.split("/");
+        try {
+            if (parts.length == 2) {
+                int index = Integer.parseInt(parts[0].trim());
+                int count = Integer.parseInt(parts[1].trim());
+                if (count > 0 && index > 0 && index <= count) {
+                    return new int[] { index, count };
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new CommandException(String.format(
+                "Invalid value %s for --shard. Please specify I/N with 1 <= I <= N, eg. 1/4.",
+                shard), "test");
+    }
+
+    private List<TestScenario> selectScenarios(ArtifactSource source, String testName) {
         TestLoader testLoader = new TestLoader(DefaultAtomistConfig$.MODULE$);
-        Seq<TestScenario> scenarios = testLoader.loadTestScenarios(source);
-        TestReport report;
+        List<TestScenario> scenarios = new ArrayList<>(
+                asJavaCollection(testLoader.loadTestScenarios(source)));
 
         // run all tests
         if (testName == null) {
-            report = runTests(scenarios, source, artifact, operations);
+            return scenarios;
+        }
+
+        // search for one scenario
+        Optional<TestScenario> scenario = scenarios.stream()
+                .filter(s -> s.name().equals(testName)).findFirst();
+        if (scenario.isPresent()) {
+            return Collections.singletonList(scenario.get());
+        }
+
+        // search for scenarios from a given file
+        List<FileArtifact> testFiles = asJavaCollection(source.allFiles()).stream()
+                .filter(f -> DefaultAtomistConfig$.MODULE$.isRugTest(f) && f.name()
+                        .equals(testName + DefaultAtomistConfig$.MODULE$.testExtension()))
+                .collect(Collectors.toList());
+
+        if (!testFiles.isEmpty()) {
+            return testFiles.stream().flatMap(f -> asJavaCollection(RugTestParser.parse(f))
+
+                    .stream()).collect(Collectors.toList());
         }
         else {
-            // search for one scenario
-            Optional<TestScenario> scenario = asJavaCollection(scenarios).stream()
-                    .filter(s -> s.name().equals(testName)).findFirst();
-            if (scenario.isPresent()) {
-                report = runTests(asScalaBuffer(Collections.singletonList(scenario.get())), source,
-                        artifact, operations);
-            }
-            else {
-                // search for scenarios from a given file
-                List<FileArtifact> testFiles = asJavaCollection(source.allFiles()).stream()
-                        .filter(f -> DefaultAtomistConfig$.MODULE$.isRugTest(f) && f.name()
-                                .equals(testName + DefaultAtomistConfig$.MODULE$.testExtension()))
-                        .collect(Collectors.toList());
-
-                if (!testFiles.isEmpty()) {
-                    List<TestScenario> fileScenarios = testFiles.stream()
-                            .flatMap(f -> asJavaCollection(RugTestParser.parse(f))
-
-                                    .stream())
-                            .collect(Collectors.toList());
-                    report = runTests(asScalaBuffer(fileScenarios), source, artifact, operations);
+            throw new CommandException(String.format(
+                    "Specified test scenario or test file %s could not be found.", testName));
+        }
+    }
 
-                }
-                else {
-                    throw new CommandException(String.format(
-                            "Specified test scenario or test file %s could not be found.",
-                            testName));
-                }
-            }
+    private void printResults(List<ScenarioResult> results, boolean failOnError) {
+        List<TestReport> reports = results.stream().filter(r -> !r.isSkipped())
+                .map(ScenarioResult::report).collect(Collectors.toList());
+        List<ScenarioResult> skipped = results.stream().filter(ScenarioResult::isSkipped)
+                .collect(Collectors.toList());
+        int passed = reports.stream().mapToInt(r -> r.passedTests().size()).sum();
+        int tests = reports.stream().mapToInt(r -> r.tests().size()).sum();
+        int failures = reports.stream().mapToInt(r -> r.failures().size()).sum();
+
+        if (CommandLineOptions.hasOption("t") && !reports.isEmpty()) {
+            log.newline();
+            log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Scenario Timings"));
+            results.stream().filter(r -> !r.isSkipped())
+                    .forEach(r -> log.info("  %s %ss", Style.yellow(r.name()),
+                            String.format(Locale.ENGLISH, "%.2f", r.duration() / 1000F)));
         }
 
         log.newline();
-        if ((report != null) && (report.passed())) {
+        if (!skipped.isEmpty()) {
+            log.info("Skipped %s unchanged %s that passed before", skipped.size(),
+                    StringUtils.puralize("scenario", skipped));
+        }
+        if (reports.stream().allMatch(TestReport::passed)) {
             log.info(Style
                     .green(String.format("Successfully executed %s of %s scenarios: Test SUCCESS",
-                            report.passedTests().size(), report.tests().size())));
+                            passed, tests)));
         }
         else {
             log.info(Style.cyan(Constants.DIVIDER) + " " + Style.bold("Failed Scenarios"));
-            asJavaCollection(report.failures()).forEach(t -> {
+            reports.forEach(report -> asJavaCollection(report.failures()).forEach(t -> {
                 log.info(Style.yellow("  %s", t.name())
                         + String.format(" (%s of %s assertions failed)", t.failures().size(),
                                 t.assertions().size()));
@@ -110,25 +215,216 @@ public class TestCommand extends AbstractAnnotationBasedCommand {
                     ArtifactSourceTreeCreator.visitTree(t.eventLog().output().getOrElse(null),
                             new LogVisitor(log, "    "));
                 }
-            });
-            throw new CommandException(
-                    String.format("Unsuccessfully executed %s of %s scenarios: Test FAILED",
-                            "" + report.failures().size(), "" + report.tests().size()));
+            }));
+            String message = String.format(
+                    "Unsuccessfully executed %s of %s scenarios: Test FAILED", "" + failures,
+                    "" + tests);
+            if (failOnError) {
+                throw new CommandException(message);
+            }
+            log.newline();
+            log.info(Style.red(message));
         }
     }
 
-    private TestReport runTests(Seq<TestScenario> scenarios, ArtifactSource source,
-            ArtifactDescriptor artifact, Operations operations) {
-        return new ProgressReportingOperationRunner<TestReport>(String.format(
-                "Running test scenarios in %s", ArtifactDescriptorUtils.coordinates(artifact)))
-                        .run(indicator -> {
-                            TestRunner testRunner = new TestRunner(indicator::report);
+    // Keeps the runtime with all resolved dependencies around and re-runs the scenarios affected
+    // by every change to the archive until the process gets stopped
+    private void watch(File workingDir, ArtifactDescriptor artifact, Operations operations,
+            String testName, int threads) {
+        try (TestWatcher watcher = new TestWatcher(workingDir)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                log.newline();
+                log.info(Style.cyan(Constants.DIVIDER) + " Watching %s for changes",
+                        FileUtils.relativize(new File(workingDir, ".atomist")));
+                Set<String> changes = watcher.awaitChanges();
+                try {
+                    ArtifactSource source = ArtifactSourceUtils.createArtifactSource(workingDir);
+                    // Changed tests don't require reloading the operations
+                    if (changes == null || changes.stream().anyMatch(p -> !isTest(p))) {
+                        OperationsAndHandlers reloaded = recompileOperationsAndHandlers();
+                        if (reloaded != null) {
+                            operations = reloaded.operations();
+                        }
+                    }
+                    List<TestScenario> scenarios = affectedScenarios(workingDir, source,
+                            operations, testName, changes);
+                    if (scenarios.isEmpty()) {
+                        log.newline();
+                        log.info("No test scenarios affected by changes");
+                        continue;
+                    }
+                    printResults(runTests(scenarios, workingDir, source, artifact, operations,
+                            threads), false);
+                }
+                catch (RuntimeException e) {
+                    // Broken sources or tests shouldn't end the session; they get fixed next
+                    log.newline();
+                    log.info(Style.red(e.getMessage() != null ? e.getMessage()
+                            : e.getClass().getName()));
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            throw new RunnerException(e);
+        }
+    }
+
+    // Scenarios from changed test files and from test files mentioning operations defined in
+    // changed sources
+    private List<TestScenario> affectedScenarios(File workingDir, ArtifactSource source,
+            Operations operations, String testName, Set<String> changes) {
+        List<TestScenario> candidates = selectScenarios(source, testName);
+        List<FileArtifact> testFiles = asJavaCollection(source.allFiles()).stream()
+                .filter(f -> DefaultAtomistConfig$.MODULE$.isRugTest(f))
+                .collect(Collectors.toList());
+        Optional<Set<String>> affected = affectedTests(workingDir, changes,
+                TestResultCache.operationNames(operations), testFiles.stream()
+                        .collect(Collectors.toMap(FileArtifact::path, FileArtifact::content)));
+        if (!affected.isPresent()) {
+            return candidates;
+        }
+
+        Set<String> names = testFiles.stream().filter(f -> affected.get().contains(f.path()))
+                .flatMap(f -> asJavaCollection(RugTestParser.parse(f)).stream())
+                .map(TestScenario::name).collect(Collectors.toSet());
+        return candidates.stream().filter(s -> names.contains(s.name()))
+                .collect(Collectors.toList());
+    }
+
+    // Paths of the tests that changed or mention an operation defined in a changed source. If a
+    // change can't be attributed to any operation, all tests are affected and nothing is
+    // returned.
+    static Optional<Set<String>> affectedTests(File workingDir, Set<String> changes,
+            List<String> operationNames, Map<String, String> tests) {
+        if (changes == null) {
+            return Optional.empty();
+        }
+
+        Set<String> changedOperations = new HashSet<>();
+        for (String path : changes) {
+            if (isTest(path)) {
+                continue;
+            }
+            File file = new File(workingDir, path);
+            if (!file.isFile()) {
+                return Optional.empty();
+            }
+            String content;
+            try {
+                content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            }
+            catch (IOException e) {
+                return Optional.empty();
+            }
+            List<String> defined = operationNames.stream()
+                    .filter(n -> TestResultCache.mentions(content, n))
+                    .collect(Collectors.toList());
+            if (defined.isEmpty()) {
+                return Optional.empty();
+            }
+            changedOperations.addAll(defined);
+        }
 
-                            return testRunner.run(scenarios, source, operations.allOperations(),
-                                    scala.Option
-                                            .apply(artifact.group() + "." + artifact.artifact()));
+        return Optional.of(tests.entrySet().stream()
+                .filter(t -> changes.contains(t.getKey()) || changedOperations.stream()
+                        .anyMatch(n -> TestResultCache.mentions(t.getValue(), n)))
+                .map(Map.Entry::getKey).collect(Collectors.toSet()));
+    }
+
+    private static boolean isTest(String path) {
+        return path.endsWith(DefaultAtomistConfig$.MODULE$.testExtension());
+    }
+
+    private List<ScenarioResult> runTests(List<TestScenario> scenarios, File workingDir,
+            ArtifactSource source, ArtifactDescriptor artifact, Operations operations,
+            int threads) {
+        scala.Option<String> namespace = scala.Option
+                .apply(artifact.group() + "." + artifact.artifact());
+        if (scenarios.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (threads == 1) {
+            return new ProgressReportingOperationRunner<List<ScenarioResult>>(
+                    String.format("Running test scenarios in %s",
+                            ArtifactDescriptorUtils.coordinates(artifact))).run(indicator -> {
+                                TestRunner testRunner = new TestRunner(indicator::report);
 
-                        });
+                                return scenarios.stream()
+                                        .map(s -> runTest(testRunner, s, source,
+                                                operations, namespace))
+                                        .collect(Collectors.toList());
 
+                            });
+        }
+
+        // Every worker runs its scenarios against its own copy of the operations and project
+        // source so that no script state is shared between concurrently running scenarios
+        ThreadLocal<OperationsAndHandlers> workerOperations = workerOperationsAndHandlers();
+        ThreadLocal<ArtifactSource> workerSource = ThreadLocal
+                .withInitial(() -> ArtifactSourceUtils.createArtifactSource(workingDir));
+
+        return new ProgressReportingOperationRunner<List<ScenarioResult>>(String.format(
+                "Running %s test scenarios in %s on %s workers", scenarios.size(),
+                ArtifactDescriptorUtils.coordinates(artifact), threads)).run(indicator -> {
+                    OrderedReporter reporter = new OrderedReporter(indicator, scenarios.size());
+                    List<Integer> indexes = IntStream.range(0, scenarios.size()).boxed()
+                            .collect(Collectors.toList());
+                    return ParallelUtils.map(indexes, threads, i -> {
+                        ScenarioOutput output = new ScenarioOutput();
+                        try {
+                            OperationsAndHandlers loaded = workerOperations.get();
+                            return runTest(new TestRunner(output::report), scenarios.get(i),
+                                    workerSource.get(),
+                                    (loaded != null ? loaded.operations() : operations),
+                                    namespace);
+                        }
+                        finally {
+                            reporter.completed(i, output.lines);
+                        }
+                    });
+                });
+    }
+
+    private ScenarioResult runTest(TestRunner testRunner, TestScenario scenario,
+            ArtifactSource source, Operations operations, scala.Option<String> namespace) {
+        long start = System.currentTimeMillis();
+        TestReport report = testRunner.run(asScalaBuffer(Collections.singletonList(scenario)),
+                source, operations.allOperations(), namespace);
+        return new ScenarioResult(scenario, report, System.currentTimeMillis() - start);
+    }
+
+    private static class ScenarioOutput {
+
+        private final List<String> lines = new ArrayList<>();
+
+        public void report(String line) {
+            lines.add(line);
+        }
+    }
+
+    // Hands the output of scenarios to the progress reporter in the order of the scenarios, no
+    // matter in which order they finish
+    private static class OrderedReporter {
+
+        private final ProgressReporter indicator;
+        private final List<List<String>> outputs;
+        private int next = 0;
+
+        public OrderedReporter(ProgressReporter indicator, int scenarios) {
+            this.indicator = indicator;
+            this.outputs = new ArrayList<>(Collections.nCopies(scenarios, null));
+        }
+
+        public synchronized void completed(int scenario, List<String> lines) {
+            outputs.set(scenario, lines);
+            while (next < outputs.size() && outputs.get(next) != null) {
+                outputs.get(next).forEach(indicator::report);
+                outputs.set(next, null);
+                next++;
+            }
+        }
     }
 }
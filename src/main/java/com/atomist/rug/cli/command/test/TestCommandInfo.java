@@ -1,5 +1,8 @@
 package com.atomist.rug.cli.command.test;
 
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
 import com.atomist.rug.cli.command.AbstractLocalArtifactDescriptorProvider;
 
 public class TestCommandInfo extends AbstractLocalArtifactDescriptorProvider {
@@ -18,6 +21,28 @@ public class TestCommandInfo extends AbstractLocalArtifactDescriptorProvider {
         return "TEST is the name of a test scenario.  If no TEST is specified, all scenarios will run.";
     }
     
+    @Override
+    public Options options() {
+        Options options = super.options();
+        options.addOption(Option.builder().longOpt("parallel").argName("N").hasArg(true)
+                .desc("Run up to N test scenarios at the same time, default is 1")
+                .required(false).build());
+        options.addOption("w", "watch", false,
+                "Keep running and re-run affected test scenarios whenever sources or tests change");
+        options.addOption(Option.builder().longOpt("changed-only").hasArg(false)
+                .desc("Skip test scenarios that passed before and whose tests and sources did not change")
+                .required(false).build());
+        options.addOption(Option.builder().longOpt("shard").argName("I/N").hasArg(true)
+                .desc("Only run shard I of N shards of the test scenarios, eg. 1/4")
+                .required(false).build());
+        options.addOption(Option.builder().longOpt("timings").argName("FILE").hasArg(true)
+                .desc("Record scenario durations in FILE and use them to balance shards by duration; share FILE between all shards")
+                .required(false).build());
+        options.addOption(Option.builder().longOpt("junit").argName("FILE").hasArg(true)
+                .desc("Write test results in JUnit XML format to FILE").required(false).build());
+        return options;
+    }
+
     @Override
     public int order() {
         return 50;
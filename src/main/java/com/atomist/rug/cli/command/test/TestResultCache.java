@@ -0,0 +1,214 @@
+package com.atomist.rug.cli.command.test;
+
+import static scala.collection.JavaConversions.asJavaCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.atomist.project.archive.DefaultAtomistConfig$;
+import com.atomist.project.archive.Operations;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.test.RugTestParser;
+import com.atomist.rug.test.TestScenario;
+import com.atomist.source.ArtifactSource;
+import com.atomist.source.FileArtifact;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Outcomes and durations of test scenarios of a project from previous runs. Scenarios are keyed
+// by a hash over their test file, the sources of the operations they mention and all sources not
+// belonging to any operation, eg. shared modules or the manifest.
+public class TestResultCache {
+
+    private static final int FORMAT = 1;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File cacheFile;
+    private final Results results;
+
+    public TestResultCache(File projectRoot) {
+        this.cacheFile = new File(FileUtils.getCacheDirectory("tests"),
+                ChecksumUtils.sha1(projectRoot.getAbsolutePath()) + ".json");
+        this.results = read();
+    }
+
+    // Keys of the scenarios in the order of the given scenarios
+    public List<String> keys(ArtifactSource source, Operations operations,
+            Collection<TestScenario> scenarios) {
+        List<String> operationNames = operationNames(operations);
+
+        Map<String, List<FileArtifact>> testFiles = new HashMap<>();
+        Map<String, String> shared = new TreeMap<>();
+        Map<String, Map<String, String>> operationSources = new HashMap<>();
+        for (FileArtifact file : asJavaCollection(source.allFiles())) {
+            if (DefaultAtomistConfig$.MODULE$.isRugTest(file)) {
+                asJavaCollection(RugTestParser.parse(file)).forEach(s -> testFiles
+                        .computeIfAbsent(s.name(), n -> new ArrayList<>()).add(file));
+            }
+            else if (isArchiveSource(file.path())) {
+                String checksum = ChecksumUtils.sha1(file.content());
+                List<String> mentioned = operationNames.stream()
+                        .filter(n -> mentions(file.content(), n)).collect(Collectors.toList());
+                if (mentioned.isEmpty()) {
+                    shared.put(file.path(), checksum);
+                }
+                mentioned.forEach(n -> operationSources.computeIfAbsent(n, k -> new TreeMap<>())
+                        .put(file.path(), checksum));
+            }
+        }
+        String sharedKey = shared.toString();
+
+        List<String> keys = new ArrayList<>();
+        for (TestScenario scenario : scenarios) {
+            StringBuilder sb = new StringBuilder(scenario.name()).append('\n').append(sharedKey);
+            for (FileArtifact file : testFiles.getOrDefault(scenario.name(),
+                    new ArrayList<>())) {
+                sb.append('\n').append(file.path()).append('=')
+                        .append(ChecksumUtils.sha1(file.content()));
+                operationNames.stream().filter(n -> mentions(file.content(), n))
+                        .forEach(n -> sb.append('\n').append(n).append('=')
+                                .append(operationSources.getOrDefault(n, new TreeMap<>())));
+            }
+            keys.add(ChecksumUtils.sha1(sb.toString()));
+        }
+        return keys;
+    }
+
+    // Identifies scenarios in the cache. Several test files might define scenarios of the same
+    // name; those get numbered in the order they are defined in
+    static List<String> ids(List<TestScenario> scenarios) {
+        Map<String, Integer> occurrences = new HashMap<>();
+        return scenarios.stream().map(s -> {
+            int occurrence = occurrences.merge(s.name(), 1, Integer::sum);
+            return (occurrence == 1 ? s.name() : s.name() + "#" + occurrence);
+        }).collect(Collectors.toList());
+    }
+
+    // True if the scenario passed the last time it ran with the same key
+    public boolean isUnchanged(String scenario, String key) {
+        Result result = results.getScenarios().get(scenario);
+        return result != null && result.isPassed() && key.equals(result.getKey());
+    }
+
+    public synchronized void record(String scenario, String key, boolean passed, long duration) {
+        Result previous = results.getScenarios().get(scenario);
+        Result result = new Result();
+        result.setKey(key);
+        result.setPassed(passed);
+        // Smooth out outliers of single runs
+        result.setDuration(previous != null ? (previous.getDuration() + duration) / 2 : duration);
+        results.getScenarios().put(scenario, result);
+    }
+
+    public synchronized void write() {
+        try {
+            cacheFile.getParentFile().mkdirs();
+            File tempFile = new File(cacheFile.getPath() + ".tmp");
+            mapper.writeValue(tempFile, results);
+            if (!tempFile.renameTo(cacheFile)) {
+                org.apache.commons.io.FileUtils.copyFile(tempFile, cacheFile);
+                tempFile.delete();
+            }
+        }
+        catch (IOException e) {
+            // Next run will just execute all scenarios again
+        }
+    }
+
+    private boolean isArchiveSource(String path) {
+        return path.startsWith(".atomist/") && !path.startsWith(".atomist/target/")
+                && !path.contains("node_modules/");
+    }
+
+    // Simple names of all operations, as referenced from tests and sources
+    static List<String> operationNames(Operations operations) {
+        return asJavaCollection(operations.allOperations()).stream()
+                .map(o -> o.name().substring(o.name().lastIndexOf('.') + 1)).distinct()
+                .collect(Collectors.toList());
+    }
+
+    static boolean mentions(String content, String name) {
+        return Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(content).find();
+    }
+
+    private Results read() {
+        if (cacheFile.exists()) {
+            try {
+                Results results = mapper.readValue(cacheFile, Results.class);
+                if (results.getFormat() == FORMAT) {
+                    return results;
+                }
+            }
+            catch (IOException e) {
+                // Corrupt cache; start over
+            }
+        }
+        Results results = new Results();
+        results.setFormat(FORMAT);
+        return results;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Results {
+
+        private int format;
+        private Map<String, Result> scenarios = new HashMap<>();
+
+        public int getFormat() {
+            return format;
+        }
+
+        public Map<String, Result> getScenarios() {
+            return scenarios;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+
+        public void setScenarios(Map<String, Result> scenarios) {
+            this.scenarios = scenarios;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Result {
+
+        private long duration;
+        private String key;
+        private boolean passed;
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        public void setDuration(long duration) {
+            this.duration = duration;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public void setPassed(boolean passed) {
+            this.passed = passed;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.atomist.rug.cli.command.test;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.atomist.rug.cli.RunnerException;
+
+// Watches the .atomist directory of a project for changes to sources and tests. Build output and
+// installed node modules are ignored.
+public class TestWatcher implements Closeable {
+
+    private static final List<String> EXCLUDED = Arrays.asList("target", "node_modules");
+
+    // Editors tend to save several files in a row; wait for things to settle down
+    private static final long QUIET_PERIOD = 200;
+
+    private final Path root;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    public TestWatcher(File root) {
+        this.root = root.toPath();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            register(this.root.resolve(".atomist"));
+        }
+        catch (IOException e) {
+            throw new RunnerException("Failed to watch " + root.getAbsolutePath(), e);
+        }
+    }
+
+    // Blocks until files changed and returns their paths relative to the project root. A changed
+    // set of null means events got lost and everything should be considered changed.
+    public Set<String> awaitChanges() throws InterruptedException {
+        Set<String> changes = new TreeSet<>();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            Path dir = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    changes = null;
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                if (EXCLUDED.contains(path.getFileName().toString())) {
+                    continue;
+                }
+                else if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                    try {
+                        register(path);
+                        // Files might have been created before the directory was registered
+                        if (changes != null) {
+                            Set<String> created = changes;
+                            try (Stream<Path> files = Files.walk(path)) {
+                                files.filter(Files::isRegularFile).forEach(f -> created.add(
+                                        root.relativize(f).toString().replace(File.separatorChar,
+                                                '/')));
+                            }
+                        }
+                    }
+                    catch (IOException e) {
+                        // Directory is gone again already
+                    }
+                }
+                else if (changes != null && !Files.isDirectory(path)) {
+                    changes.add(root.relativize(path).toString().replace(File.separatorChar, '/'));
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+            key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+        }
+        return changes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void register(Path start) throws IOException {
+        if (!Files.isDirectory(start)) {
+            return;
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                    throws IOException {
+                if (EXCLUDED.contains(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY,
+                        ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -39,7 +39,7 @@ public class TreeCommand extends AbstractAnnotationBasedCommand {
         PathExpression pathExpression = PathExpressionParser$.MODULE$.parseString(expression);
 
         File root = FileUtils.createProjectRoot(rootName);
-        ArtifactSource source = ArtifactSourceUtils.createArtifactSource(root);
+        ArtifactSource source = ArtifactSourceUtils.createProjectArtifactSource(root);
 
         ExpressionEngine pxe = new PathExpressionEngine();
         TreeNode pmv = new ProjectMutableView(new EmptyArtifactSource(""), source);
@@ -6,12 +6,24 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.io.IOUtils;
 
 import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.FileUtils;
 import com.atomist.rug.resolver.ArtifactDescriptor;
 import com.atomist.source.ArtifactSource;
 import com.atomist.source.EmptyArtifactSource;
@@ -51,10 +63,31 @@ public abstract class ArtifactSourceUtils {
                 Arrays.asList(new GitDirFilter(root.getPath())));
     }
 
+    // Source for a project to run editors or path expressions against. Content ignored by git or
+    // .atomist/ignore, eg. node_modules or build output, is skipped and file contents are only
+    // read when accessed.
+    public static ArtifactSource createProjectArtifactSource(File root) {
+        return new FileSystemArtifactSource(new SimpleFileSystemArtifactSourceIdentifier(root),
+                projectFilters(root));
+    }
+
+    // Files of a project root an editor gets to see
+    public static List<ArtifactFilter> projectFilters(File root) {
+        return Arrays.asList(new GitDirFilter(root.getPath()),
+                new AtomistIgnoreFileFilter(root.getPath()), new GitIgnoreFilter(root));
+    }
+
     public static ArtifactSource createArtifactSource(ArtifactDescriptor artifact) {
         try {
             File archiveRoot = new File(artifact.uri());
             if (archiveRoot.isFile()) {
+                Optional<File> extractedRoot = extractArchive(archiveRoot);
+                if (extractedRoot.isPresent()) {
+                    // Files are only read once the loader or operation asks for their content
+                    return new FileSystemArtifactSource(
+                            new SimpleFileSystemArtifactSourceIdentifier(extractedRoot.get()),
+                            Collections.emptyList());
+                }
                 return ZipFileArtifactSourceReader
                         .fromZipSource(new ZipFileInput(new FileInputStream(archiveRoot)));
             }
@@ -71,6 +104,56 @@ public abstract class ArtifactSourceUtils {
         }
     }
 
+    private static Optional<File> extractArchive(File archive) {
+        // Key on location, size and timestamp; released archives don't change once downloaded
+        File root = new File(FileUtils.getCacheDirectory("archives"),
+                ChecksumUtils.sha1(archive.getAbsolutePath() + "\n" + archive.length() + "\n"
+                        + archive.lastModified()));
+        if (root.exists()) {
+            return Optional.of(root);
+        }
+
+        File tempRoot = new File(root.getParentFile(),
+                root.getName() + "-" + UUID.randomUUID().toString());
+        try (ZipFile zip = new ZipFile(archive)) {
+            Path target = tempRoot.toPath().normalize();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path path = target.resolve(entry.getName()).normalize();
+                if (!path.startsWith(target)) {
+                    throw new IOException("Invalid archive entry " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                }
+                else {
+                    Files.createDirectories(path.getParent());
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        Files.copy(is, path);
+                    }
+                }
+            }
+            Files.createDirectories(target);
+            try {
+                Files.move(target, root.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e) {
+                // Another process extracted the same archive concurrently
+                if (!root.exists()) {
+                    throw e;
+                }
+            }
+            return Optional.of(root);
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+        finally {
+            org.apache.commons.io.FileUtils.deleteQuietly(tempRoot);
+        }
+    }
+
     private static class TargetDirFilter implements ArtifactFilter {
 
         private String prefix;
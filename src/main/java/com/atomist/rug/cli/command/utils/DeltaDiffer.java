@@ -0,0 +1,245 @@
+package com.atomist.rug.cli.command.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.source.ArtifactSource;
+import com.atomist.source.ByteArrayFileArtifact;
+import com.atomist.source.Delta;
+import com.atomist.source.FileAdditionDelta;
+import com.atomist.source.FileArtifact;
+import com.atomist.source.FileDeletionDelta;
+import com.atomist.source.FileUpdateDelta;
+
+import difflib.ChangeDelta;
+import difflib.Chunk;
+import difflib.DeleteDelta;
+import difflib.DiffUtils;
+import difflib.InsertDelta;
+import difflib.Patch;
+
+// Computes unified diffs for deltas on a pool of workers while handing them out in the order of
+// the deltas. Only a small window of diffs is computed ahead so memory stays bounded no matter
+// how many files changed.
+public class DeltaDiffer {
+
+    private static final int CONTEXT = 2;
+    private static final String NO_NEWLINE = "\n";
+    private static final String NO_NEWLINE_MARKER = "\\ No newline at end of file";
+
+    private final int threads = Runtime.getRuntime().availableProcessors();
+
+    public void diff(Collection<Delta> deltas, ArtifactSource source,
+            Consumer<FileDiff> consumer) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<Optional<FileDiff>>> window = new ArrayDeque<>();
+        Iterator<Delta> iterator = deltas.iterator();
+        try {
+            while (iterator.hasNext() || !window.isEmpty()) {
+                while (iterator.hasNext() && window.size() < threads * 2) {
+                    Delta delta = iterator.next();
+                    window.add(executor.submit(() -> diff(delta, source)));
+                }
+                window.poll().get().ifPresent(consumer);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RunnerException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RunnerException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Optional<FileDiff> diff(Delta d, ArtifactSource source) {
+        if (d instanceof FileAdditionDelta) {
+            FileArtifact newFile = ((FileAdditionDelta) d).newFile();
+            if (newFile instanceof ByteArrayFileArtifact) {
+                return Optional.empty();
+            }
+            scala.Option<FileArtifact> existing = source.findFile(newFile.path());
+            return diff((existing.isDefined() ? newFile.path() : null), newFile.path(),
+                    newFile.path(), newFile.path(),
+                    (existing.isDefined() ? existing.get().content() : ""), newFile.content());
+        }
+        else if (d instanceof FileUpdateDelta) {
+            FileUpdateDelta delta = (FileUpdateDelta) d;
+            if (delta.updatedFile() instanceof ByteArrayFileArtifact) {
+                return Optional.empty();
+            }
+            return diff(delta.oldFile().path(), delta.updatedFile().path(), delta.path(),
+                    delta.updatedFile().path(), delta.oldFile().content(),
+                    delta.updatedFile().content());
+        }
+        else if (d instanceof FileDeletionDelta) {
+            FileDeletionDelta delta = (FileDeletionDelta) d;
+            if (delta.oldFile() instanceof ByteArrayFileArtifact) {
+                return Optional.empty();
+            }
+            return diff(delta.oldFile().path(), null, delta.oldFile().path(), "",
+                    delta.oldFile().content(), "");
+        }
+        return Optional.empty();
+    }
+
+    private Optional<FileDiff> diff(String oldPath, String newPath, String oldName,
+            String newName, String existingContent, String newContent) {
+        if (existingContent.equals(newContent)) {
+            return Optional.empty();
+        }
+        List<String> original = lines(existingContent);
+        List<String> revised = lines(newContent);
+        List<String> diff = DiffUtils.generateUnifiedDiff(oldName, newName, original,
+                patch(original, revised), CONTEXT);
+        if (diff.size() <= 2) {
+            return Optional.empty();
+        }
+        List<String> hunks = new ArrayList<>();
+        for (String line : diff.subList(2, diff.size())) {
+            if (line.startsWith("@@")) {
+                // An absent or empty side starts at line 0
+                if (original.isEmpty()) {
+                    line = line.replaceFirst("^@@ -[0-9,]+ ", "@@ -0,0 ");
+                }
+                if (revised.isEmpty()) {
+                    line = line.replaceFirst(" \\+[0-9,]+ @@", " +0,0 @@");
+                }
+                hunks.add(line);
+            }
+            else if (line.endsWith(NO_NEWLINE)) {
+                hunks.add(line.substring(0, line.length() - NO_NEWLINE.length()));
+                hunks.add(NO_NEWLINE_MARKER);
+            }
+            else {
+                hunks.add(line);
+            }
+        }
+        return Optional.of(new FileDiff(oldPath, newPath, diff.subList(0, 2), hunks));
+    }
+
+    // A last line without line break gets marked so that it differs from the same line with a
+    // line break
+    private static List<String> lines(String content) {
+        if (content.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        if (content.endsWith("\n")) {
+            lines.remove(lines.size() - 1);
+        }
+        else {
+            lines.set(lines.size() - 1, lines.get(lines.size() - 1) + NO_NEWLINE);
+        }
+        return lines;
+    }
+
+    // Diffs only what's between the common head and tail of both files and compares lines by an
+    // interned id, which keeps large files with small changes cheap
+    private static Patch<String> patch(List<String> original, List<String> revised) {
+        int prefix = 0;
+        int max = Math.min(original.size(), revised.size());
+        while (prefix < max && original.get(prefix).equals(revised.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && original.get(original.size() - 1 - suffix)
+                .equals(revised.get(revised.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        List<Integer> originalIds = intern(original.subList(prefix, original.size() - suffix),
+                ids);
+        List<Integer> revisedIds = intern(revised.subList(prefix, revised.size() - suffix), ids);
+
+        Patch<String> patch = new Patch<>();
+        for (difflib.Delta<Integer> delta : DiffUtils.diff(originalIds, revisedIds).getDeltas()) {
+            Chunk<String> o = chunk(original, prefix + delta.getOriginal().getPosition(),
+                    delta.getOriginal().size());
+            Chunk<String> r = chunk(revised, prefix + delta.getRevised().getPosition(),
+                    delta.getRevised().size());
+            if (delta instanceof InsertDelta) {
+                patch.addDelta(new InsertDelta<>(o, r));
+            }
+            else if (delta instanceof DeleteDelta) {
+                patch.addDelta(new DeleteDelta<>(o, r));
+            }
+            else {
+                patch.addDelta(new ChangeDelta<>(o, r));
+            }
+        }
+        return patch;
+    }
+
+    private static List<Integer> intern(List<String> lines, Map<String, Integer> ids) {
+        List<Integer> result = new ArrayList<>(lines.size());
+        lines.forEach(l -> result.add(ids.computeIfAbsent(l, k -> ids.size())));
+        return result;
+    }
+
+    private static Chunk<String> chunk(List<String> lines, int position, int size) {
+        return new Chunk<>(position, lines.subList(position, position + size));
+    }
+
+    public static class FileDiff {
+
+        private final String oldPath;
+        private final String newPath;
+        private final List<String> header;
+        private final List<String> hunks;
+
+        public FileDiff(String oldPath, String newPath, List<String> header,
+                List<String> hunks) {
+            this.oldPath = oldPath;
+            this.newPath = newPath;
+            this.header = header;
+            this.hunks = hunks;
+        }
+
+        public String path() {
+            return (newPath != null ? newPath : oldPath);
+        }
+
+        // Lines as printed to the console
+        public List<String> lines() {
+            List<String> lines = new ArrayList<>(header);
+            lines.addAll(hunks);
+            return lines;
+        }
+
+        // Lines in the format git apply and patch -p1 understand
+        public List<String> patchLines() {
+            List<String> lines = new ArrayList<>();
+            lines.add("--- " + (oldPath == null ? "/dev/null" : "a/" + oldPath));
+            lines.add("+++ " + (newPath == null ? "/dev/null" : "b/" + newPath));
+            lines.addAll(hunks);
+            return lines;
+        }
+    }
+}
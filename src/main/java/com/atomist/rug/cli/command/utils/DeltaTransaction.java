@@ -0,0 +1,193 @@
+package com.atomist.rug.cli.command.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.source.Delta;
+import com.atomist.source.FileAdditionDelta;
+import com.atomist.source.FileArtifact;
+import com.atomist.source.FileDeletionDelta;
+import com.atomist.source.FileUpdateDelta;
+import com.atomist.source.file.FileSystemArtifactSourceWriter;
+
+// Applies deltas to a project all or nothing: new contents are written and synced concurrently
+// into a staging directory inside the project and only then renamed into place. If any rename
+// fails, everything moved so far is put back.
+public class DeltaTransaction {
+
+    private final File root;
+
+    public DeltaTransaction(File root) {
+        this.root = root;
+    }
+
+    // Returns the deltas that changed the project; updates and additions resulting in the same
+    // content the file already has are skipped. Of several deltas for the same path only the last
+    // one gets applied, as if they had been written one after the other.
+    public List<Delta> apply(Collection<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return deltas.stream().collect(Collectors.toList());
+        }
+
+        Path staging = null;
+        try {
+            root.mkdirs();
+            staging = Files.createTempDirectory(root.toPath(), ".rug-staging");
+            File newDir = new File(staging.toFile(), "new");
+            File oldDir = new File(staging.toFile(), "old");
+
+            List<Change> changes = ParallelUtils.map(collapse(deltas),
+                    Runtime.getRuntime().availableProcessors(), c -> stage(c, newDir));
+            changes = changes.stream().filter(c -> !c.unchanged).collect(Collectors.toList());
+
+            commit(changes, oldDir);
+            return changes.stream().map(c -> c.delta).collect(Collectors.toList());
+        }
+        catch (IOException e) {
+            throw new RunnerException("Failed to write changes to " + root.getAbsolutePath(), e);
+        }
+        finally {
+            if (staging != null) {
+                org.apache.commons.io.FileUtils.deleteQuietly(staging.toFile());
+            }
+        }
+    }
+
+    // Staging two deltas for the same path concurrently would write the same file; the last
+    // delta wins and paths renamed away by earlier ones still get removed
+    private List<Change> collapse(Collection<Delta> deltas) {
+        Map<String, Change> changes = new LinkedHashMap<>();
+        for (Delta delta : deltas) {
+            Change change = new Change(delta);
+            String path = (change.newFile != null ? change.newFile.path() : delta.path());
+            Change previous = changes.remove(path);
+            if (previous != null) {
+                previous.oldPaths.stream()
+                        .filter(p -> !p.equals(path) && !change.oldPaths.contains(p))
+                        .forEach(change.oldPaths::add);
+            }
+            changes.put(path, change);
+        }
+        return new ArrayList<>(changes.values());
+    }
+
+    private Change stage(Change change, File newDir) {
+        if (change.newFile != null) {
+            new FileSystemArtifactSourceWriter().write(change.newFile, newDir);
+            change.staged = new File(newDir, change.newFile.path());
+            try {
+                try (FileChannel channel = FileChannel.open(change.staged.toPath(),
+                        StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                File target = new File(root, change.newFile.path());
+                change.unchanged = change.oldPaths.stream()
+                        .allMatch(p -> p.equals(change.newFile.path())) && target.isFile()
+                        && target.length() == change.staged.length()
+                        && ChecksumUtils.sha1(target).equals(ChecksumUtils.sha1(change.staged));
+            }
+            catch (IOException e) {
+                throw new RunnerException("Failed to stage " + change.newFile.path(), e);
+            }
+        }
+        return change;
+    }
+
+    private void commit(List<Change> changes, File oldDir) throws IOException {
+        Deque<Undo> undos = new ArrayDeque<>();
+        try {
+            for (Change change : changes) {
+                for (String oldPath : change.oldPaths) {
+                    backup(oldPath, oldDir, undos);
+                }
+                if (change.staged != null) {
+                    String path = change.newFile.path();
+                    backup(path, oldDir, undos);
+                    File target = new File(root, path);
+                    target.getParentFile().mkdirs();
+                    move(change.staged, target);
+                    undos.push(() -> Files.deleteIfExists(target.toPath()));
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            while (!undos.isEmpty()) {
+                try {
+                    undos.pop().undo();
+                }
+                catch (IOException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+            throw new RunnerException(String.format(
+                    "Failed to write changes to %s; all changes have been rolled back",
+                    root.getAbsolutePath()), e);
+        }
+    }
+
+    private void backup(String path, File oldDir, Deque<Undo> undos) throws IOException {
+        File file = new File(root, path);
+        File backup = new File(oldDir, path);
+        if (file.exists() && !backup.exists()) {
+            backup.getParentFile().mkdirs();
+            move(file, backup);
+            undos.push(() -> move(backup, file));
+        }
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private interface Undo {
+        void undo() throws IOException;
+    }
+
+    private static class Change {
+
+        private final Delta delta;
+        private final FileArtifact newFile;
+        private final List<String> oldPaths = new ArrayList<>();
+        private File staged;
+        private boolean unchanged = false;
+
+        public Change(Delta delta) {
+            this.delta = delta;
+            if (delta instanceof FileAdditionDelta) {
+                this.newFile = ((FileAdditionDelta) delta).newFile();
+            }
+            else if (delta instanceof FileUpdateDelta) {
+                this.newFile = ((FileUpdateDelta) delta).updatedFile();
+                this.oldPaths.add(((FileUpdateDelta) delta).oldFile().path());
+            }
+            else if (delta instanceof FileDeletionDelta) {
+                this.newFile = null;
+                this.oldPaths.add(delta.path());
+            }
+            else {
+                this.newFile = null;
+            }
+        }
+    }
+}
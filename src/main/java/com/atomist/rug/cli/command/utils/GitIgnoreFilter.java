@@ -0,0 +1,91 @@
+package com.atomist.rug.cli.command.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+import com.atomist.source.filter.ArtifactFilter;
+
+// Excludes files and directories matched by .gitignore files anywhere in the project as well as
+// by .git/info/exclude. Rules and decisions for directories are cached so the filter is cheap to
+// call for every file of a large tree and safe to use from several threads.
+public class GitIgnoreFilter implements ArtifactFilter {
+
+    private final File root;
+    private final Map<File, IgnoreNode> nodes = new ConcurrentHashMap<>();
+    private final Map<File, Boolean> ignoredDirectories = new ConcurrentHashMap<>();
+
+    public GitIgnoreFilter(File root) {
+        this.root = root.getAbsoluteFile();
+    }
+
+    @Override
+    public boolean apply(String path) {
+        File file = new File(path).getAbsoluteFile();
+        return !isIgnored(file, file.isDirectory());
+    }
+
+    private boolean isIgnored(File file, boolean directory) {
+        if (!file.getPath().startsWith(root.getPath() + File.separator)) {
+            return false;
+        }
+        File parent = file.getParentFile();
+        // Nothing inside an ignored directory can be included again
+        if (!parent.equals(root) && isIgnoredDirectory(parent)) {
+            return true;
+        }
+
+        // Rules of deeper .gitignore files take precedence; within a file the last matching
+        // rule wins
+        for (File dir = parent; dir != null
+                && dir.getPath().startsWith(root.getPath()); dir = dir.getParentFile()) {
+            String relativePath = file.getPath().substring(dir.getPath().length() + 1)
+                    .replace(File.separatorChar, '/');
+            List<FastIgnoreRule> rules = nodes.computeIfAbsent(dir, this::readRules).getRules();
+            for (int i = rules.size() - 1; i >= 0; i--) {
+                if (rules.get(i).isMatch(relativePath, directory)) {
+                    return rules.get(i).getResult();
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isIgnoredDirectory(File dir) {
+        Boolean ignored = ignoredDirectories.get(dir);
+        if (ignored == null) {
+            ignored = isIgnored(dir, true);
+            ignoredDirectories.put(dir, ignored);
+        }
+        return ignored;
+    }
+
+    private IgnoreNode readRules(File dir) {
+        IgnoreNode node = new IgnoreNode();
+        if (dir.equals(root)) {
+            readIgnoreFile(node, new File(root,
+                    ".git" + File.separator + "info" + File.separator + "exclude"));
+        }
+        readIgnoreFile(node, new File(dir, ".gitignore"));
+        return node;
+    }
+
+    private void readIgnoreFile(IgnoreNode node, File ignoreFile) {
+        if (ignoreFile.isFile()) {
+            try (InputStream is = Files.newInputStream(ignoreFile.toPath())) {
+                // Rules of later files get appended and so take precedence
+                node.parse(is);
+            }
+            catch (IOException e) {
+                // An unreadable ignore file doesn't exclude anything
+            }
+        }
+    }
+}
@@ -1,14 +1,32 @@
 package com.atomist.rug.cli.command.utils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
+import org.eclipse.jgit.api.CommitCommand;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 
 import com.atomist.project.ProjectOperationArguments;
 import com.atomist.project.ProvenanceInfoWriter;
@@ -18,6 +36,11 @@ import com.atomist.rug.cli.Constants;
 import com.atomist.rug.cli.Log;
 import com.atomist.rug.cli.RunnerException;
 import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.utils.Profiler;
+import com.atomist.source.Delta;
+import com.atomist.source.FileAdditionDelta;
+import com.atomist.source.FileDeletionDelta;
+import com.atomist.source.FileUpdateDelta;
 
 public abstract class GitUtils {
 
@@ -25,8 +48,16 @@ public abstract class GitUtils {
 
     public static void initializeRepoAndCommitFiles(ProjectGenerator generator,
             ProjectOperationArguments arguments, File root) {
-        try (Git git = Git.init().setDirectory(root).call()) {
-            log.info("Initialized a new git repository at " + git.getRepository().getDirectory());
+        String commit = initializeRepo(generator, arguments, root);
+        log.info("Initialized a new git repository at " + new File(root, ".git"));
+        log.info("Committed initial set of files to git repository (%s)", commit);
+    }
+
+    // Same as initializeRepoAndCommitFiles but only returns the abbreviated commit id
+    public static String initializeRepo(ProjectGenerator generator,
+            ProjectOperationArguments arguments, File root) {
+        try (Profiler.Phase phase = Profiler.start("Git commit");
+                Git git = Git.init().setDirectory(root).call()) {
             git.add().addFilepattern(".").call();
             RevCommit commit = git.commit().setAll(true)
                     .setMessage(
@@ -34,8 +65,7 @@ public abstract class GitUtils {
                                     new ProvenanceInfoWriter().write(generator, arguments,
                                             Constants.cliClient())))
                     .setAuthor("Atomist", "cli@atomist.com").call();
-            log.info("Committed initial set of files to git repository (%s)",
-                    commit.abbreviate(7).name());
+            return commit.abbreviate(7).name();
         }
         catch (IllegalStateException | GitAPIException e) {
             throw new RunnerException(e);
@@ -43,19 +73,43 @@ public abstract class GitUtils {
     }
 
     public static void commitFiles(ProjectEditor editor, ProjectOperationArguments arguments,
-            File root) {
-        FileRepositoryBuilder builder = new FileRepositoryBuilder();
-        try (Repository repository = builder.setGitDir(new File(root, ".git")).readEnvironment()
-                .findGitDir().build()) {
+            File root, Collection<Delta> deltas) {
+        log.info("Committing to git repository at " + new File(root, ".git"));
+        CommitResult result = commit(editor, arguments, root, deltas);
+        if (!result.ignored().isEmpty()) {
+            log.info("Not committing files excluded by .gitignore: %s",
+                    result.ignored().stream().collect(Collectors.joining(", ")));
+        }
+        if (result.id() != null) {
+            log.info("Committed changes to git repository (%s)", result.id());
+        }
+        else {
+            log.info("No changes to commit to git repository");
+        }
+    }
+
+    // Stages exactly the files touched by the deltas and commits only those unless that leaves
+    // the index unchanged; whatever else was staged stays staged. Doesn't log anything so that it
+    // can be used for many projects at once.
+    public static CommitResult commit(ProjectEditor editor, ProjectOperationArguments arguments,
+            File root, Collection<Delta> deltas) {
+        try (Profiler.Phase phase = Profiler.start("Git commit");
+                Repository repository = openRepository(root)) {
+            Set<String> paths = new TreeSet<>();
+            List<String> ignored = stage(repository, root, deltas, paths);
+            Set<String> staged = stagedPaths(repository, paths);
+            if (staged.isEmpty()) {
+                return new CommitResult(null, ignored);
+            }
             try (Git git = new Git(repository)) {
-                log.info("Committing to git repository at " + git.getRepository().getDirectory());
-                git.add().addFilepattern(".").call();
-                RevCommit commit = git.commit().setAll(true)
+                CommitCommand command = git.commit();
+                staged.forEach(command::setOnly);
+                RevCommit commit = command
                         .setMessage(String.format("Commit by editor %s\n\n%s", editor.name(),
                                 new ProvenanceInfoWriter().write(editor, arguments,
                                         Constants.cliClient())))
                         .setAuthor("Atomist", "cli@atomist.com").call();
-                log.info("Committed changes to git repository (%s)", commit.abbreviate(7).name());
+                return new CommitResult(commit.abbreviate(7).name(), ignored);
             }
         }
         catch (IllegalStateException | IOException | GitAPIException e) {
@@ -63,21 +117,157 @@ public abstract class GitUtils {
         }
     }
 
-    public static void isClean(File root) {
-        FileRepositoryBuilder builder = new FileRepositoryBuilder();
-        try (Repository repository = builder.setGitDir(new File(root, ".git")).readEnvironment()
-                .findGitDir().build()) {
-            try (Git git = new Git(repository)) {
-                Status status = git.status().call();
-                if (!status.isClean()) {
-                    throw new CommandException(String.format(
-                            "Working tree at %s not clean. Please commit or stash your changes before running an editor with -R.",
-                            root.getAbsolutePath()), "edit");
-                }
+    // Only checks the files touched by the deltas instead of running a status over the whole
+    // working tree
+    public static void isClean(File root, Collection<Delta> deltas) {
+        Set<String> paths = new TreeSet<>();
+        deltas.forEach(d -> {
+            removedPath(d).ifPresent(paths::add);
+            addedPath(d).ifPresent(paths::add);
+        });
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        try (Profiler.Phase phase = Profiler.start("Git status");
+                Repository repository = openRepository(root)) {
+            IndexDiff diff = new IndexDiff(repository, "HEAD",
+                    new FileTreeIterator(repository));
+            diff.setFilter(PathFilterGroup.createFromStrings(paths));
+            diff.diff();
+            Set<String> dirty = new TreeSet<>();
+            dirty.addAll(diff.getAdded());
+            dirty.addAll(diff.getChanged());
+            dirty.addAll(diff.getRemoved());
+            dirty.addAll(diff.getMissing());
+            dirty.addAll(diff.getModified());
+            dirty.addAll(diff.getUntracked());
+            dirty.addAll(diff.getConflicting());
+            if (!dirty.isEmpty()) {
+                throw new CommandException(String.format(
+                        "Working tree at %s not clean. Please commit or stash your changes to %s before running an editor with -R.",
+                        root.getAbsolutePath(), dirty.stream().collect(Collectors.joining(", "))),
+                        "edit");
             }
         }
-        catch (IllegalStateException | IOException | GitAPIException e) {
+        catch (IllegalStateException | IOException e) {
             throw new RunnerException(e);
         }
     }
+
+    private static Repository openRepository(File root) throws IOException {
+        return new FileRepositoryBuilder().setGitDir(new File(root, ".git")).readEnvironment()
+                .findGitDir().build();
+    }
+
+    // Edits the index directly so that neither the working tree nor the index get walked. Like
+    // git add, files excluded by .gitignore only get staged if they are tracked already; those
+    // are returned instead.
+    private static List<String> stage(Repository repository, File root,
+            Collection<Delta> deltas, Set<String> paths) throws IOException {
+        GitIgnoreFilter ignoreFilter = new GitIgnoreFilter(root);
+        List<String> ignored = new ArrayList<>();
+        DirCache index = repository.lockDirCache();
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            DirCacheEditor editor = index.editor();
+            for (Delta delta : deltas) {
+                Optional<String> added = addedPath(delta);
+                Optional<String> removed = removedPath(delta);
+                if (removed.isPresent() && !removed.equals(added)) {
+                    editor.add(new DirCacheEditor.DeletePath(removed.get()));
+                    paths.add(removed.get());
+                }
+                if (added.isPresent()) {
+                    File file = new File(root, added.get());
+                    if (index.getEntry(added.get()) == null
+                            && !ignoreFilter.apply(file.getAbsolutePath())) {
+                        ignored.add(added.get());
+                        continue;
+                    }
+                    ObjectId id;
+                    try (InputStream is = new FileInputStream(file)) {
+                        id = inserter.insert(org.eclipse.jgit.lib.Constants.OBJ_BLOB,
+                                file.length(), is);
+                    }
+                    FileMode mode = (file.canExecute() ? FileMode.EXECUTABLE_FILE
+                            : FileMode.REGULAR_FILE);
+                    long length = file.length();
+                    long lastModified = file.lastModified();
+                    editor.add(new DirCacheEditor.PathEdit(added.get()) {
+
+                        @Override
+                        public void apply(DirCacheEntry entry) {
+                            entry.setFileMode(mode);
+                            entry.setObjectId(id);
+                            entry.setLength(length);
+                            entry.setLastModified(lastModified);
+                        }
+                    });
+                    paths.add(added.get());
+                }
+            }
+            inserter.flush();
+            editor.commit();
+        }
+        finally {
+            index.unlock();
+        }
+        return ignored;
+    }
+
+    // Those of the given paths for which the index differs from HEAD
+    private static Set<String> stagedPaths(Repository repository, Set<String> paths)
+            throws IOException {
+        Set<String> staged = new TreeSet<>();
+        if (paths.isEmpty()) {
+            return staged;
+        }
+        IndexDiff diff = new IndexDiff(repository, "HEAD", new FileTreeIterator(repository));
+        diff.setFilter(PathFilterGroup.createFromStrings(paths));
+        diff.diff();
+        staged.addAll(diff.getAdded());
+        staged.addAll(diff.getChanged());
+        staged.addAll(diff.getRemoved());
+        return staged;
+    }
+
+    private static Optional<String> addedPath(Delta delta) {
+        if (delta instanceof FileAdditionDelta) {
+            return Optional.of(((FileAdditionDelta) delta).newFile().path());
+        }
+        else if (delta instanceof FileUpdateDelta) {
+            return Optional.of(((FileUpdateDelta) delta).updatedFile().path());
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> removedPath(Delta delta) {
+        if (delta instanceof FileUpdateDelta) {
+            return Optional.of(((FileUpdateDelta) delta).oldFile().path());
+        }
+        else if (delta instanceof FileDeletionDelta) {
+            return Optional.of(delta.path());
+        }
+        return Optional.empty();
+    }
+
+    public static class CommitResult {
+
+        private final String id;
+        private final List<String> ignored;
+
+        public CommitResult(String id, List<String> ignored) {
+            this.id = id;
+            this.ignored = ignored;
+        }
+
+        // Abbreviated id of the new commit or null if there was nothing to commit
+        public String id() {
+            return id;
+        }
+
+        public List<String> ignored() {
+            return ignored;
+        }
+    }
 }
@@ -0,0 +1,412 @@
+package com.atomist.rug.cli.command.utils;
+
+import static scala.collection.JavaConversions.asJavaCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.rug.cli.output.ProgressReporter;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.compiler.Compiler;
+import com.atomist.source.ArtifactSource;
+import com.atomist.source.Delta;
+import com.atomist.source.EmptyArtifactSource;
+import com.atomist.source.FileAdditionDelta;
+import com.atomist.source.FileArtifact;
+import com.atomist.source.FileUpdateDelta;
+import com.atomist.source.StringFileArtifact;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class IncrementalTypeScriptCompiler {
+
+    private static final Pattern IMPORT_PATTERN = Pattern.compile(
+            "(?:import|export)\\s[^;]*?from\\s*[\"']([^\"']+)[\"']"
+                    + "|import\\s*[\"']([^\"']+)[\"']"
+                    + "|require\\(\\s*[\"']([^\"']+)[\"']\\s*\\)"
+                    + "|///\\s*<reference\\s+path\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Supplier<Compiler> compilerFactory;
+    private final File manifestFile;
+    private final File outputRoot;
+
+    public IncrementalTypeScriptCompiler(Supplier<Compiler> compilerFactory, File cacheRoot) {
+        this.compilerFactory = compilerFactory;
+        this.manifestFile = new File(cacheRoot, "incremental.json");
+        this.outputRoot = new File(cacheRoot, "incremental");
+    }
+
+    public ArtifactSource compile(ArtifactSource source, ProgressReporter indicator) {
+        Map<String, FileArtifact> sources = asJavaCollection(source.allFiles()).stream()
+                .filter(f -> f.path().endsWith(".ts") && !f.path().endsWith(".d.ts"))
+                .collect(Collectors.toMap(FileArtifact::path, f -> f));
+        Manifest previous = readManifest();
+        Manifest manifest = new Manifest();
+
+        Map<String, Set<String>> imports = new HashMap<>();
+        Set<String> changed = new HashSet<>();
+        sources.values().forEach(f -> {
+            Entry entry = new Entry();
+            entry.setChecksum(ChecksumUtils.sha1(f.content()));
+            entry.setImports(new ArrayList<>(imports(f, sources.keySet())));
+            imports.put(f.path(), new HashSet<>(entry.getImports()));
+
+            Entry old = previous.getFiles().get(f.path());
+            // An import that no longer resolves, eg. to a deleted or renamed file, makes the
+            // file dirty even though its content didn't change
+            if (old != null && old.getChecksum().equals(entry.getChecksum())
+                    && new HashSet<>(old.getImports()).equals(imports.get(f.path()))
+                    && old.getOutputs().stream().allMatch(o -> new File(outputRoot, o).exists())) {
+                entry.setOutputs(old.getOutputs());
+            }
+            else {
+                changed.add(f.path());
+            }
+            manifest.getFiles().put(f.path(), entry);
+        });
+
+        // Sources deleted since the last compile: everything that imported them, according to
+        // the previous import edges, needs compiling and their cached outputs are stale
+        Set<String> removed = new HashSet<>(previous.getFiles().keySet());
+        removed.removeAll(sources.keySet());
+        Map<String, Set<String>> previousImports = new HashMap<>();
+        previous.getFiles().forEach((path, entry) -> previousImports.put(path,
+                new HashSet<>(entry.getImports())));
+        dependents(removed, previousImports).stream().filter(sources::containsKey)
+                .forEach(changed::add);
+        removed.forEach(r -> deleteOutputs(previous.getFiles().get(r).getOutputs()));
+
+        Set<String> dirty = dependents(changed, imports);
+        indicator.report(String.format("  Compiling %s of %s TypeScript sources", dirty.size(),
+                sources.size()));
+
+        Map<String, FileArtifact> outputs = new HashMap<>();
+        if (!dirty.isEmpty()) {
+            outputs.putAll(compileDirty(source, sources, imports, dirty));
+        }
+
+        ArtifactSource result = source;
+        for (Map.Entry<String, Entry> e : manifest.getFiles().entrySet()) {
+            if (dirty.contains(e.getKey())) {
+                List<String> fileOutputs = outputs.keySet().stream()
+                        .filter(o -> e.getKey().equals(sourceOf(o))).sorted()
+                        .collect(Collectors.toList());
+                Entry old = previous.getFiles().get(e.getKey());
+                if (old != null) {
+                    deleteOutputs(old.getOutputs().stream().filter(o -> !fileOutputs.contains(o))
+                            .collect(Collectors.toList()));
+                }
+                e.getValue().setOutputs(fileOutputs);
+                for (String o : fileOutputs) {
+                    result = result.plus(outputs.get(o));
+                    writeOutput(outputs.get(o));
+                }
+            }
+            else {
+                for (String o : e.getValue().getOutputs()) {
+                    result = result.plus(readOutput(o));
+                }
+            }
+        }
+
+        writeManifest(manifest);
+        return result;
+    }
+
+    private Map<String, FileArtifact> compileDirty(ArtifactSource source,
+            Map<String, FileArtifact> sources, Map<String, Set<String>> imports,
+            Set<String> dirty) {
+        List<Set<String>> groups = groups(dirty, imports);
+        int threads = Math.max(1,
+                Math.min(groups.size(), Runtime.getRuntime().availableProcessors()));
+
+        // Independent groups of sources get compiled concurrently; each worker gets its own
+        // compiler instance as those aren't safe to share between threads
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Map<String, FileArtifact>>> futures = new ArrayList<>();
+            for (Set<String> group : groups) {
+                futures.add(executor.submit(() -> compileGroup(source, sources, imports, group)));
+            }
+            Map<String, FileArtifact> outputs = new HashMap<>();
+            for (Future<Map<String, FileArtifact>> future : futures) {
+                outputs.putAll(future.get());
+            }
+            return outputs;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RunnerException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RunnerException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, FileArtifact> compileGroup(ArtifactSource source,
+            Map<String, FileArtifact> sources, Map<String, Set<String>> imports,
+            Set<String> group) {
+        // Non-TypeScript files and the imports of the group are needed for type checking
+        Set<String> required = dependencies(group, imports);
+        ArtifactSource input = new EmptyArtifactSource("incremental");
+        for (FileArtifact file : asJavaCollection(source.allFiles())) {
+            if (!sources.containsKey(file.path()) || required.contains(file.path())) {
+                input = input.plus(file);
+            }
+        }
+
+        ArtifactSource compiled = compilerFactory.get().compile(input);
+        Map<String, FileArtifact> outputs = new HashMap<>();
+        for (Delta delta : asJavaCollection(compiled.deltaFrom(input).deltas())) {
+            FileArtifact file = null;
+            if (delta instanceof FileAdditionDelta) {
+                file = ((FileAdditionDelta) delta).newFile();
+            }
+            else if (delta instanceof FileUpdateDelta) {
+                file = ((FileUpdateDelta) delta).updatedFile();
+            }
+            if (file != null && group.contains(sourceOf(file.path()))) {
+                outputs.put(file.path(), file);
+            }
+        }
+        return outputs;
+    }
+
+    private List<Set<String>> groups(Set<String> dirty, Map<String, Set<String>> imports) {
+        // Connected components of dirty sources and their imports can be compiled separately
+        Map<String, Set<String>> neighbours = new HashMap<>();
+        for (String path : dirty) {
+            for (String dependency : dependencies(Collections.singleton(path), imports)) {
+                neighbours.computeIfAbsent(path, k -> new HashSet<>()).add(dependency);
+                neighbours.computeIfAbsent(dependency, k -> new HashSet<>()).add(path);
+            }
+        }
+
+        List<Set<String>> components = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String path : dirty) {
+            if (visited.add(path)) {
+                Set<String> component = new HashSet<>();
+                LinkedList<String> queue = new LinkedList<>();
+                queue.add(path);
+                while (!queue.isEmpty()) {
+                    String current = queue.poll();
+                    if (dirty.contains(current)) {
+                        component.add(current);
+                    }
+                    neighbours.getOrDefault(current, Collections.emptySet()).stream()
+                            .filter(visited::add).forEach(queue::add);
+                }
+                components.add(component);
+            }
+        }
+
+        // Pack components into as many groups as there are cores, largest first
+        int bins = Math.min(components.size(), Runtime.getRuntime().availableProcessors());
+        List<Set<String>> groups = new ArrayList<>();
+        for (int i = 0; i < bins; i++) {
+            groups.add(new HashSet<>());
+        }
+        components.stream().sorted(Comparator.comparingInt(c -> -c.size())).forEach(c -> groups
+                .stream().min(Comparator.comparingInt(Set::size)).get().addAll(c));
+        return groups;
+    }
+
+    private Set<String> dependencies(Collection<String> paths, Map<String, Set<String>> imports) {
+        Set<String> result = new HashSet<>();
+        LinkedList<String> queue = new LinkedList<>(paths);
+        while (!queue.isEmpty()) {
+            String path = queue.poll();
+            if (result.add(path)) {
+                queue.addAll(imports.getOrDefault(path, Collections.emptySet()));
+            }
+        }
+        return result;
+    }
+
+    private Set<String> dependents(Set<String> changed, Map<String, Set<String>> imports) {
+        Map<String, Set<String>> reverse = new HashMap<>();
+        imports.forEach((path, deps) -> deps
+                .forEach(d -> reverse.computeIfAbsent(d, k -> new HashSet<>()).add(path)));
+        return dependencies(changed, reverse);
+    }
+
+    private Set<String> imports(FileArtifact file, Set<String> sources) {
+        Set<String> imports = new HashSet<>();
+        Matcher matcher = IMPORT_PATTERN.matcher(file.content());
+        while (matcher.find()) {
+            String module = null;
+            for (int i = 1; i <= matcher.groupCount() && module == null; i++) {
+                module = matcher.group(i);
+            }
+            // Only relative imports point into the archive
+            if (module != null && module.startsWith(".")) {
+                String parent = (file.path().contains("/")
+                        ? file.path().substring(0, file.path().lastIndexOf('/'))
+                        : "");
+                String resolved = Paths.get(parent, module).normalize().toString()
+                        .replace(File.separatorChar, '/');
+                for (String candidate : new String[] { resolved, resolved + ".ts",
+                        resolved + "/index.ts" }) {
+                    if (sources.contains(candidate)) {
+                        imports.add(candidate);
+                        break;
+                    }
+                }
+            }
+        }
+        return imports;
+    }
+
+    private String sourceOf(String output) {
+        String base = output;
+        for (String extension : new String[] { ".js.map", ".js", ".d.ts" }) {
+            if (base.endsWith(extension)) {
+                base = base.substring(0, base.length() - extension.length());
+                break;
+            }
+        }
+        return base + ".ts";
+    }
+
+    private FileArtifact readOutput(String path) {
+        try {
+            String content = org.apache.commons.io.FileUtils
+                    .readFileToString(new File(outputRoot, path), StandardCharsets.UTF_8);
+            return artifact(path, content);
+        }
+        catch (IOException e) {
+            throw new RunnerException(e);
+        }
+    }
+
+    private void writeOutput(FileArtifact file) {
+        try {
+            org.apache.commons.io.FileUtils.writeStringToFile(new File(outputRoot, file.path()),
+                    file.content(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new RunnerException(e);
+        }
+    }
+
+    private void deleteOutputs(Collection<String> paths) {
+        paths.forEach(o -> new File(outputRoot, o).delete());
+    }
+
+    private FileArtifact artifact(String path, String content) {
+        int ix = path.lastIndexOf('/');
+        return (ix < 0 ? new StringFileArtifact(path, "", content)
+                : new StringFileArtifact(path.substring(ix + 1), path.substring(0, ix), content));
+    }
+
+    private Manifest readManifest() {
+        if (manifestFile.exists()) {
+            try {
+                Manifest manifest = mapper.readValue(manifestFile, Manifest.class);
+                if (Constants.cliClient().equals(manifest.getClient())) {
+                    return manifest;
+                }
+            }
+            catch (IOException e) {
+                // Start from scratch
+            }
+        }
+        return new Manifest();
+    }
+
+    private void writeManifest(Manifest manifest) {
+        try {
+            manifest.setClient(Constants.cliClient());
+            manifestFile.getParentFile().mkdirs();
+            mapper.writeValue(manifestFile, manifest);
+        }
+        catch (IOException e) {
+            // Next compile will just be a full one
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Manifest {
+
+        private String client;
+        private Map<String, Entry> files = new HashMap<>();
+
+        public String getClient() {
+            return client;
+        }
+
+        public Map<String, Entry> getFiles() {
+            return files;
+        }
+
+        public void setClient(String client) {
+            this.client = client;
+        }
+
+        public void setFiles(Map<String, Entry> files) {
+            this.files = files;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+
+        private String checksum;
+        private List<String> imports = new ArrayList<>();
+        private List<String> outputs = new ArrayList<>();
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public List<String> getImports() {
+            return imports;
+        }
+
+        public List<String> getOutputs() {
+            return outputs;
+        }
+
+        public void setChecksum(String checksum) {
+            this.checksum = checksum;
+        }
+
+        public void setImports(List<String> imports) {
+            this.imports = imports;
+        }
+
+        public void setOutputs(List<String> outputs) {
+            this.outputs = outputs;
+        }
+    }
+}
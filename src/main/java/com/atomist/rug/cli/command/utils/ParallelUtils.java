@@ -0,0 +1,65 @@
+package com.atomist.rug.cli.command.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.utils.Profiler;
+
+public abstract class ParallelUtils {
+
+    // Number of workers from a --parallel option; defaults to the number of cores
+    public static int threads(String parallel, String command) {
+        if (parallel == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            int threads = Integer.parseInt(parallel);
+            if (threads > 0) {
+                return threads;
+            }
+        }
+        catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new CommandException(String.format(
+                "Invalid value %s for --parallel. Please specify a positive number.", parallel),
+                command);
+    }
+
+    // Applies the function to all items on at most threads workers and returns the results in the
+    // order of the items
+    public static <T, R> List<R> map(List<T> items, int threads, Function<T, R> function) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(threads, items.size())));
+        try {
+            Function<T, R> task = Profiler.propagate(function);
+            List<Future<R>> futures = new ArrayList<>();
+            items.forEach(i -> futures.add(executor.submit(() -> task.apply(i))));
+            List<R> results = new ArrayList<>();
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RunnerException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RunnerException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
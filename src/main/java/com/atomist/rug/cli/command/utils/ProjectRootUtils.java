@@ -0,0 +1,103 @@
+package com.atomist.rug.cli.command.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.utils.FileUtils;
+
+public abstract class ProjectRootUtils {
+
+    // Turns a list of projects into project root directories. The list is either '-' for reading
+    // from stdin, a file with one directory or glob per line or a single glob, eg. 'services/*'
+    public static List<File> collectProjectRoots(String projects, String command) {
+        List<String> patterns = new ArrayList<>();
+        try {
+            if ("-".equals(projects)) {
+                patterns.addAll(readLines(new BufferedReader(new InputStreamReader(System.in))));
+            }
+            else if (FileUtils.createProjectRoot(projects).isFile()) {
+                patterns.addAll(readLines(Files.newBufferedReader(
+                        FileUtils.createProjectRoot(projects).toPath())));
+            }
+            else {
+                patterns.add(projects);
+            }
+        }
+        catch (IOException e) {
+            throw new CommandException(
+                    String.format("Failed to read list of projects from %s", projects), command);
+        }
+
+        Set<File> roots = new LinkedHashSet<>();
+        for (String pattern : patterns) {
+            if (isGlob(pattern)) {
+                roots.addAll(expand(pattern));
+            }
+            else {
+                File root = FileUtils.createProjectRoot(pattern);
+                if (!root.isDirectory()) {
+                    throw new CommandException(
+                            String.format("Project %s does not exist", root.getAbsolutePath()),
+                            command);
+                }
+                roots.add(root);
+            }
+        }
+        if (roots.isEmpty()) {
+            throw new CommandException(String.format("No projects found in %s", projects),
+                    command);
+        }
+        return new ArrayList<>(roots);
+    }
+
+    private static List<String> readLines(BufferedReader reader) throws IOException {
+        try (BufferedReader r = reader) {
+            return r.lines().map(String::trim).filter(l -> !l.isEmpty() && !l.startsWith("#"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isGlob(String pattern) {
+        return pattern.matches(".*[*?\\[{].*");
+    }
+
+    private static List<File> expand(String glob) {
+        // Walk from the longest directory prefix not containing any wildcards
+        File absolute = FileUtils.createProjectRoot(glob);
+        String normalized = absolute.getPath().replace(File.separatorChar, '/');
+        String[] segments = normalized.split("/");
+        StringBuilder base = new StringBuilder();
+        int i = 0;
+        for (; i < segments.length && !isGlob(segments[i]); i++) {
+            base.append(segments[i]).append("/");
+        }
+        File baseDir = new File(base.length() == 0 ? "/" : base.toString());
+        if (!baseDir.isDirectory()) {
+            return Collections.emptyList();
+        }
+        int depth = (normalized.contains("**") ? Integer.MAX_VALUE : segments.length - i);
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + absolute.getPath());
+        try (Stream<Path> paths = Files.walk(baseDir.toPath(), depth)) {
+            return paths.filter(p -> Files.isDirectory(p) && matcher.matches(p)).map(Path::toFile)
+                    .sorted().collect(Collectors.toList());
+        }
+        catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+}
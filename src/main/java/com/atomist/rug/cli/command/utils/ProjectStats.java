@@ -0,0 +1,164 @@
+package com.atomist.rug.cli.command.utils;
+
+import static scala.collection.JavaConversions.asJavaCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.source.ArtifactSource;
+import com.atomist.source.Delta;
+import com.atomist.source.FileAdditionDelta;
+import com.atomist.source.FileArtifact;
+import com.atomist.source.FileDeletionDelta;
+import com.atomist.source.FileUpdateDelta;
+import com.atomist.source.filter.ArtifactFilter;
+
+// File count and size of a project. Collected in a single pass over the project and then kept up
+// to date from the deltas, so summary lines don't need to walk the project again.
+public class ProjectStats {
+
+    private final File root;
+    private final Map<String, Long> sizes;
+
+    private ProjectStats(File root, Map<String, Long> sizes) {
+        this.root = root;
+        this.sizes = sizes;
+    }
+
+    // Walks the project in parallel, one task per directory, skipping the same files and
+    // directories an editor wouldn't see
+    public static ProjectStats collect(File root) {
+        Map<String, Long> sizes = new ConcurrentHashMap<>();
+        if (root.isDirectory()) {
+            ForkJoinPool.commonPool().invoke(new DirectoryTask(root.toPath(), root.toPath(),
+                    ArtifactSourceUtils.projectFilters(root), sizes));
+        }
+        return new ProjectStats(root, sizes);
+    }
+
+    // Stats of the files of source after they have been written into root
+    public static ProjectStats collect(File root, ArtifactSource source) {
+        Map<String, Long> sizes = new HashMap<>();
+        asJavaCollection(source.allFiles())
+                .forEach(f -> sizes.put(f.path(), new File(root, f.path()).length()));
+        return new ProjectStats(root, sizes);
+    }
+
+    // Stats of the project as it looks once the deltas are applied
+    public ProjectStats plus(Collection<Delta> deltas) {
+        ProjectStats stats = new ProjectStats(root, new HashMap<>(sizes));
+        deltas.forEach(d -> {
+            if (d instanceof FileAdditionDelta) {
+                stats.put(((FileAdditionDelta) d).newFile());
+            }
+            else if (d instanceof FileUpdateDelta) {
+                stats.sizes.remove(((FileUpdateDelta) d).oldFile().path());
+                stats.put(((FileUpdateDelta) d).updatedFile());
+            }
+            else if (d instanceof FileDeletionDelta) {
+                stats.sizes.remove(d.path());
+            }
+        });
+        return stats;
+    }
+
+    // Replaces the sizes of files touched by deltas with what actually got written to disk
+    public void written(Collection<Delta> deltas) {
+        deltas.forEach(d -> {
+            String path = null;
+            if (d instanceof FileAdditionDelta) {
+                path = ((FileAdditionDelta) d).newFile().path();
+            }
+            else if (d instanceof FileUpdateDelta) {
+                path = ((FileUpdateDelta) d).updatedFile().path();
+            }
+            File file = (path != null ? new File(root, path) : null);
+            if (file != null && file.isFile()) {
+                sizes.put(path, file.length());
+            }
+        });
+    }
+
+    public int files() {
+        return sizes.size();
+    }
+
+    public long bytes() {
+        return sizes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public String size() {
+        return FileUtils.sizeOf(bytes());
+    }
+
+    public String size(String path) {
+        Long size = sizes.get(path);
+        return (size != null ? FileUtils.sizeOf(size) : null);
+    }
+
+    private void put(FileArtifact file) {
+        // Artifacts know their length without reading or encoding lazily loaded or binary content
+        sizes.put(file.path(), (long) file.contentLength());
+    }
+
+    private static class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path dir;
+        private final List<ArtifactFilter> filters;
+        private final Map<String, Long> sizes;
+
+        public DirectoryTask(Path root, Path dir, List<ArtifactFilter> filters,
+                Map<String, Long> sizes) {
+            this.root = root;
+            this.dir = dir;
+            this.filters = filters;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    if (!accept(child)) {
+                        continue;
+                    }
+                    BasicFileAttributes attrs = Files.readAttributes(child,
+                            BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        tasks.add(new DirectoryTask(root, child, filters, sizes));
+                    }
+                    else if (attrs.isRegularFile()) {
+                        sizes.put(root.relativize(child).toString().replace(File.separatorChar,
+                                '/'), attrs.size());
+                    }
+                }
+            }
+            catch (IOException e) {
+                // Stats are informational only; report what could be read
+            }
+            invokeAll(tasks);
+        }
+
+        private boolean accept(Path path) {
+            return filters.stream().allMatch(f -> f.apply(path.toString()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.atomist.rug.cli.command.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.CodeSource;
+import java.util.function.Supplier;
+
+import com.atomist.project.archive.Operations;
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.LocalArtifactDescriptor;
+
+public abstract class ScriptCacheUtils {
+
+    private static final String NASHORN_ARGS = "nashorn.args";
+    private static final String NASHORN_CODE_CACHE = "nashorn.persistent.code.cache";
+    private static final String PERSISTENT_CODE_CACHE = "--persistent-code-cache";
+
+    // Runs the given operation with Nashorn persisting compiled scripts into a cache directory
+    // specific to the archive contents, CLI and Rug version
+    public static <T> T withCodeCache(ArtifactDescriptor artifact, Supplier<T> supplier) {
+        File archive = (artifact.uri() != null ? new File(artifact.uri()) : null);
+        // Local archives change all the time; no point in caching those
+        if (artifact instanceof LocalArtifactDescriptor || archive == null || !archive.isFile()) {
+            return supplier.get();
+        }
+
+        File cacheDir = null;
+        try {
+            cacheDir = new File(FileUtils.getCacheDirectory("scripts"), key(archive));
+        }
+        catch (IOException e) {
+            return supplier.get();
+        }
+
+        if (CommandLineOptions.hasOption("u")) {
+            org.apache.commons.io.FileUtils.deleteQuietly(cacheDir);
+        }
+        cacheDir.mkdirs();
+
+        String args = System.getProperty(NASHORN_ARGS);
+        String codeCache = System.getProperty(NASHORN_CODE_CACHE);
+        try {
+            System.setProperty(NASHORN_ARGS,
+                    (args == null ? PERSISTENT_CODE_CACHE : args + " " + PERSISTENT_CODE_CACHE));
+            System.setProperty(NASHORN_CODE_CACHE, cacheDir.getAbsolutePath());
+            return supplier.get();
+        }
+        finally {
+            restore(NASHORN_ARGS, args);
+            restore(NASHORN_CODE_CACHE, codeCache);
+        }
+    }
+
+    private static String key(File archive) throws IOException {
+        return ChecksumUtils.sha1(ChecksumUtils.sha1(archive) + "\n" + Constants.cliClient()
+                + "\n" + rugVersion());
+    }
+
+    private static String rugVersion() {
+        // The jar Rug got loaded from carries its version
+        CodeSource source = Operations.class.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return "unknown";
+        }
+        return new File(source.getLocation().getPath()).getName();
+    }
+
+    private static void restore(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        }
+        else {
+            System.setProperty(key, value);
+        }
+    }
+}
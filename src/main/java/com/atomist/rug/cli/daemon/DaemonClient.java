@@ -0,0 +1,207 @@
+package com.atomist.rug.cli.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import com.atomist.rug.cli.Main;
+import com.atomist.rug.cli.version.VersionUtils;
+
+public class DaemonClient {
+
+    private static final int CONNECT_TIMEOUT = 500;
+    private static final int STARTUP_TIMEOUT = 30 * 1000;
+
+    // Commands and options that need the terminal of the client or keep running until stopped
+    private static final List<String> INTERACTIVE_ARGS = Arrays.asList("shell", "--interactive",
+            "--watch");
+    private static final String INTERACTIVE_FLAGS = "Iw";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("daemon") && args[1].equals("stop")) {
+            System.exit(stop());
+        }
+        else if (isInteractive(args) || readsStdin(args)) {
+            Main.main(args);
+        }
+        else {
+            Optional<Socket> socket = connect(true);
+            Optional<Integer> rc = (socket.isPresent() ? forward(socket.get(), args)
+                    : Optional.empty());
+            if (rc.isPresent()) {
+                System.exit(rc.get());
+            }
+            else {
+                // Daemon couldn't be started or is busy with another command; fall back to
+                // running in this JVM
+                Main.main(args);
+            }
+        }
+    }
+
+    // Short flags might be combined with others, eg. -Vw
+    static boolean isInteractive(String[] args) {
+        // repo serve runs until stopped; inside the daemon Ctrl-C wouldn't stop it
+        List<String> tokens = Arrays.asList(args);
+        if (tokens.contains("repo") && tokens.indexOf("serve") > tokens.indexOf("repo")) {
+            return true;
+        }
+        return Arrays.stream(args)
+                .anyMatch(a -> INTERACTIVE_ARGS.contains(a) || (a.matches("-[a-zA-Z]+")
+                        && a.chars().anyMatch(c -> INTERACTIVE_FLAGS.indexOf(c) >= 0)));
+    }
+
+    // The daemon doesn't get to see stdin of the client; eg. edit --projects -
+    static boolean readsStdin(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if ((args[i].equals("-P") || args[i].equals("--projects")) && i + 1 < args.length
+                    && args[i + 1].equals("-")) {
+                return true;
+            }
+            else if (args[i].equals("-P-") || args[i].equals("--projects=-")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Optional<Socket> connect(boolean start) {
+        Optional<Properties> props = DaemonProtocol.readDaemonFile();
+        if (props.isPresent()) {
+            if (!DaemonProtocol.version(props.get())
+                    .equals(VersionUtils.readVersion().orElse("0.0.0"))) {
+                // Daemon was started from a different version of the CLI
+                stop();
+            }
+            else {
+                Optional<Socket> socket = connect(props.get());
+                if (socket.isPresent()) {
+                    return socket;
+                }
+            }
+        }
+        if (start) {
+            return startDaemon();
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Socket> connect(Properties props) {
+        try {
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    DaemonProtocol.port(props)), CONNECT_TIMEOUT);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            DaemonProtocol.writeString(out, DaemonProtocol.token(props));
+            out.flush();
+            return Optional.of(socket);
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Socket> startDaemon() {
+        File daemonFile = DaemonProtocol.daemonFile();
+        daemonFile.delete();
+
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator
+                + "java");
+        // Pass on -Xmx and JAVA_OPTS given to this JVM
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DaemonServer.class.getName());
+
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectOutput(ProcessBuilder.Redirect.appendTo(
+                    new File(daemonFile.getParentFile(), "daemon.log")));
+            builder.redirectErrorStream(true);
+            daemonFile.getParentFile().mkdirs();
+            builder.start();
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<Socket> socket = connect(false);
+            if (socket.isPresent()) {
+                return socket;
+            }
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Integer> forward(Socket socket, String[] args) throws IOException {
+        try (Socket s = socket) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(s.getOutputStream()));
+            out.writeInt(DaemonProtocol.REQUEST_RUN);
+            DaemonProtocol.writeString(out, System.getProperty("user.dir"));
+            DaemonProtocol.writeArray(out, args);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            while (true) {
+                byte channel = in.readByte();
+                if (channel == DaemonProtocol.CHANNEL_EXIT) {
+                    return Optional.of(in.readInt());
+                }
+                else if (channel == DaemonProtocol.CHANNEL_BUSY) {
+                    return Optional.empty();
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                PrintStream stream = (channel == DaemonProtocol.CHANNEL_ERR ? System.err
+                        : System.out);
+                stream.write(bytes);
+                stream.flush();
+            }
+        }
+    }
+
+    static int stop() {
+        Optional<Properties> props = DaemonProtocol.readDaemonFile();
+        if (props.isPresent()) {
+            Optional<Socket> socket = connect(props.get());
+            if (socket.isPresent()) {
+                try (Socket s = socket.get()) {
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(s.getOutputStream()));
+                    out.writeInt(DaemonProtocol.REQUEST_STOP);
+                    out.flush();
+                    byte channel = new DataInputStream(s.getInputStream()).readByte();
+                    return (channel == DaemonProtocol.CHANNEL_EXIT ? 0 : 1);
+                }
+                catch (IOException e) {
+                    return 1;
+                }
+            }
+        }
+        return 0;
+    }
+}
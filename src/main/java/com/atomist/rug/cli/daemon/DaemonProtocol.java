@@ -0,0 +1,184 @@
+package com.atomist.rug.cli.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Optional;
+import java.util.Properties;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.utils.FileUtils;
+
+public abstract class DaemonProtocol {
+
+    public static final int REQUEST_RUN = 1;
+    public static final int REQUEST_STOP = 2;
+
+    public static final byte CHANNEL_OUT = 1;
+    public static final byte CHANNEL_ERR = 2;
+    public static final byte CHANNEL_EXIT = 3;
+    public static final byte CHANNEL_BUSY = 4;
+
+    // Upper bounds for everything read from a connection so that no client can make the daemon
+    // allocate arbitrary amounts of memory; the token is checked before anything else is read
+    public static final int MAX_TOKEN_LENGTH = 64;
+    public static final int MAX_STRING_LENGTH = 1024 * 1024;
+    public static final int MAX_ENTRIES = 10000;
+
+    private static final String PORT_KEY = "port";
+    private static final String TOKEN_KEY = "token";
+    private static final String VERSION_KEY = "version";
+
+    public static File daemonFile() {
+        return new File(org.apache.commons.io.FileUtils.getUserDirectory(), Constants.ATOMIST_ROOT
+                + File.separator + Constants.DAEMON_ROOT + File.separator + "daemon.properties");
+    }
+
+    public static Optional<Properties> readDaemonFile() {
+        File file = daemonFile();
+        if (!file.exists()) {
+            return Optional.empty();
+        }
+        try (InputStream is = new FileInputStream(file)) {
+            Properties props = new Properties();
+            props.load(is);
+            return Optional.of(props);
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static void writeDaemonFile(int port, String token, String version)
+            throws IOException {
+        File file = daemonFile();
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        Properties props = new Properties();
+        props.setProperty(PORT_KEY, Integer.toString(port));
+        props.setProperty(TOKEN_KEY, token);
+        props.setProperty(VERSION_KEY, version);
+        try (OutputStream os = new FileOutputStream(file)) {
+            props.store(os, null);
+        }
+        FileUtils.setPermissionsToOwnerOnly(file);
+    }
+
+    public static int port(Properties props) {
+        return Integer.parseInt(props.getProperty(PORT_KEY, "-1"));
+    }
+
+    public static String token(Properties props) {
+        return props.getProperty(TOKEN_KEY, "");
+    }
+
+    public static String version(Properties props) {
+        return props.getProperty(VERSION_KEY, "");
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        return readString(in, MAX_STRING_LENGTH);
+    }
+
+    public static String readString(DataInputStream in, int maxLength) throws IOException {
+        byte[] bytes = new byte[readLength(in, maxLength)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static boolean readToken(DataInputStream in, String token) throws IOException {
+        byte[] bytes = new byte[readLength(in, MAX_TOKEN_LENGTH)];
+        in.readFully(bytes);
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), bytes);
+    }
+
+    private static int readLength(DataInputStream in, int max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) {
+            throw new IOException(String.format("Invalid length %s", length));
+        }
+        return length;
+    }
+
+    public static void writeArray(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    public static String[] readArray(DataInputStream in) throws IOException {
+        String[] values = new String[readLength(in, MAX_ENTRIES)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    public static void writeExit(DataOutputStream out, int rc) throws IOException {
+        synchronized (out) {
+            out.writeByte(CHANNEL_EXIT);
+            out.writeInt(rc);
+            out.flush();
+        }
+    }
+
+    public static void writeBusy(DataOutputStream out) throws IOException {
+        synchronized (out) {
+            out.writeByte(CHANNEL_BUSY);
+            out.flush();
+        }
+    }
+
+    // A request consists of token, type, working directory and arguments; the
+    // response is a sequence of frames each tagged with the channel it belongs to
+    public static class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte channel;
+
+        public FrameOutputStream(DataOutputStream out, byte channel) {
+            this.out = out;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(channel);
+                out.writeInt(len);
+                out.write(b, off, len);
+                out.flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.atomist.rug.cli.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.Runner;
+import com.atomist.rug.cli.command.CommandInfoRegistry;
+import com.atomist.rug.cli.command.ServiceLoadingCommandInfoRegistry;
+import com.atomist.rug.cli.output.ConsoleUtils;
+import com.atomist.rug.cli.version.VersionUtils;
+
+public class DaemonServer {
+
+    // Time a client gets to send its request; commands themselves may run as long as they need
+    private static final int REQUEST_TIMEOUT = 10 * 1000;
+
+    private final CommandInfoRegistry registry;
+    private final String token;
+
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    final AtomicBoolean busy = new AtomicBoolean();
+
+    private volatile boolean running = true;
+
+    public DaemonServer(CommandInfoRegistry registry) {
+        this.registry = registry;
+        this.token = createToken();
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", Boolean.toString(true));
+        System.setProperty(Constants.DAEMON_PROPERTY, Boolean.toString(true));
+
+        new DaemonServer(new ServiceLoadingCommandInfoRegistry()).serve();
+        System.exit(0);
+    }
+
+    public void serve() throws IOException {
+        // Only bind to the loopback interface; the token in the daemon file guards against other
+        // local users connecting
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) Constants.DAEMON_IDLE_TIMEOUT);
+            DaemonProtocol.writeDaemonFile(server.getLocalPort(), token,
+                    VersionUtils.readVersion().orElse("0.0.0"));
+
+            while (running) {
+                Socket socket = null;
+                try {
+                    socket = server.accept();
+                }
+                catch (SocketTimeoutException e) {
+                    // Nothing to do for too long; shut down and free the memory
+                    running = busy.get();
+                    continue;
+                }
+                Socket client = socket;
+                connections.execute(() -> {
+                    try (Socket s = client) {
+                        handle(s);
+                    }
+                    catch (IOException e) {
+                        // Client went away or sent garbage; keep serving others
+                    }
+                });
+            }
+        }
+        finally {
+            // Let a running command finish before the JVM goes away
+            connections.shutdown();
+            try {
+                connections.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // Only remove the daemon file if it wasn't already taken over by a newer daemon
+            Optional<Properties> props = DaemonProtocol.readDaemonFile();
+            if (props.isPresent() && token.equals(DaemonProtocol.token(props.get()))) {
+                DaemonProtocol.daemonFile().delete();
+            }
+        }
+    }
+
+    private String createToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        if (!DaemonProtocol.readToken(in, token)) {
+            return;
+        }
+
+        int type = in.readInt();
+        if (type == DaemonProtocol.REQUEST_STOP) {
+            running = false;
+            DaemonProtocol.writeExit(out, 0);
+            // Wake up the accept loop so that the daemon exits without another request coming in
+            new Socket(InetAddress.getLoopbackAddress(), socket.getLocalPort()).close();
+            return;
+        }
+
+        String workingDir = DaemonProtocol.readString(in);
+        String[] args = DaemonProtocol.readArray(in);
+
+        // Commands share the JVM wide streams, working directory and context classloader; while
+        // one is running, other clients are told to run in their own JVM instead of waiting
+        if (!busy.compareAndSet(false, true)) {
+            DaemonProtocol.writeBusy(out);
+            return;
+        }
+        try {
+            socket.setSoTimeout(0);
+            DaemonProtocol.writeExit(out, run(workingDir, args, out));
+        }
+        finally {
+            busy.set(false);
+        }
+    }
+
+    private int run(String workingDir, String[] args, DataOutputStream out) {
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        String originalWorkingDir = System.getProperty("user.dir");
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+
+        try {
+            System.setOut(new PrintStream(
+                    new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.CHANNEL_OUT), true));
+            System.setErr(new PrintStream(
+                    new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.CHANNEL_ERR), true));
+            ConsoleUtils.configureStreams();
+
+            // Paths given by the client are resolved against user.dir explicitly
+            System.setProperty("user.dir", workingDir);
+
+            return new Runner(registry).execute(args);
+        }
+        catch (Throwable e) {
+            e.printStackTrace(System.err);
+            return 1;
+        }
+        finally {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            System.setProperty("user.dir", originalWorkingDir);
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+    }
+}
@@ -3,7 +3,8 @@ package com.atomist.rug.cli.output;
 public abstract class ConsoleUtils {
 
     public static int width() {
-        String columns = System.getenv("COLUMNS");
+        // When running in the daemon the client's environment is exposed as system properties
+        String columns = System.getProperty("COLUMNS", System.getenv("COLUMNS"));
         int width = 80;
         if (columns != null) {
             width = Integer.valueOf(columns);
@@ -2,6 +2,7 @@ package com.atomist.rug.cli.output;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -23,6 +24,9 @@ public class ProgressReportingTransferListener extends AbstractTransferListener
 
     private Map<String, String> repositories;
 
+    // Transfers currently in flight; dependencies are downloaded in parallel
+    private final AtomicInteger active = new AtomicInteger();
+
     public ProgressReportingTransferListener(ProgressReporter indicator, boolean reportTitle) {
         this(new SettingsReader().read().getRemoteRepositories(), indicator);
         this.reportTitle = reportTitle;
@@ -40,6 +44,11 @@ public class ProgressReportingTransferListener extends AbstractTransferListener
 
     }
 
+    @Override
+    public void transferStarted(TransferEvent event) throws TransferCancelledException {
+        active.incrementAndGet();
+    }
+
     @Override
     public void transferCorrupted(TransferEvent event) throws TransferCancelledException {
         if (CommandLineOptions.hasOption("V")) {
@@ -52,14 +61,21 @@ public class ProgressReportingTransferListener extends AbstractTransferListener
         if (CommandLineOptions.hasOption("V")) {
             report(event);
         }
+        finished(event);
     }
 
     @Override
     public void transferSucceeded(TransferEvent event) {
         report(event);
+        finished(event);
     }
 
-    private void report(TransferEvent event) {
+    private void finished(TransferEvent event) {
+        // Failures while resolving metadata may come without a start event
+        active.updateAndGet(i -> Math.max(0, i - 1));
+    }
+
+    private synchronized void report(TransferEvent event) {
         String message = messageFrom(event);
         if (reportTitle) {
             indicator.report("Processing dependencies");
@@ -91,6 +107,13 @@ public class ProgressReportingTransferListener extends AbstractTransferListener
             message.append(" (");
             message.append(FileUtils.byteCountToDisplaySize(event.getResource().getContentLength())
                     .toLowerCase());
+            String throughput = throughput(event);
+            if (throughput != null) {
+                message.append(", ").append(throughput);
+            }
+            if (active.get() > 1) {
+                message.append(", ").append(active.get()).append(" in parallel");
+            }
             message.append(")");
         }
         message.append(" ");
@@ -113,6 +136,16 @@ public class ProgressReportingTransferListener extends AbstractTransferListener
         return message.toString();
     }
 
+    private String throughput(TransferEvent event) {
+        long start = event.getResource().getTransferStartTime();
+        if (start <= 0 || event.getTransferredBytes() <= 0) {
+            return null;
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        return FileUtils.byteCountToDisplaySize(event.getTransferredBytes() * 1000 / duration)
+                .toLowerCase() + "/s";
+    }
+
     private String sanitizeUrl(String url) {
         url = StringUtils.expandEnvironmentVars(url);
         if (url.endsWith("/")) {
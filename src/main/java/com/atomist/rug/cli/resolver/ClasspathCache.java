@@ -0,0 +1,284 @@
+package com.atomist.rug.cli.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.settings.Settings;
+import com.atomist.rug.cli.settings.SettingsReader;
+import com.atomist.rug.cli.utils.ArtifactDescriptorUtils;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.cli.utils.StringUtils;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
+import com.atomist.rug.resolver.ArtifactDescriptor.Scope;
+import com.atomist.rug.resolver.DefaultArtifactDescriptor;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ClasspathCache {
+
+    // Versions like latest or ranges might resolve differently once new versions get released
+    private static final long DYNAMIC_VERSION_TIMEOUT = 1000 * 60 * 60;
+
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicInteger misses = new AtomicInteger();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File root;
+    private final Settings settings;
+
+    public ClasspathCache() {
+        this(FileUtils.getCacheDirectory("classpath"), new SettingsReader().read());
+    }
+
+    public ClasspathCache(File root, Settings settings) {
+        this.root = root;
+        this.settings = settings;
+    }
+
+    public static int hits() {
+        return hits.get();
+    }
+
+    public static int misses() {
+        return misses.get();
+    }
+
+    public Optional<List<ArtifactDescriptor>> get(ArtifactDescriptor artifact) {
+        File file = cacheFile(artifact);
+        if (CommandLineOptions.hasOption("u") || !file.exists()) {
+            return miss();
+        }
+
+        try {
+            Entry entry = mapper.readValue(file, Entry.class);
+            if (isDynamic(artifact) && System.currentTimeMillis()
+                    - entry.getCreated() > DYNAMIC_VERSION_TIMEOUT) {
+                return miss();
+            }
+
+            List<ArtifactDescriptor> dependencies = new ArrayList<>();
+            for (Dependency dependency : entry.getDependencies()) {
+                File dependencyFile = new File(URI.create(dependency.getUri()));
+                if (!dependency.matches(dependencyFile)) {
+                    // Local repository changed underneath us
+                    file.delete();
+                    return miss();
+                }
+                dependencies.add(new DefaultArtifactDescriptor(dependency.getGroup(),
+                        dependency.getArtifact(), dependency.getVersion(),
+                        Extension.valueOf(dependency.getExtension()),
+                        scope(dependency.getScope()), dependencyFile.toURI()));
+            }
+            hits.incrementAndGet();
+            return Optional.of(dependencies);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            file.delete();
+            return miss();
+        }
+    }
+
+    public void put(ArtifactDescriptor artifact, List<ArtifactDescriptor> dependencies) {
+        try {
+            Entry entry = new Entry();
+            entry.setCreated(System.currentTimeMillis());
+            for (ArtifactDescriptor ad : dependencies) {
+                File file = new File(ad.uri());
+                Dependency dependency = new Dependency();
+                dependency.setGroup(ad.group());
+                dependency.setArtifact(ad.artifact());
+                dependency.setVersion(ad.version());
+                dependency.setExtension(ad.extension().toString());
+                dependency.setScope(ad.scope() != null ? ad.scope().toString() : null);
+                dependency.setUri(file.toURI().toString());
+                dependency.setSize(file.length());
+                dependency.setLastModified(file.lastModified());
+                dependency.setChecksum(ChecksumUtils.sha1(file));
+                entry.getDependencies().add(dependency);
+            }
+
+            File file = cacheFile(artifact);
+            if (!file.getParentFile().exists()) {
+                file.getParentFile().mkdirs();
+            }
+            mapper.writeValue(file, entry);
+        }
+        catch (IOException e) {
+            // Not being able to write the cache only costs a resolution next time
+        }
+    }
+
+    // Everything the resolved classpath depends on: the archive, its declared dependencies and
+    // the repository settings
+    public String key(ArtifactDescriptor artifact) {
+        StringBuilder key = new StringBuilder();
+        key.append(Constants.cliClient()).append("\n");
+        key.append(ArtifactDescriptorUtils.coordinates(artifact)).append(":")
+                .append(artifact.extension()).append("\n");
+        key.append(String.valueOf(artifact.uri())).append("\n");
+        key.append(artifact.dependencies().stream().map(ArtifactDescriptorUtils::coordinates)
+                .collect(Collectors.joining(","))).append("\n");
+        key.append(settings.getLocalRepository().path()).append("\n");
+        key.append(settings.getRemoteRepositories().values().stream()
+                .map(r -> StringUtils.expandEnvironmentVars(r.getUrl())).sorted()
+                .collect(Collectors.joining(","))).append("\n");
+        key.append(CommandLineOptions.hasOption("offline"));
+        return key.toString();
+    }
+
+    private File cacheFile(ArtifactDescriptor artifact) {
+        return new File(root, ChecksumUtils.sha1(key(artifact)) + ".json");
+    }
+
+    // The root or any of the declared dependencies might pick up a newer version
+    private boolean isDynamic(ArtifactDescriptor artifact) {
+        return isDynamic(artifact.version())
+                || artifact.dependencies().stream().anyMatch(d -> isDynamic(d.version()));
+    }
+
+    private boolean isDynamic(String version) {
+        return version == null || "latest".equals(version) || version.contains("[")
+                || version.contains("(") || version.contains(",")
+                || version.endsWith("-SNAPSHOT");
+    }
+
+    private Scope scope(String scope) {
+        // Entries written before the scope was recorded
+        return (scope != null ? Scope.valueOf(scope) : Scope.COMPILE);
+    }
+
+    private Optional<List<ArtifactDescriptor>> miss() {
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+
+        private long created;
+        private List<Dependency> dependencies = new ArrayList<>();
+
+        public long getCreated() {
+            return created;
+        }
+
+        public List<Dependency> getDependencies() {
+            return dependencies;
+        }
+
+        public void setCreated(long created) {
+            this.created = created;
+        }
+
+        public void setDependencies(List<Dependency> dependencies) {
+            this.dependencies = dependencies;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Dependency {
+
+        private String artifact;
+        private String checksum;
+        private String extension;
+        private String group;
+        private long lastModified;
+        private String scope;
+        private long size;
+        private String uri;
+        private String version;
+
+        public boolean matches(File file) throws IOException {
+            if (!file.exists() || file.length() != size) {
+                return false;
+            }
+            if (file.lastModified() == lastModified) {
+                return true;
+            }
+            // File got touched; only the checksum can tell if it really changed
+            return ChecksumUtils.sha1(file).equals(checksum);
+        }
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setArtifact(String artifact) {
+            this.artifact = artifact;
+        }
+
+        public void setChecksum(String checksum) {
+            this.checksum = checksum;
+        }
+
+        public void setExtension(String extension) {
+            this.extension = extension;
+        }
+
+        public void setGroup(String group) {
+            this.group = group;
+        }
+
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        public void setScope(String scope) {
+            this.scope = scope;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public void setUri(String uri) {
+            this.uri = uri;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+    }
+}
@@ -1,38 +1,65 @@
 package com.atomist.rug.cli.resolver;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
+import org.eclipse.aether.transfer.MetadataTransferException;
 import org.eclipse.aether.util.repository.ConservativeProxySelector;
 import org.eclipse.aether.util.repository.JreProxySelector;
 
 import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.command.CommandException;
 import com.atomist.rug.cli.output.ProgressReporter;
 import com.atomist.rug.cli.output.ProgressReportingTransferListener;
+import com.atomist.rug.cli.settings.SettingsReader;
 import com.atomist.rug.cli.utils.CommandLineOptions;
 import com.atomist.rug.resolver.ArtifactDescriptor;
 import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
 import com.atomist.rug.resolver.CachingDependencyResolver;
 import com.atomist.rug.resolver.DefaultArtifactDescriptor;
 import com.atomist.rug.resolver.DependencyResolver;
+import com.atomist.rug.resolver.DependencyResolverException;
 import com.atomist.rug.resolver.LocalArtifactDescriptor;
+import com.atomist.rug.resolver.maven.DependencyCollectionException;
+import com.atomist.rug.resolver.maven.DependencyCollectionException.ErrorType;
 import com.atomist.rug.resolver.maven.LogDependencyVisitor;
 import com.atomist.rug.resolver.maven.MavenBasedDependencyResolver;
 import com.atomist.rug.resolver.maven.MavenProperties;
+import com.atomist.rug.resolver.maven.MavenProperties.Repo;
 
 public class DependencyResolverFactory {
 
+    private static final long KEEP_ALIVE = 60;
+
+    // All resolvers of the process, eg. from extensions, the command runner and operation
+    // loading, share one pool of workers
+    private static ThreadPoolExecutor executorService;
+
     public DependencyResolver createDependencyResolver(ArtifactDescriptor artifact,
             ProgressReporter indicator) {
-        ExecutorService executorService = Executors.newFixedThreadPool(5, r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setDaemon(true);
-            return t;
-        });
+        ExecutorService executorService = executorService(
+                new SettingsReader().read().getResolver().threads());
         MavenProperties properties = MavenPropertiesFactory
                 .create(CommandLineOptions.hasOption("offline"), !CommandLineOptions.hasOption("u"));
+        NegativeResultCache negativeCache = new NegativeResultCache();
+        RepositoryRouter router = new RepositoryRouter(negativeCache);
+        properties.setRepos(router.order(properties.getRepos(), artifact,
+                !CommandLineOptions.hasOption("offline"), executorService));
+        List<String> urls = properties.getRepos().values().stream().map(Repo::getUrl)
+                .collect(Collectors.toList());
         MavenBasedDependencyResolver resolver = new MavenBasedDependencyResolver(
                 MavenPropertiesFactory.repositorySystem(), properties, executorService) {
 
@@ -82,7 +109,79 @@ public class DependencyResolverFactory {
             }, Constants.TREE_NODE, Constants.LAST_TREE_NODE, Constants.TREE_CONNECTOR,
                     Constants.TREE_NODE_WITH_CHILDREN, Constants.LAST_TREE_NODE_WITH_CHILDREN));
         }
-        return wrapDependencyResolver(resolver, properties.getRepoLocation());
+        return wrapDependencyResolver(resolver, properties.getRepoLocation(), router,
+                negativeCache, urls);
+    }
+
+    private static synchronized ExecutorService executorService(int threads) {
+        if (executorService == null || executorService.getMaximumPoolSize() != threads) {
+            AtomicInteger count = new AtomicInteger();
+            // Idle workers time out so a pool replaced after a settings change in the daemon
+            // just fades away once its resolvers are done
+            executorService = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = Executors.defaultThreadFactory().newThread(r);
+                        t.setName("rug-resolver-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            executorService.allowCoreThreadTimeOut(true);
+        }
+        return executorService;
+    }
+
+    // Fails right away if none of the repositories had the archive when last asked and it
+    // hasn't been installed into the local repository since
+    private static void checkMissing(ArtifactDescriptor artifact, List<String> urls,
+            NegativeResultCache negativeCache, String repoHome) {
+        if (!(artifact instanceof LocalArtifactDescriptor)
+                && negativeCache.isMissing(urls, coordinate(artifact))
+                && !isInstalled(artifact, repoHome)) {
+            throw new CommandException(String.format(
+                    "Unable to resolve requested archive %s:%s:%s.\nIt wasn't found in any of your configured repositories recently. Run the command with -u to look again.",
+                    artifact.group(), artifact.artifact(), artifact.version()));
+        }
+    }
+
+    private static boolean isInstalled(ArtifactDescriptor artifact, String repoHome) {
+        File dir = new File(repoHome, artifact.group().replace('.', File.separatorChar)
+                + File.separator + artifact.artifact() + File.separator + artifact.version());
+        return new File(dir, artifact.artifact() + "-" + artifact.version() + "."
+                + artifact.extension().toString().toLowerCase()).isFile();
+    }
+
+    // Only remembers the requested archive being absent; missing transitive dependencies and
+    // failed transfers, eg. because of network problems, are not cached
+    private static void recordMissing(ArtifactDescriptor artifact, DependencyResolverException e,
+            List<String> urls, NegativeResultCache negativeCache) {
+        if (artifact instanceof LocalArtifactDescriptor || CommandLineOptions.hasOption("offline")
+                || !(e instanceof DependencyCollectionException)
+                || ((DependencyCollectionException) e).getType() == ErrorType.DEPENDENCY_ERROR
+                || isTransferProblem(e)) {
+            return;
+        }
+        List<RemoteRepository> repositories = ((DependencyCollectionException) e)
+                .getRemoteRepositories();
+        negativeCache.missing((repositories != null && !repositories.isEmpty()
+                ? repositories.stream().map(RemoteRepository::getUrl).collect(Collectors.toList())
+                : urls), coordinate(artifact));
+    }
+
+    private static boolean isTransferProblem(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if ((t instanceof ArtifactTransferException && !(t instanceof ArtifactNotFoundException))
+                    || (t instanceof MetadataTransferException
+                            && !(t instanceof MetadataNotFoundException))
+                    || t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String coordinate(ArtifactDescriptor artifact) {
+        return String.format("%s:%s:%s", artifact.group(), artifact.artifact(),
+                artifact.version());
     }
 
     private void addExclusions(MavenBasedDependencyResolver resolver) {
@@ -93,7 +192,8 @@ public class DependencyResolverFactory {
     }
 
     private DependencyResolver wrapDependencyResolver(DependencyResolver resolver,
-            String repoHome) {
+            String repoHome, RepositoryRouter router, NegativeResultCache negativeCache,
+            List<String> urls) {
         return new CachingDependencyResolver(resolver, repoHome) {
 
             @Override
@@ -109,6 +209,38 @@ public class DependencyResolverFactory {
                 return super.isOutdated(artifact, file);
             }
 
+            @Override
+            public String resolveVersion(ArtifactDescriptor artifact)
+                    throws DependencyResolverException {
+                checkMissing(artifact, urls, negativeCache, repoHome);
+                try {
+                    String version = super.resolveVersion(artifact);
+                    negativeCache.found(urls, coordinate(artifact));
+                    return version;
+                }
+                catch (DependencyResolverException e) {
+                    recordMissing(artifact, e, urls, negativeCache);
+                    throw e;
+                }
+            }
+
+            @Override
+            public List<ArtifactDescriptor> resolveTransitiveDependencies(
+                    ArtifactDescriptor artifact) throws DependencyResolverException {
+                checkMissing(artifact, urls, negativeCache, repoHome);
+                try {
+                    List<ArtifactDescriptor> dependencies = super.resolveTransitiveDependencies(
+                            artifact);
+                    negativeCache.found(urls, coordinate(artifact));
+                    router.record(dependencies);
+                    return dependencies;
+                }
+                catch (DependencyResolverException e) {
+                    recordMissing(artifact, e, urls, negativeCache);
+                    throw e;
+                }
+            }
+
         };
     }
 
@@ -0,0 +1,412 @@
+package com.atomist.rug.cli.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class LocalRepositoryIndex {
+
+    // Bump whenever the structure of the persisted index changes
+    private static final int FORMAT = 2;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File repository;
+    private final File indexFile;
+
+    public LocalRepositoryIndex(File repository) {
+        this.repository = repository.getAbsoluteFile();
+        this.indexFile = new File(FileUtils.getCacheDirectory("repository"),
+                ChecksumUtils.sha1(this.repository.getPath()) + ".json");
+    }
+
+    // Brings the index up-to-date for everything below the given directory and returns all Rug
+    // archives found there; only zips in version directories that changed get opened
+    public synchronized List<Archive> archives(File root) {
+        Index index = read();
+        String prefix = relativize(root);
+        Set<String> seen = new HashSet<>();
+        if (root.isDirectory()) {
+            scan(root.getAbsoluteFile(), index, seen);
+        }
+
+        // Remove what got deleted from the repository since the last scan
+        Iterator<String> it = index.getDirectories().keySet().iterator();
+        while (it.hasNext()) {
+            String dir = it.next();
+            if (isBelow(dir, prefix) && !seen.contains(dir)) {
+                it.remove();
+            }
+        }
+        write(index);
+
+        return index.getDirectories().entrySet().stream().filter(e -> isBelow(e.getKey(), prefix))
+                .flatMap(e -> e.getValue().getArchives().stream()).filter(Archive::isRug)
+                .collect(Collectors.toList());
+    }
+
+    // Record freshly installed or resolved archives without waiting for the next rescan
+    public synchronized void record(Iterable<File> archives) {
+        Index index = read();
+        Set<File> dirs = new HashSet<>();
+        archives.forEach(a -> {
+            if (a.getName().endsWith(".zip") && a.getAbsolutePath()
+                    .startsWith(repository.getPath() + File.separator)) {
+                dirs.add(a.getAbsoluteFile().getParentFile());
+            }
+        });
+        if (!dirs.isEmpty()) {
+            dirs.forEach(d -> index.getDirectories().put(relativize(d), versionDirectory(d,
+                    index.getDirectories().get(relativize(d)))));
+            write(index);
+        }
+    }
+
+    private void scan(File dir, Index index, Set<String> seen) {
+        String path = relativize(dir);
+        VersionDirectory existing = index.getDirectories().get(path);
+        if (existing != null && existing.getLastModified() == dir.lastModified()) {
+            // Unchanged version directory; no need to even list it
+            seen.add(path);
+            return;
+        }
+
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        if (Arrays.stream(children).anyMatch(f -> f.isFile() && f.getName().endsWith(".zip"))) {
+            index.getDirectories().put(path, versionDirectory(dir, existing));
+            seen.add(path);
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                scan(child, index, seen);
+            }
+        }
+    }
+
+    private VersionDirectory versionDirectory(File dir, VersionDirectory existing) {
+        Map<String, Archive> previous = (existing == null ? Collections.emptyMap()
+                : existing.getArchives().stream()
+                        .collect(Collectors.toMap(Archive::getPath, a -> a)));
+
+        VersionDirectory directory = new VersionDirectory();
+        directory.setLastModified(dir.lastModified());
+        File[] zips = dir.listFiles((d, n) -> n.endsWith(".zip"));
+        for (File zip : (zips == null ? new File[0] : zips)) {
+            Archive archive = previous.get(zip.getAbsolutePath());
+            if (archive == null || archive.getSize() != zip.length()
+                    || archive.getLastModified() != zip.lastModified()) {
+                archive = archive(zip);
+            }
+            directory.getArchives().add(archive);
+        }
+        return directory;
+    }
+
+    private Archive archive(File zip) {
+        // Layout is group/segments/artifact/version/artifact-version.zip
+        File versionDir = zip.getParentFile();
+        File artifactDir = versionDir.getParentFile();
+        String group = relativize(artifactDir.getParentFile()).replace('/', '.');
+
+        Archive archive = new Archive();
+        archive.setGroup(group);
+        archive.setArtifact(artifactDir.getName());
+        archive.setVersion(versionDir.getName());
+        archive.setPath(zip.getAbsolutePath());
+        archive.setSize(zip.length());
+        archive.setLastModified(zip.lastModified());
+
+        try (ZipFile file = new ZipFile(zip)) {
+            archive.setRug(file.stream().anyMatch(e -> e.getName().startsWith(".atomist/")));
+            if (archive.isRug()) {
+                File metadata = new File(versionDir, zip.getName().replace(".zip", "-metadata.json"));
+                ZipEntry entry = file.getEntry(".atomist/metadata.json");
+                if (metadata.exists()) {
+                    archive.setOperations(operations(mapper.readTree(metadata)));
+                }
+                else if (entry != null) {
+                    try (InputStream is = file.getInputStream(entry)) {
+                        archive.setOperations(operations(mapper.readTree(is)));
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            archive.setRug(false);
+        }
+        return archive;
+    }
+
+    private List<Operation> operations(JsonNode metadata) {
+        List<String> archiveTags = names(metadata.get("tags"));
+        List<Operation> operations = new ArrayList<>();
+        // Every list of named entries is a kind of operation, eg. editors or command_handlers
+        metadata.fields().forEachRemaining(f -> {
+            if (f.getValue().isArray() && !f.getKey().equals("tags")) {
+                f.getValue().forEach(o -> {
+                    if (o.has("name")) {
+                        Operation operation = new Operation();
+                        operation.setName(o.get("name").asText());
+                        operation.setType(f.getKey().replaceAll("s$", ""));
+                        operation.setDescription(
+                                o.has("description") ? o.get("description").asText() : null);
+                        operation.setParameters(names(o.get("parameters")));
+                        operation.getTags().addAll(archiveTags);
+                        operation.getTags().addAll(names(o.get("tags")));
+                        operations.add(operation);
+                    }
+                });
+            }
+        });
+        return operations;
+    }
+
+    private List<String> names(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        if (node != null && node.isArray()) {
+            node.forEach(n -> {
+                if (n.isTextual()) {
+                    names.add(n.asText());
+                }
+                else if (n.has("name")) {
+                    names.add(n.get("name").asText());
+                }
+            });
+        }
+        return names;
+    }
+
+    private boolean isBelow(String path, String prefix) {
+        return prefix.isEmpty() || path.equals(prefix) || path.startsWith(prefix + "/");
+    }
+
+    private String relativize(File file) {
+        return repository.toURI().relativize(file.getAbsoluteFile().toURI()).getPath()
+                .replaceAll("/$", "");
+    }
+
+    private Index read() {
+        if (indexFile.exists()) {
+            try {
+                Index index = mapper.readValue(indexFile, Index.class);
+                if (index.getFormat() == FORMAT) {
+                    return index;
+                }
+            }
+            catch (IOException e) {
+                // Corrupt index; rebuild from scratch
+            }
+        }
+        Index index = new Index();
+        index.setFormat(FORMAT);
+        return index;
+    }
+
+    private void write(Index index) {
+        try {
+            indexFile.getParentFile().mkdirs();
+            File tempFile = new File(indexFile.getPath() + ".tmp");
+            mapper.writeValue(tempFile, index);
+            if (!tempFile.renameTo(indexFile)) {
+                org.apache.commons.io.FileUtils.copyFile(tempFile, indexFile);
+                tempFile.delete();
+            }
+        }
+        catch (IOException e) {
+            // The index only speeds up the next scan
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Index {
+
+        private Map<String, VersionDirectory> directories = new HashMap<>();
+        private int format;
+
+        public Map<String, VersionDirectory> getDirectories() {
+            return directories;
+        }
+
+        public int getFormat() {
+            return format;
+        }
+
+        public void setDirectories(Map<String, VersionDirectory> directories) {
+            this.directories = directories;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class VersionDirectory {
+
+        private long lastModified;
+        private List<Archive> archives = new ArrayList<>();
+
+        public List<Archive> getArchives() {
+            return archives;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public void setArchives(List<Archive> archives) {
+            this.archives = archives;
+        }
+
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Archive {
+
+        private String artifact;
+        private String group;
+        private long lastModified;
+        private List<Operation> operations = new ArrayList<>();
+        private String path;
+        private boolean rug;
+        private long size;
+        private String version;
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public List<Operation> getOperations() {
+            return operations;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public boolean isRug() {
+            return rug;
+        }
+
+        public void setArtifact(String artifact) {
+            this.artifact = artifact;
+        }
+
+        public void setGroup(String group) {
+            this.group = group;
+        }
+
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        public void setOperations(List<Operation> operations) {
+            this.operations = operations;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public void setRug(boolean rug) {
+            this.rug = rug;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Operation {
+
+        private String description;
+        private String name;
+        private List<String> parameters = new ArrayList<>();
+        private List<String> tags = new ArrayList<>();
+        private String type;
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setParameters(List<String> parameters) {
+            this.parameters = parameters;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.atomist.rug.cli.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import com.atomist.rug.cli.Constants;
+import com.atomist.rug.cli.command.CommandException;
+import com.atomist.rug.cli.settings.SettingsReader;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
+import com.atomist.rug.resolver.ArtifactDescriptor.Scope;
+import com.atomist.rug.resolver.DefaultArtifactDescriptor;
+import com.atomist.rug.resolver.LocalArtifactDescriptor;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Exact versions and checksums of the resolved dependency graphs of archives used in a project,
+// stored in .atomist/rug.lock. As long as all locked files are in the local repository the
+// classpath can be built from the lockfile without looking at any remote repository.
+public class LockFile {
+
+    public static final String NAME = "rug.lock";
+
+    private static final int FORMAT = 1;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+    private final File file;
+    private final File repository;
+
+    public LockFile(File projectRoot) {
+        this(projectRoot, new File(new SettingsReader().read().getLocalRepository().path()));
+    }
+
+    public LockFile(File projectRoot, File repository) {
+        this.file = new File(projectRoot, Constants.ATOMIST_ROOT + File.separator + NAME);
+        this.repository = repository;
+    }
+
+    // Lockfile of the project in the working directory, if there is one
+    public static Optional<LockFile> find() {
+        return FileUtils.getWorkingDirectory().map(LockFile::new).filter(LockFile::exists);
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    public File file() {
+        return file;
+    }
+
+    // Locked dependencies of the artifact if it was locked with the same declared dependencies
+    // and every locked file is available and unchanged
+    public Optional<List<ArtifactDescriptor>> get(ArtifactDescriptor artifact) {
+        Optional<Archive> archive = read().getArchives().stream()
+                .filter(a -> a.getArchive().equals(key(artifact))
+                        && a.getDeclared().equals(declared(artifact)))
+                .findFirst();
+        if (!archive.isPresent()) {
+            return Optional.empty();
+        }
+
+        Map<String, Long> verified = readVerified();
+        boolean changed = false;
+        List<ArtifactDescriptor> dependencies = new ArrayList<>();
+        for (Dependency dependency : archive.get().getDependencies()) {
+            File dependencyFile = resolve(dependency.getPath());
+            if (!dependencyFile.exists()) {
+                // Needs a download; regular resolution will take care of it
+                return Optional.empty();
+            }
+            if (!verified.getOrDefault(dependency.getPath(), -1L)
+                    .equals(dependencyFile.lastModified())) {
+                verify(dependency, dependencyFile);
+                verified.put(dependency.getPath(), dependencyFile.lastModified());
+                changed = true;
+            }
+            dependencies.add(new DefaultArtifactDescriptor(dependency.getGroup(),
+                    dependency.getArtifact(), dependency.getVersion(),
+                    Extension.valueOf(dependency.getExtension()), scope(dependency.getScope()),
+                    dependencyFile.toURI()));
+        }
+        if (changed) {
+            writeVerified(verified);
+        }
+        return Optional.of(dependencies);
+    }
+
+    public void put(ArtifactDescriptor artifact, List<ArtifactDescriptor> dependencies) {
+        Archive archive = new Archive();
+        archive.setArchive(key(artifact));
+        archive.setDeclared(declared(artifact));
+        try {
+            for (ArtifactDescriptor ad : dependencies) {
+                File dependencyFile = new File(ad.uri());
+                Dependency dependency = new Dependency();
+                dependency.setGroup(ad.group());
+                dependency.setArtifact(ad.artifact());
+                dependency.setVersion(ad.version());
+                dependency.setExtension(ad.extension().toString());
+                dependency.setPath(relativize(dependencyFile));
+                dependency.setScope(ad.scope() != null ? ad.scope().toString() : null);
+                dependency.setSize(dependencyFile.length());
+                dependency.setSha1(ChecksumUtils.sha1(dependencyFile));
+                archive.getDependencies().add(dependency);
+            }
+
+            Lock lock = read();
+            lock.getArchives().removeIf(a -> a.getArchive().equals(archive.getArchive()));
+            lock.getArchives().add(archive);
+            lock.getArchives().sort((a1, a2) -> a1.getArchive().compareTo(a2.getArchive()));
+            mapper.writeValue(file, lock);
+        }
+        catch (IOException e) {
+            throw new CommandException(
+                    String.format("Failed to write %s: %s", NAME, e.getMessage()), "lock");
+        }
+    }
+
+    private void verify(Dependency dependency, File dependencyFile) {
+        try {
+            if (dependencyFile.length() == dependency.getSize()
+                    && ChecksumUtils.sha1(dependencyFile).equals(dependency.getSha1())) {
+                return;
+            }
+        }
+        catch (IOException e) {
+            // Report below as mismatch
+        }
+        throw new CommandException(String.format(
+                "%s:%s:%s in the local repository doesn't match the checksum in %s.\nPlease run rug lock -u to update the lockfile.",
+                dependency.getGroup(), dependency.getArtifact(), dependency.getVersion(), NAME));
+    }
+
+    private Lock read() {
+        if (file.exists()) {
+            try {
+                Lock lock = mapper.readValue(file, Lock.class);
+                if (lock.getFormat() == FORMAT) {
+                    return lock;
+                }
+            }
+            catch (IOException e) {
+                throw new CommandException(
+                        String.format("Failed to read %s: %s", NAME, e.getMessage()));
+            }
+        }
+        Lock lock = new Lock();
+        lock.setFormat(FORMAT);
+        return lock;
+    }
+
+    // Locked files verified on this machine keyed by path with their modification time; only
+    // files that changed since get checksummed again
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> readVerified() {
+        File verifiedFile = verifiedFile();
+        if (verifiedFile.exists()) {
+            try {
+                Map<String, Number> verified = mapper.readValue(verifiedFile, Map.class);
+                return verified.entrySet().stream().collect(
+                        Collectors.toMap(Map.Entry::getKey, e -> e.getValue().longValue()));
+            }
+            catch (IOException | ClassCastException e) {
+                // Checksum everything again
+            }
+        }
+        return new HashMap<>();
+    }
+
+    private void writeVerified(Map<String, Long> verified) {
+        File verifiedFile = verifiedFile();
+        try {
+            verifiedFile.getParentFile().mkdirs();
+            mapper.writeValue(verifiedFile, verified);
+        }
+        catch (IOException e) {
+            // Files get verified again next time
+        }
+    }
+
+    private File verifiedFile() {
+        return new File(FileUtils.getCacheDirectory("lock"),
+                ChecksumUtils.sha1(file.getAbsolutePath() + "\n" + repository.getAbsolutePath())
+                        + ".json");
+    }
+
+    private Scope scope(String scope) {
+        // Lockfiles written before the scope was recorded
+        return (scope != null ? Scope.valueOf(scope) : Scope.COMPILE);
+    }
+
+    // Paths into the local repository are stored relative to it so the lockfile can be shared
+    private String relativize(File dependencyFile) {
+        String root = repository.getAbsolutePath() + File.separator;
+        String path = dependencyFile.getAbsolutePath();
+        if (path.startsWith(root)) {
+            return path.substring(root.length()).replace(File.separatorChar, '/');
+        }
+        return path;
+    }
+
+    private File resolve(String path) {
+        File dependencyFile = new File(path);
+        return (dependencyFile.isAbsolute() ? dependencyFile : new File(repository, path));
+    }
+
+    private static String key(ArtifactDescriptor artifact) {
+        if (artifact instanceof LocalArtifactDescriptor) {
+            return String.format("%s:%s:%s local", artifact.group(), artifact.artifact(),
+                    artifact.version());
+        }
+        return String.format("%s:%s:%s:%s", artifact.group(), artifact.artifact(),
+                artifact.version(), artifact.extension().toString().toLowerCase());
+    }
+
+    private static List<String> declared(ArtifactDescriptor artifact) {
+        return artifact.dependencies().stream()
+                .map(d -> String.format("%s:%s:%s", d.group(), d.artifact(), d.version()))
+                .sorted().collect(Collectors.toList());
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Lock {
+
+        private List<Archive> archives = new ArrayList<>();
+        private int format;
+
+        public List<Archive> getArchives() {
+            return archives;
+        }
+
+        public int getFormat() {
+            return format;
+        }
+
+        public void setArchives(List<Archive> archives) {
+            this.archives = archives;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Archive {
+
+        private String archive;
+        private List<String> declared = new ArrayList<>();
+        private List<Dependency> dependencies = new ArrayList<>();
+
+        public String getArchive() {
+            return archive;
+        }
+
+        public List<String> getDeclared() {
+            return declared;
+        }
+
+        public List<Dependency> getDependencies() {
+            return dependencies;
+        }
+
+        public void setArchive(String archive) {
+            this.archive = archive;
+        }
+
+        public void setDeclared(List<String> declared) {
+            this.declared = declared;
+        }
+
+        public void setDependencies(List<Dependency> dependencies) {
+            this.dependencies = dependencies;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Dependency {
+
+        private String artifact;
+        private String extension;
+        private String group;
+        private String path;
+        private String scope;
+        private String sha1;
+        private long size;
+        private String version;
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setArtifact(String artifact) {
+            this.artifact = artifact;
+        }
+
+        public void setExtension(String extension) {
+            this.extension = extension;
+        }
+
+        public void setGroup(String group) {
+            this.group = group;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public void setScope(String scope) {
+            this.scope = scope;
+        }
+
+        public void setSha1(String sha1) {
+            this.sha1 = sha1;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+    }
+}
@@ -16,6 +16,8 @@ import com.atomist.rug.resolver.maven.MavenProperties.Repo;
 
 abstract class MavenPropertiesFactory {
 
+    private static RepositorySystem repositorySystem;
+
     public static MavenProperties create(boolean offline, boolean cacheMetadata) {
         MavenProperties properties = new MavenProperties();
         properties.setOffline(offline);
@@ -46,7 +48,12 @@ abstract class MavenPropertiesFactory {
         return properties;
     }
 
-    public static RepositorySystem repositorySystem() {
-        return new MavenConfiguration().repositorySystem();
+    // Wiring up the repository system and its connectors is expensive; all resolvers of the
+    // process share one instance
+    public static synchronized RepositorySystem repositorySystem() {
+        if (repositorySystem == null) {
+            repositorySystem = new MavenConfiguration().repositorySystem();
+        }
+        return repositorySystem;
     }
 }
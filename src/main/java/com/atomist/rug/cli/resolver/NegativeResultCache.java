@@ -0,0 +1,154 @@
+package com.atomist.rug.cli.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.atomist.rug.cli.settings.SettingsReader;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Remembers coordinates that a remote repository doesn't have, keyed by repository URL, so
+// subsequent runs don't ask again until the entry expires. -u ignores all entries.
+public class NegativeResultCache {
+
+    private static final int FORMAT = 1;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File file;
+    private final long ttl;
+    private Entries entries;
+
+    public NegativeResultCache() {
+        this(new File(FileUtils.getCacheDirectory("missing"), "missing.json"),
+                new SettingsReader().read().getResolver().negativeCacheTtl() * 60 * 1000L);
+    }
+
+    public NegativeResultCache(File file, long ttl) {
+        this.file = file;
+        this.ttl = ttl;
+    }
+
+    public synchronized boolean isMissing(String url, String coordinate) {
+        if (ttl <= 0 || CommandLineOptions.hasOption("u")) {
+            return false;
+        }
+        Long created = entries().getMissing().get(key(url, coordinate));
+        return created != null && System.currentTimeMillis() - created < ttl;
+    }
+
+    // True if none of the repositories had the coordinate recently
+    public boolean isMissing(Collection<String> urls, String coordinate) {
+        return !urls.isEmpty() && urls.stream().allMatch(u -> isMissing(u, coordinate));
+    }
+
+    public synchronized void missing(Collection<String> urls, String coordinate) {
+        if (ttl <= 0 || urls.isEmpty()) {
+            return;
+        }
+        // Pick up what other processes recorded in the meantime
+        entries = read();
+        long now = System.currentTimeMillis();
+        urls.forEach(u -> entries.getMissing().put(key(u, coordinate), now));
+        write(entries);
+    }
+
+    public synchronized void found(Collection<String> urls, String coordinate) {
+        if (!urls.stream().anyMatch(u -> entries().getMissing().containsKey(key(u, coordinate)))) {
+            return;
+        }
+        entries = read();
+        boolean changed = false;
+        for (String url : urls) {
+            changed |= entries.getMissing().remove(key(url, coordinate)) != null;
+        }
+        if (changed) {
+            write(entries);
+        }
+    }
+
+    private String key(String url, String coordinate) {
+        String normalized = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        return normalized + " " + coordinate;
+    }
+
+    // The file is read once per instance; it only changes when archives go missing or turn up
+    private Entries entries() {
+        if (entries == null) {
+            entries = read();
+        }
+        return entries;
+    }
+
+    private Entries read() {
+        if (file.exists()) {
+            try {
+                Entries entries = mapper.readValue(file, Entries.class);
+                if (entries.getFormat() == FORMAT) {
+                    return entries;
+                }
+            }
+            catch (IOException e) {
+                // Start over; worst case repositories get asked again
+            }
+        }
+        Entries entries = new Entries();
+        entries.setFormat(FORMAT);
+        return entries;
+    }
+
+    private void write(Entries entries) {
+        // Drop what expired anyway so the file doesn't grow forever
+        long now = System.currentTimeMillis();
+        entries.getMissing().values().removeIf(c -> now - c >= ttl);
+        File tempFile = null;
+        try {
+            file.getParentFile().mkdirs();
+            // Concurrent readers in other processes never see a partially written file
+            tempFile = File.createTempFile("missing", ".tmp", file.getParentFile());
+            mapper.writeValue(tempFile, entries);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            // Only costs another lookup next time
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entries {
+
+        private int format;
+        private Map<String, Long> missing = new HashMap<>();
+
+        public int getFormat() {
+            return format;
+        }
+
+        public Map<String, Long> getMissing() {
+            return missing;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+
+        public void setMissing(Map<String, Long> missing) {
+            this.missing = missing;
+        }
+    }
+}
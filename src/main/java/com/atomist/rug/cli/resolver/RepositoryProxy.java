@@ -0,0 +1,642 @@
+package com.atomist.rug.cli.resolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.util.repository.ConservativeProxySelector;
+import org.eclipse.aether.util.repository.JreProxySelector;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.Version;
+import org.eclipse.aether.version.VersionScheme;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.resolver.maven.MavenProperties;
+import com.atomist.rug.resolver.maven.MavenProperties.Repo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Caching HTTP proxy in Maven layout over the configured remote repositories. Artifacts are
+// resolved into a local store through the shared repository system with strict checksum
+// verification and served from there; metadata gets merged from all repositories and refreshed
+// after a short while. Concurrent requests for the same missing file share one download.
+public class RepositoryProxy implements Closeable {
+
+    // Released artifacts never change; metadata and snapshots do
+    private static final long REFRESH_INTERVAL = 1000 * 60 * 5;
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 30000;
+
+    // Longest a request waits for metadata from the repositories or on a download started by
+    // another request
+    private static final long METADATA_TIMEOUT = 1000 * 60;
+    private static final long FETCH_TIMEOUT = 1000 * 60 * 5;
+
+    private static final Pattern TIMESTAMP = Pattern.compile("^(\\d{8}\\.\\d{6}-\\d+)");
+
+    private final File store;
+    private final Map<String, Repo> repos;
+    private final RepositorySystem system;
+    private final DefaultRepositorySystemSession session;
+    private final List<RemoteRepository> remoteRepositories;
+    private final NegativeResultCache negativeCache;
+    private final Consumer<String> reporter;
+
+    private final Map<String, CompletableFuture<Optional<File>>> inflight = new ConcurrentHashMap<>();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger coalesced = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    // Requests wait on metadata downloads; these must never queue behind the requests
+    private ExecutorService downloads;
+
+    public RepositoryProxy(File store, Consumer<String> reporter) {
+        this(store, MavenPropertiesFactory.create(false, true).getRepos(), reporter);
+    }
+
+    RepositoryProxy(File store, Map<String, Repo> repos, Consumer<String> reporter) {
+        this.store = store;
+        this.reporter = reporter;
+
+        this.repos = new LinkedHashMap<>();
+        repos.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> this.repos.put(e.getKey(), e.getValue()));
+        this.remoteRepositories = this.repos.entrySet().stream()
+                .map(e -> toRemoteRepository(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+
+        this.system = MavenPropertiesFactory.repositorySystem();
+        this.session = MavenRepositorySystemUtils.newSession();
+        session.setLocalRepositoryManager(
+                system.newLocalRepositoryManager(session, new LocalRepository(store)));
+        session.setProxySelector(new ConservativeProxySelector(new JreProxySelector()));
+        // Whatever ends up in the store gets served to all agents; don't accept broken files
+        session.setChecksumPolicy(RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+        session.setUpdatePolicy(RepositoryPolicy.UPDATE_POLICY_DAILY);
+
+        this.negativeCache = new NegativeResultCache();
+    }
+
+    // Without a host only connections from this machine are accepted
+    public InetSocketAddress start(String host, int port, int threads) {
+        try {
+            server = HttpServer.create((host != null ? new InetSocketAddress(host, port)
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), port)), 0);
+        }
+        catch (IOException e) {
+            throw new RunnerException("Failed to start repository proxy on port " + port, e);
+        }
+        executor = Executors.newFixedThreadPool(threads, threadFactory("rug-repo-"));
+        downloads = Executors.newFixedThreadPool(threads, threadFactory("rug-repo-download-"));
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return server.getAddress();
+    }
+
+    public Map<String, String> repositories() {
+        Map<String, String> urls = new LinkedHashMap<>();
+        repos.forEach((id, repo) -> urls.put(id, repo.getUrl()));
+        return urls;
+    }
+
+    // Repositories accessed with credentials from cli.yml; the proxy serves their content to
+    // anyone who can connect
+    public List<String> authenticatedRepositories() {
+        return repos.entrySet().stream()
+                .filter(e -> e.getValue().getAuth() != null
+                        && e.getValue().getAuth().getUsername() != null)
+                .map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    public int hits() {
+        return hits.get();
+    }
+
+    public int misses() {
+        return misses.get();
+    }
+
+    public int coalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (downloads != null) {
+            downloads.shutdownNow();
+        }
+    }
+
+    private ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName(prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.currentTimeMillis();
+        String path = exchange.getRequestURI().getPath();
+        int status = HttpURLConnection.HTTP_INTERNAL_ERROR;
+        try {
+            String method = exchange.getRequestMethod();
+            path = normalize(path);
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                status = send(exchange, HttpURLConnection.HTTP_BAD_METHOD, null);
+                return;
+            }
+            if (path == null) {
+                status = send(exchange, HttpURLConnection.HTTP_NOT_FOUND, null);
+                return;
+            }
+
+            // Checksums are computed from the verified file in the store
+            String algorithm = null;
+            String target = path;
+            if (path.endsWith(".sha1")) {
+                algorithm = "SHA-1";
+                target = path.substring(0, path.length() - 5);
+            }
+            else if (path.endsWith(".md5")) {
+                algorithm = "MD5";
+                target = path.substring(0, path.length() - 4);
+            }
+
+            Optional<File> file = fetch(target);
+            if (!file.isPresent()) {
+                status = send(exchange, HttpURLConnection.HTTP_NOT_FOUND, null);
+            }
+            else if (algorithm != null) {
+                byte[] checksum = digest(file.get(), algorithm).getBytes(StandardCharsets.UTF_8);
+                status = send(exchange, HttpURLConnection.HTTP_OK, checksum);
+            }
+            else {
+                status = sendFile(exchange, file.get());
+            }
+        }
+        catch (Exception e) {
+            status = send(exchange, HttpURLConnection.HTTP_BAD_GATEWAY, null);
+        }
+        finally {
+            exchange.close();
+            reporter.accept(String.format("  %s %s %s (%sms)", exchange.getRequestMethod(),
+                    path, status, System.currentTimeMillis() - start));
+        }
+    }
+
+    // Downloads for the same path are shared between all requests arriving while in progress
+    private Optional<File> fetch(String path) throws Exception {
+        CompletableFuture<Optional<File>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<File>> existing = inflight.putIfAbsent(path, future);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.get(FETCH_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        }
+        try {
+            Optional<File> file = (isMetadata(path) ? fetchMetadata(path) : fetchArtifact(path));
+            future.complete(file);
+            return file;
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inflight.remove(path);
+        }
+    }
+
+    private Optional<File> fetchArtifact(String path) throws ArtifactResolutionException {
+        File file = new File(store, path);
+        if (file.isFile() && (!path.contains("-SNAPSHOT/") || isFresh(file))) {
+            hits.incrementAndGet();
+            return Optional.of(file);
+        }
+        Optional<DefaultArtifact> artifact = toArtifact(path);
+        if (!artifact.isPresent() || negativeCache.isMissing(urls(), path)) {
+            return Optional.empty();
+        }
+
+        misses.incrementAndGet();
+        try {
+            ArtifactResult result = system.resolveArtifact(session,
+                    new ArtifactRequest(artifact.get(), remoteRepositories, null));
+            return Optional.of(result.getArtifact().getFile());
+        }
+        catch (ArtifactResolutionException e) {
+            if (e.getResult() != null && e.getResult().isMissing()) {
+                negativeCache.missing(urls(), path);
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private Optional<File> fetchMetadata(String path) throws IOException {
+        File file = new File(store, path);
+        if (file.isFile() && isFresh(file)) {
+            hits.incrementAndGet();
+            return Optional.of(file);
+        }
+
+        misses.incrementAndGet();
+        // Ask all repositories at once; the client expects the versions from all of them
+        List<Future<byte[]>> futures = new ArrayList<>();
+        repos.values().forEach(r -> futures.add(downloads.submit(() -> download(r, path))));
+        List<Document> documents = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + METADATA_TIMEOUT;
+        for (Future<byte[]> future : futures) {
+            try {
+                byte[] content = future.get(Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+                if (content != null) {
+                    documents.add(parse(content));
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            catch (TimeoutException e) {
+                // Repository too slow; use what the others have
+                future.cancel(true);
+            }
+            catch (Exception e) {
+                // Repository unavailable or sent garbage; use what the others have
+            }
+        }
+
+        if (documents.isEmpty()) {
+            // Better stale than nothing
+            return (file.isFile() ? Optional.of(file) : Optional.empty());
+        }
+        write(merge(documents), file);
+        return Optional.of(file);
+    }
+
+    private byte[] download(Repo repo, String path) throws IOException {
+        String url = (repo.getUrl().endsWith("/") ? repo.getUrl() : repo.getUrl() + "/") + path;
+        byte[] content = get(url, repo);
+        if (content == null) {
+            return null;
+        }
+        // Only accept metadata that matches its published checksum
+        byte[] checksum = get(url + ".sha1", repo);
+        if (checksum != null && !new String(checksum, StandardCharsets.UTF_8).trim()
+                .split("\\s+")[0].equalsIgnoreCase(ChecksumUtils.sha1(content))) {
+            return null;
+        }
+        return content;
+    }
+
+    private byte[] get(String url, Repo repo) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (repo.getAuth() != null && repo.getAuth().getUsername() != null) {
+            String credentials = repo.getAuth().getUsername() + ":"
+                    + (repo.getAuth().getPassword() != null ? repo.getAuth().getPassword() : "");
+            connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder()
+                    .encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            return null;
+        }
+        try (InputStream is = connection.getInputStream()) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    // Union of all versions; latest, release and lastUpdated taken from the newest
+    private Document merge(List<Document> documents) {
+        Document merged = documents.get(0);
+        if (documents.size() == 1) {
+            return merged;
+        }
+        VersionScheme scheme = new GenericVersionScheme();
+        TreeSet<Version> versions = new TreeSet<>();
+        String lastUpdated = "";
+        Document newest = merged;
+        for (Document document : documents) {
+            NodeList nodes = document.getElementsByTagName("version");
+            for (int i = 0; i < nodes.getLength(); i++) {
+                if ("versions".equals(nodes.item(i).getParentNode().getNodeName())) {
+                    try {
+                        versions.add(scheme.parseVersion(nodes.item(i).getTextContent().trim()));
+                    }
+                    catch (InvalidVersionSpecificationException e) {
+                        // Skip what isn't a version
+                    }
+                }
+            }
+            String updated = text(document, "lastUpdated");
+            if (updated.compareTo(lastUpdated) > 0) {
+                lastUpdated = updated;
+                newest = document;
+            }
+        }
+
+        return merge(newest, versions);
+    }
+
+    private Document merge(Document newest, TreeSet<Version> versions) {
+        NodeList versionsNodes = newest.getElementsByTagName("versions");
+        if (versionsNodes.getLength() == 0 || versions.isEmpty()) {
+            // Eg. metadata of a snapshot version; no merging possible
+            return newest;
+        }
+        Node versionsNode = versionsNodes.item(0);
+        while (versionsNode.hasChildNodes()) {
+            versionsNode.removeChild(versionsNode.getFirstChild());
+        }
+        for (Version version : versions) {
+            Element element = newest.createElement("version");
+            element.setTextContent(version.toString());
+            versionsNode.appendChild(element);
+        }
+        setText(newest, "latest", versions.last().toString());
+        versions.descendingSet().stream().map(Version::toString)
+                .filter(v -> !v.endsWith("-SNAPSHOT")).findFirst()
+                .ifPresent(v -> setText(newest, "release", v));
+        return newest;
+    }
+
+    private String text(Document document, String tag) {
+        NodeList nodes = document.getElementsByTagName(tag);
+        return (nodes.getLength() > 0 ? nodes.item(0).getTextContent().trim() : "");
+    }
+
+    private void setText(Document document, String tag, String value) {
+        NodeList nodes = document.getElementsByTagName(tag);
+        if (nodes.getLength() > 0) {
+            nodes.item(0).setTextContent(value);
+        }
+    }
+
+    private Document parse(byte[] content) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(content));
+    }
+
+    private void write(Document document, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File tempFile = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.transform(new DOMSource(document), new StreamResult(tempFile));
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (Exception e) {
+            tempFile.delete();
+            throw new IOException(e);
+        }
+    }
+
+    private int sendFile(HttpExchange exchange, File file) throws IOException {
+        String etag = "\"" + digest(file, "SHA-1") + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            return HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Content-Type", contentType(file));
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(file.length()));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+        }
+        else {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, file.length());
+            try (OutputStream os = exchange.getResponseBody()) {
+                Files.copy(file.toPath(), os);
+            }
+        }
+        return HttpURLConnection.HTTP_OK;
+    }
+
+    private int send(HttpExchange exchange, int status, byte[] content) throws IOException {
+        if (content == null || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+        }
+        else {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(status, content.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content);
+            }
+        }
+        return status;
+    }
+
+    // Digests are cached as long as the file doesn't change
+    private String digest(File file, String algorithm) throws IOException {
+        String key = algorithm + " " + file.getPath() + " " + file.length() + " "
+                + file.lastModified();
+        String digest = etags.get(key);
+        if (digest == null) {
+            digest = "SHA-1".equals(algorithm) ? ChecksumUtils.sha1(file) : md5(file);
+            etags.put(key, digest);
+        }
+        return digest;
+    }
+
+    private String md5(File file) throws IOException {
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RunnerException(e);
+        }
+    }
+
+    private String contentType(File file) {
+        String name = file.getName();
+        if (name.endsWith(".pom") || name.endsWith(".xml")) {
+            return "text/xml";
+        }
+        else if (name.endsWith(".json")) {
+            return "application/json";
+        }
+        return "application/octet-stream";
+    }
+
+    private boolean isFresh(File file) {
+        return System.currentTimeMillis() - file.lastModified() < REFRESH_INTERVAL;
+    }
+
+    private boolean isMetadata(String path) {
+        return path.substring(path.lastIndexOf('/') + 1).startsWith("maven-metadata");
+    }
+
+    private List<String> urls() {
+        return repos.values().stream().map(Repo::getUrl).collect(Collectors.toList());
+    }
+
+    // Paths relative to the store; nothing may escape it
+    private String normalize(String path) {
+        if (path == null) {
+            return null;
+        }
+        String normalized = path.replaceAll("/+", "/").replaceAll("^/", "");
+        if (normalized.isEmpty() || normalized.endsWith("/")
+                || Arrays.stream(normalized.split("/"))
+                        .anyMatch(s -> ".".equals(s) || "..".equals(s))) {
+            return null;
+        }
+        return normalized;
+    }
+
+    // group/path/artifact/version/artifact-version[-classifier].extension
+    private Optional<DefaultArtifact> toArtifact(String path) {
+        String[] segments = path.split("/");
+        if (segments.length < 4) {
+            return Optional.empty();
+        }
+        String fileName = segments[segments.length - 1];
+        String baseVersion = segments[segments.length - 2];
+        String artifactId = segments[segments.length - 3];
+        String groupId = String.join(".",
+                Arrays.copyOfRange(segments, 0, segments.length - 3));
+
+        String prefix = artifactId + "-";
+        if (!fileName.startsWith(prefix)) {
+            return Optional.empty();
+        }
+        String rest = fileName.substring(prefix.length());
+        String version = baseVersion;
+        if (!rest.startsWith(baseVersion) && baseVersion.endsWith("-SNAPSHOT")) {
+            // Timestamped snapshot like 1.0-20170102.030405-6
+            String base = baseVersion.substring(0, baseVersion.length() - "SNAPSHOT".length());
+            if (!rest.startsWith(base)) {
+                return Optional.empty();
+            }
+            Matcher matcher = TIMESTAMP.matcher(rest.substring(base.length()));
+            if (!matcher.find()) {
+                return Optional.empty();
+            }
+            version = base + matcher.group(1);
+        }
+        else if (!rest.startsWith(baseVersion)) {
+            return Optional.empty();
+        }
+        rest = rest.substring(version.length());
+
+        String classifier = "";
+        if (rest.startsWith("-")) {
+            int dot = rest.indexOf('.');
+            if (dot < 0) {
+                return Optional.empty();
+            }
+            classifier = rest.substring(1, dot);
+            rest = rest.substring(dot);
+        }
+        if (!rest.startsWith(".") || rest.length() < 2) {
+            return Optional.empty();
+        }
+        return Optional.of(new DefaultArtifact(groupId, artifactId, classifier, rest.substring(1),
+                version));
+    }
+
+    private RemoteRepository toRemoteRepository(String id, Repo repo) {
+        RemoteRepository.Builder builder = new RemoteRepository.Builder(id, "default",
+                repo.getUrl());
+        if (repo.getAuth() != null) {
+            builder.setAuthentication(new AuthenticationBuilder()
+                    .addUsername(repo.getAuth().getUsername())
+                    .addPassword(repo.getAuth().getPassword()).build());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,324 @@
+package com.atomist.rug.cli.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.IOUtils;
+
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.cli.utils.CommandLineOptions;
+import com.atomist.rug.cli.utils.FileUtils;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.LocalArtifactDescriptor;
+import com.atomist.rug.resolver.maven.MavenProperties.Repo;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Decides in which order remote repositories get asked for an archive. Repositories are queried
+// one after another during resolution, so the one that actually has the archive should come
+// first. Which repository served a coordinate is remembered; for unknown coordinates all
+// repositories are raced for the metadata and the first one with a verified response wins.
+// Repositories known not to have the coordinate go last.
+public class RepositoryRouter {
+
+    private static final int FORMAT = 1;
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 10000;
+    private static final long RACE_TIMEOUT = 10000;
+
+    private static final String REMOTE_REPOSITORIES = "_remote.repositories";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File routesFile;
+    private final NegativeResultCache negativeCache;
+
+    public RepositoryRouter(NegativeResultCache negativeCache) {
+        this(new File(FileUtils.getCacheDirectory("routes"), "routes.json"), negativeCache);
+    }
+
+    public RepositoryRouter(File routesFile, NegativeResultCache negativeCache) {
+        this.routesFile = routesFile;
+        this.negativeCache = negativeCache;
+    }
+
+    // Repositories ordered by: the one known or found to serve the artifact, the ones that
+    // served most coordinates before and then by name for a stable order
+    public Map<String, Repo> order(Map<String, Repo> repos, ArtifactDescriptor artifact,
+            boolean probe, ExecutorService executor) {
+        if (repos.size() < 2) {
+            return repos;
+        }
+
+        Routes routes = read();
+        Optional<String> coordinate = coordinate(artifact);
+        // -u asks for a fresh race in case the archive moved to another repository
+        String preferred = (CommandLineOptions.hasOption("u") ? null
+                : coordinate.map(routes.getRoutes()::get).filter(repos::containsKey)
+                        .orElse(null));
+        if (preferred == null && probe && coordinate.isPresent()) {
+            preferred = race(repos, coordinate.get(), executor).orElse(null);
+            if (preferred != null) {
+                routes.getRoutes().put(coordinate.get(), preferred);
+                write(routes);
+            }
+        }
+
+        String first = preferred;
+        Map<String, Long> served = routes.getRoutes().values().stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        List<String> ids = new ArrayList<>(repos.keySet());
+        ids.sort(Comparator.comparing((String id) -> !id.equals(first))
+                .thenComparing(id -> coordinate.isPresent()
+                        && negativeCache.isMissing(repos.get(id).getUrl(), coordinate.get()))
+                .thenComparing(id -> -served.getOrDefault(id, 0L))
+                .thenComparing(Function.identity()));
+
+        Map<String, Repo> ordered = new LinkedHashMap<>();
+        ids.forEach(id -> ordered.put(id, repos.get(id)));
+        return ordered;
+    }
+
+    // Remembers the repositories that served the resolved dependencies, as recorded by the
+    // resolver next to the downloaded files
+    public void record(List<ArtifactDescriptor> dependencies) {
+        Routes routes = read();
+        boolean changed = false;
+        for (ArtifactDescriptor dependency : dependencies) {
+            if (dependency.uri() == null || !"file".equals(dependency.uri().getScheme())) {
+                continue;
+            }
+            File file = new File(dependency.uri());
+            Optional<String> repo = servedBy(file);
+            String key = dependency.group() + ":" + dependency.artifact();
+            if (repo.isPresent() && !repo.get().equals(routes.getRoutes().get(key))) {
+                routes.getRoutes().put(key, repo.get());
+                changed = true;
+            }
+        }
+        if (changed) {
+            write(routes);
+        }
+    }
+
+    private Optional<String> race(Map<String, Repo> repos, String coordinate,
+            ExecutorService executor) {
+        int ix = coordinate.indexOf(':');
+        String path = coordinate.substring(0, ix).replace('.', '/') + "/"
+                + coordinate.substring(ix + 1) + "/maven-metadata.xml";
+
+        Map<String, List<HttpURLConnection>> connections = new ConcurrentHashMap<>();
+        List<String> missing = new CopyOnWriteArrayList<>();
+        CompletionService<Optional<String>> completion = new ExecutorCompletionService<>(
+                executor);
+        List<Future<Optional<String>>> futures = new ArrayList<>();
+        repos.forEach((id, repo) -> {
+            if (repo.getUrl() != null && repo.getUrl().startsWith("http")
+                    && !negativeCache.isMissing(repo.getUrl(), coordinate)) {
+                futures.add(completion.submit(
+                        () -> probe(id, repo, path, connections, missing)));
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + RACE_TIMEOUT;
+        Optional<String> winner = Optional.empty();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<Optional<String>> future = (remaining > 0
+                        ? completion.poll(remaining, TimeUnit.MILLISECONDS)
+                        : null);
+                if (future == null) {
+                    break;
+                }
+                try {
+                    winner = future.get();
+                    if (winner.isPresent()) {
+                        break;
+                    }
+                }
+                catch (ExecutionException e) {
+                    // This repository is out of the race
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            // Stop all slower requests but keep the winner's connection alive for the resolver
+            futures.forEach(f -> f.cancel(true));
+            String id = winner.orElse(null);
+            connections.entrySet().stream().filter(e -> !e.getKey().equals(id))
+                    .forEach(e -> e.getValue().forEach(HttpURLConnection::disconnect));
+        }
+        negativeCache.missing(missing, coordinate);
+        winner.ifPresent(w -> negativeCache.found(
+                Collections.singletonList(repos.get(w).getUrl()), coordinate));
+        return winner;
+    }
+
+    private Optional<String> probe(String id, Repo repo, String path,
+            Map<String, List<HttpURLConnection>> connections, List<String> missing) {
+        String url = repo.getUrl().endsWith("/") ? repo.getUrl() : repo.getUrl() + "/";
+        try {
+            List<HttpURLConnection> open = connections.computeIfAbsent(id,
+                    k -> new CopyOnWriteArrayList<>());
+            byte[] content = fetch(url + path, repo, open);
+            if (content == null) {
+                missing.add(repo.getUrl());
+                return Optional.empty();
+            }
+            // Repositories aren't required to publish checksums; if there is one it has to match
+            byte[] checksum = fetch(url + path + ".sha1", repo, open);
+            if (checksum != null && !new String(checksum, StandardCharsets.UTF_8).trim()
+                    .split("\\s+")[0].equalsIgnoreCase(ChecksumUtils.sha1(content))) {
+                return Optional.empty();
+            }
+            return Optional.of(id);
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] fetch(String url, Repo repo, List<HttpURLConnection> connections)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connections.add(connection);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (repo.getAuth() != null && repo.getAuth().getUsername() != null) {
+            String credentials = repo.getAuth().getUsername() + ":"
+                    + (repo.getAuth().getPassword() != null ? repo.getAuth().getPassword() : "");
+            connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder()
+                    .encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        }
+        else if (code != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("%s returned %s", url, code));
+        }
+        try (InputStream is = connection.getInputStream()) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    private Optional<String> servedBy(File file) {
+        File remoteRepositories = new File(file.getParentFile(), REMOTE_REPOSITORIES);
+        if (!remoteRepositories.exists()) {
+            return Optional.empty();
+        }
+        try {
+            // Lines look like common-editors-3.2.2.zip>rugs=
+            return Files.readAllLines(remoteRepositories.toPath(), StandardCharsets.UTF_8)
+                    .stream().filter(l -> l.startsWith(file.getName() + ">"))
+                    .map(l -> l.substring(l.indexOf('>') + 1).replaceAll("=$", ""))
+                    .filter(r -> !r.isEmpty()).findFirst();
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Coordinate to route on; for local archives the first declared dependency, usually Rug
+    private Optional<String> coordinate(ArtifactDescriptor artifact) {
+        if (artifact instanceof LocalArtifactDescriptor) {
+            return artifact.dependencies().stream().findFirst()
+                    .map(d -> d.group() + ":" + d.artifact());
+        }
+        return Optional.of(artifact.group() + ":" + artifact.artifact());
+    }
+
+    private Routes read() {
+        if (routesFile.exists()) {
+            try {
+                Routes routes = mapper.readValue(routesFile, Routes.class);
+                if (routes.getFormat() == FORMAT) {
+                    return routes;
+                }
+            }
+            catch (IOException e) {
+                // Routes get learned again
+            }
+        }
+        Routes routes = new Routes();
+        routes.setFormat(FORMAT);
+        return routes;
+    }
+
+    private void write(Routes routes) {
+        File tempFile = null;
+        try {
+            routesFile.getParentFile().mkdirs();
+            // Concurrent readers in other processes never see a partially written file
+            tempFile = File.createTempFile("routes", ".tmp", routesFile.getParentFile());
+            mapper.writeValue(tempFile, routes);
+            try {
+                Files.move(tempFile.toPath(), routesFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), routesFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            // Only costs another race next time
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Routes {
+
+        private int format;
+        private Map<String, String> routes = new HashMap<>();
+
+        public int getFormat() {
+            return format;
+        }
+
+        public Map<String, String> getRoutes() {
+            return routes;
+        }
+
+        public void setFormat(int format) {
+            this.format = format;
+        }
+
+        public void setRoutes(Map<String, String> routes) {
+            this.routes = routes;
+        }
+    }
+}
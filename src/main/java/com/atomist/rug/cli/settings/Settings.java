@@ -8,7 +8,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.atomist.rug.cli.Constants;
-import com.atomist.rug.cli.utils.StringUtils;
+import com.atomist.rug.cli.utils.FileUtils;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -29,6 +29,9 @@ public class Settings {
     @JsonProperty("remote-repositories")
     private Map<String, RemoteRepository> remoteRepositories = new HashMap<>();
 
+    @JsonProperty("resolver")
+    private Resolver resolver = new Resolver();
+
     public Defaults getDefaults() {
         return defaults;
     }
@@ -45,12 +48,23 @@ public class Settings {
         return remoteRepositories;
     }
 
+    public Resolver getResolver() {
+        return resolver;
+    }
+
     public void override(Settings project) {
         if (project.getLocalRepository() != null
                 && project.getLocalRepository().getPath() != null) {
             localRepository.setPath(project.getLocalRepository().getPath());
         }
         remoteRepositories.putAll(project.getRemoteRepositories());
+        if (project.getResolver() != null && project.getResolver().getThreads() != null) {
+            resolver.setThreads(project.getResolver().getThreads());
+        }
+        if (project.getResolver() != null
+                && project.getResolver().getNegativeCacheTtl() != null) {
+            resolver.setNegativeCacheTtl(project.getResolver().getNegativeCacheTtl());
+        }
         if (project.getDefaults() != null) {
             if (project.getDefaults().getGroup() != null) {
                 defaults.setGroup(project.getDefaults().getGroup());
@@ -80,6 +94,10 @@ public class Settings {
         this.remoteRepositories = remoteRepositories;
     }
 
+    public void setResolver(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
     @JsonInclude(Include.NON_EMPTY)
     public static class Authentication {
 
@@ -146,7 +164,7 @@ public class Settings {
         }
 
         public String path() {
-            return StringUtils.expandEnvironmentVars(path);
+            return (path != null ? FileUtils.resolve(path).getPath() : null);
         }
 
         public void setPath(String path) {
@@ -207,4 +225,43 @@ public class Settings {
             this.url = url;
         }
     }
+
+    @JsonInclude(Include.NON_EMPTY)
+    public static class Resolver {
+
+        public static final int DEFAULT_THREADS = 10;
+        public static final int DEFAULT_NEGATIVE_CACHE_TTL = 60;
+
+        @JsonProperty("negative-cache-ttl")
+        private Integer negativeCacheTtl;
+
+        private Integer threads;
+
+        public Integer getNegativeCacheTtl() {
+            return negativeCacheTtl;
+        }
+
+        // Minutes to remember that an archive is missing from a repository; 0 disables
+        public int negativeCacheTtl() {
+            return (negativeCacheTtl != null && negativeCacheTtl >= 0 ? negativeCacheTtl
+                    : DEFAULT_NEGATIVE_CACHE_TTL);
+        }
+
+        public Integer getThreads() {
+            return threads;
+        }
+
+        // Number of artifacts resolved and downloaded in parallel
+        public int threads() {
+            return (threads != null && threads > 0 ? threads : DEFAULT_THREADS);
+        }
+
+        public void setNegativeCacheTtl(Integer negativeCacheTtl) {
+            this.negativeCacheTtl = negativeCacheTtl;
+        }
+
+        public void setThreads(Integer threads) {
+            this.threads = threads;
+        }
+    }
 }
@@ -6,7 +6,7 @@ import com.atomist.rug.cli.settings.Settings.Authentication;
 import com.atomist.rug.cli.settings.Settings.RemoteRepository;
 import com.atomist.rug.cli.utils.CommandLineOptions;
 import com.atomist.rug.cli.utils.FileUtils;
-import com.atomist.rug.cli.utils.StringUtils;
+import com.atomist.rug.cli.utils.Profiler;
 import org.apache.commons.io.IOUtils;
 import org.yaml.snakeyaml.Yaml;
 
@@ -23,19 +23,20 @@ public class SettingsReader {
     private static Log log = new Log(SettingsReader.class);
 
     public Settings read() {
-        File settingsFile = new File(PATH);
-        if (!CommandLineOptions.hasOption("s") && !settingsFile.exists()) {
-            createDefaultSettingsFile(settingsFile);
-        }
-        else if (CommandLineOptions.hasOption("s")) {
-            settingsFile = new File(StringUtils
-                    .expandEnvironmentVars(CommandLineOptions.getOptionValue("s").get()));
-        }
+        try (Profiler.Phase phase = Profiler.start("Read settings")) {
+            File settingsFile = new File(PATH);
+            if (!CommandLineOptions.hasOption("s") && !settingsFile.exists()) {
+                createDefaultSettingsFile(settingsFile);
+            }
+            else if (CommandLineOptions.hasOption("s")) {
+                settingsFile = FileUtils.resolve(CommandLineOptions.getOptionValue("s").get());
+            }
 
-        Settings settings = settingsFromFile(settingsFile);
-        readProjectSettings(settings);
+            Settings settings = settingsFromFile(settingsFile);
+            readProjectSettings(settings);
 
-        return settings;
+            return settings;
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -85,6 +86,18 @@ public class SettingsReader {
                 settings.getDefaults().setVersion((String) defaults.get("version"));
             }
 
+            if (data.containsKey("resolver")) {
+                Map<String, Object> resolver = (Map<String, Object>) data.get("resolver");
+                if (resolver != null && resolver.get("threads") instanceof Number) {
+                    settings.getResolver()
+                            .setThreads(((Number) resolver.get("threads")).intValue());
+                }
+                if (resolver != null && resolver.get("negative-cache-ttl") instanceof Number) {
+                    settings.getResolver().setNegativeCacheTtl(
+                            ((Number) resolver.get("negative-cache-ttl")).intValue());
+                }
+            }
+
             if (data.containsKey("catalogs")) {
                 List<String> urls = (List<String>) data.get("catalogs");
                 urls.forEach(u -> settings.getCatalogs().addUrl(u));
@@ -27,6 +27,10 @@ public class SettingsWriter {
         if (settings.getCatalogs() != null && settings.getCatalogs().getUrls().isEmpty()) {
             settings.setCatalogs(null);
         }
+        if (settings.getResolver() != null && settings.getResolver().getThreads() == null
+                && settings.getResolver().getNegativeCacheTtl() == null) {
+            settings.setResolver(null);
+        }
     }
 
     protected void settingsToFile(Settings settings, File settingsFile) {
@@ -0,0 +1,52 @@
+package com.atomist.rug.cli.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.atomist.rug.cli.RunnerException;
+
+public abstract class ChecksumUtils {
+
+    public static String sha1(String content) {
+        return sha1(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String sha1(byte[] content) {
+        MessageDigest digest = digest();
+        return toHex(digest.digest(content));
+    }
+
+    public static String sha1(File file) throws IOException {
+        MessageDigest digest = digest();
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RunnerException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
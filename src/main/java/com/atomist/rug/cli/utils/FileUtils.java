@@ -16,11 +16,26 @@ public abstract class FileUtils {
         if (path == null) {
             path = System.getProperty("user.dir");
         }
+        return resolve(path);
+    }
+
+    // Resolves a path given by the user; relative paths are resolved against user.dir explicitly
+    // as it might differ from the process' directory when running inside the daemon
+    public static File resolve(String path) {
         if (path.startsWith("~")) {
             path = path.replace("~", "${user.home}");
         }
         path = StringUtils.expandEnvironmentVars(path);
-        return new File(path);
+        File root = new File(path);
+        if (!root.isAbsolute()) {
+            root = new File(System.getProperty("user.dir"), path);
+        }
+        return root;
+    }
+
+    public static File getCacheDirectory(String name) {
+        return new File(org.apache.commons.io.FileUtils.getUserDirectory(), Constants.ATOMIST_ROOT
+                + File.separator + Constants.CACHE_ROOT + File.separator + name);
     }
 
     public static void setPermissionsToOwnerOnly(File file) {
@@ -41,8 +56,11 @@ public abstract class FileUtils {
     }
 
     public static String sizeOf(File file) {
-        return org.apache.commons.io.FileUtils
-                .byteCountToDisplaySize(org.apache.commons.io.FileUtils.sizeOf(file)).toLowerCase();
+        return sizeOf(org.apache.commons.io.FileUtils.sizeOf(file));
+    }
+
+    public static String sizeOf(long bytes) {
+        return org.apache.commons.io.FileUtils.byteCountToDisplaySize(bytes).toLowerCase();
     }
 
     public static String relativize(URI uri) {
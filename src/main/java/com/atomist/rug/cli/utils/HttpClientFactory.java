@@ -5,8 +5,12 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
 
 import java.net.*;
 import java.util.List;
@@ -15,33 +19,41 @@ import java.util.Optional;
 public class HttpClientFactory {
 
     private static void configureProxy(HttpClientBuilder builder, String url) {
+        Optional<InetSocketAddress> address = proxyAddress(url);
+        if (address.isPresent()) {
+            builder.setProxy(new HttpHost(address.get().getHostName(), address.get().getPort()));
+            CredentialsProvider credsProvider = new BasicCredentialsProvider();
+            if (addProxyCredentials(credsProvider, url, address.get())) {
+                builder.setDefaultCredentialsProvider(credsProvider);
+            }
+        }
+    }
+
+    private static Optional<InetSocketAddress> proxyAddress(String url) {
         List<Proxy> proxies = ProxySelector.getDefault().select(URI.create(url));
-        if (!proxies.isEmpty()) {
-            Optional<Proxy> proxy = proxies.stream().filter(p -> p.type().equals(Proxy.Type.HTTP))
-                    .findFirst();
-            if (proxy.isPresent()) {
-                InetSocketAddress address = (InetSocketAddress) proxy.get().address();
-                builder.setProxy(new HttpHost(address.getHostName(), address.getPort()));
-
-                try {
-                    PasswordAuthentication auth = Authenticator.requestPasswordAuthentication(
-                            address.getHostName(), null, address.getPort(),
-                            (url.startsWith("https://") ? "https" : "http"),
-                            "Credentials for proxy " + proxy, null, new URL(url),
-                            Authenticator.RequestorType.PROXY);
-                    if (auth != null) {
-                        CredentialsProvider credsProvider = new BasicCredentialsProvider();
-                        credsProvider.setCredentials(
-                                new AuthScope(address.getHostName(), address.getPort()),
-                                new UsernamePasswordCredentials(auth.getUserName(),
-                                        String.valueOf(auth.getPassword())));
-                        builder.setDefaultCredentialsProvider(credsProvider);
-                    }
-                }
-                catch (MalformedURLException e) {
-                }
+        return proxies.stream().filter(p -> p.type().equals(Proxy.Type.HTTP)).findFirst()
+                .map(p -> (InetSocketAddress) p.address());
+    }
+
+    private static boolean addProxyCredentials(CredentialsProvider credsProvider, String url,
+            InetSocketAddress address) {
+        try {
+            PasswordAuthentication auth = Authenticator.requestPasswordAuthentication(
+                    address.getHostName(), null, address.getPort(),
+                    (url.startsWith("https://") ? "https" : "http"),
+                    "Credentials for proxy " + address, null, new URL(url),
+                    Authenticator.RequestorType.PROXY);
+            if (auth != null) {
+                credsProvider.setCredentials(
+                        new AuthScope(address.getHostName(), address.getPort()),
+                        new UsernamePasswordCredentials(auth.getUserName(),
+                                String.valueOf(auth.getPassword())));
+                return true;
             }
         }
+        catch (MalformedURLException e) {
+        }
+        return false;
     }
 
     public static HttpClient createHttpClient(String url, String userAgent) {
@@ -51,4 +63,29 @@ public class HttpClientFactory {
         return builder.build();
     }
 
+    // Client shared by requests to all given URLs; as those might be behind different proxies
+    // the proxy is selected per request
+    public static CloseableHttpClient createPooledHttpClient(List<String> urls, String userAgent,
+            int maxConnections, int timeout) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        HttpClientBuilder builder = HttpClientBuilder.create().setUserAgent(userAgent)
+                .useSystemProperties().setConnectionManager(connectionManager)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(timeout)
+                        .setConnectionRequestTimeout(timeout).setSocketTimeout(timeout).build());
+        CredentialsProvider credsProvider = new BasicCredentialsProvider();
+        boolean credentials = false;
+        for (String url : urls) {
+            Optional<InetSocketAddress> address = proxyAddress(url);
+            credentials |= address.isPresent()
+                    && addProxyCredentials(credsProvider, url, address.get());
+        }
+        if (credentials) {
+            builder.setDefaultCredentialsProvider(credsProvider);
+        }
+        return builder.build();
+    }
+
 }
@@ -0,0 +1,208 @@
+package com.atomist.rug.cli.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Always loaded from the parent classloader so that phases recorded from within the command
+// classloader end up in the same list as the ones recorded by the CLI itself
+public abstract class Profiler {
+
+    private static final List<Phase> phases = Collections.synchronizedList(new ArrayList<>());
+    private static final ThreadLocal<Phase> current = new ThreadLocal<>();
+
+    private static volatile long origin = System.nanoTime();
+
+    public static void reset() {
+        phases.clear();
+        origin = System.nanoTime();
+    }
+
+    public static Phase start(String name) {
+        Phase phase = new Phase(name, current.get());
+        current.set(phase);
+        return phase;
+    }
+
+    // Phases started by the function on a worker thread are nested under the phase that is
+    // current on the calling thread
+    public static <T, R> Function<T, R> propagate(Function<T, R> function) {
+        Phase parent = current.get();
+        return t -> {
+            Phase previous = current.get();
+            current.set(parent);
+            try {
+                return function.apply(t);
+            }
+            finally {
+                current.set(previous);
+            }
+        };
+    }
+
+    // Nanoseconds since the last reset
+    public static long elapsed() {
+        return System.nanoTime() - origin;
+    }
+
+    public static List<Phase> phases() {
+        synchronized (phases) {
+            return phases.stream().sorted(Comparator.comparingLong(Phase::start))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static void writeTrace(File file) throws IOException {
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (Phase phase : phases()) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("name", phase.name());
+            event.put("cat", "rug");
+            event.put("ph", "X");
+            event.put("ts", phase.start() / 1000);
+            event.put("dur", phase.duration() / 1000);
+            event.put("pid", 1);
+            event.put("tid", phase.thread());
+            events.add(event);
+        }
+        Map<String, Object> trace = new HashMap<>();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+
+        if (file.getAbsoluteFile().getParentFile() != null) {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, trace);
+    }
+
+    // Phases with the same name and parent are combined into one entry; the time of an entry is
+    // the wall time during which any of its phases was running so that phases overlapping on
+    // different threads aren't counted twice
+    public static List<Summary> summary() {
+        Summary root = new Summary("", -1);
+        Map<Phase, Summary> summaries = new HashMap<>();
+        for (Phase phase : phases()) {
+            summary(phase, root, summaries).add(phase);
+        }
+        List<Summary> result = new ArrayList<>();
+        root.flatten(result);
+        return result.subList(1, result.size());
+    }
+
+    private static Summary summary(Phase phase, Summary root, Map<Phase, Summary> summaries) {
+        Summary summary = summaries.get(phase);
+        if (summary == null) {
+            Summary parent = (phase.parent != null ? summary(phase.parent, root, summaries)
+                    : root);
+            summary = parent.children.computeIfAbsent(phase.name,
+                    n -> new Summary(n, parent.depth + 1));
+            summaries.put(phase, summary);
+        }
+        return summary;
+    }
+
+    public static class Phase implements AutoCloseable {
+
+        private final String name;
+        private final Phase parent;
+        private final int depth;
+        private final long thread = Thread.currentThread().getId();
+        private final long start = System.nanoTime() - origin;
+        private long duration = -1;
+
+        private Phase(String name, Phase parent) {
+            this.name = name;
+            this.parent = parent;
+            this.depth = (parent != null ? parent.depth + 1 : 0);
+        }
+
+        @Override
+        public void close() {
+            if (duration < 0) {
+                duration = System.nanoTime() - origin - start;
+                current.set(parent);
+                phases.add(this);
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int depth() {
+            return depth;
+        }
+
+        public long thread() {
+            return thread;
+        }
+
+        // Nanoseconds since the last reset
+        public long start() {
+            return start;
+        }
+
+        public long duration() {
+            return duration;
+        }
+    }
+
+    public static class Summary {
+
+        private final String name;
+        private final int depth;
+        private final Map<String, Summary> children = new LinkedHashMap<>();
+        private final List<long[]> intervals = new ArrayList<>();
+
+        private Summary(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+
+        private void add(Phase phase) {
+            intervals.add(new long[] { phase.start(), phase.start() + phase.duration() });
+        }
+
+        private void flatten(List<Summary> result) {
+            result.add(this);
+            children.values().forEach(c -> c.flatten(result));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int depth() {
+            return depth;
+        }
+
+        public int count() {
+            return intervals.size();
+        }
+
+        // Nanoseconds during which at least one of the phases was running
+        public long duration() {
+            List<long[]> sorted = new ArrayList<>(intervals);
+            sorted.sort(Comparator.comparingLong(i -> i[0]));
+            long duration = 0;
+            long end = Long.MIN_VALUE;
+            for (long[] interval : sorted) {
+                if (interval[1] > end) {
+                    duration += interval[1] - Math.max(interval[0], end);
+                    end = interval[1];
+                }
+            }
+            return duration;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.atomist.rug.cli.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.cli.command.index.CommandBinding;
+import com.atomist.rug.cli.command.index.CommandIndex;
+import com.atomist.rug.cli.command.repo.RepoCommand;
+import com.atomist.rug.cli.command.repo.RepoCommandInfo;
+
+public class ServiceLoadingCommandInfoRegistryTest {
+
+    @Rule
+    public TemporaryFolder extension = new TemporaryFolder();
+
+    private final RepoCommandInfo indexed = new RepoCommandInfo();
+
+    @Before
+    public void setup() throws Exception {
+        // Registers a command already in the index and one that only an extension provides
+        FileUtils.write(
+                new File(extension.getRoot(),
+                        "META-INF/services/" + CommandInfo.class.getName()),
+                "# Commands of the extension\n" + RepoCommandInfo.class.getName() + "\n"
+                        + ExtensionCommandInfo.class.getName() + "  # not indexed\n",
+                "UTF-8");
+    }
+
+    @Test
+    public void testExtensionCommandsAreAddedToTheIndex() throws Exception {
+        List<CommandInfo> commands = loadCommands(Optional.of(new ExtensionlessIndex()));
+
+        assertSame(indexed, commands.stream().filter(c -> c.name().equals("repo")).findFirst()
+                .get());
+        assertEquals(1, commands.stream().filter(c -> c.name().equals("repo")).count());
+        assertEquals("hello", commands.get(commands.size() - 1).name());
+        assertNoDuplicates(commands);
+    }
+
+    @Test
+    public void testExtensionCommandsAreLoadedWithoutIndex() throws Exception {
+        List<CommandInfo> commands = loadCommands(Optional.empty());
+
+        assertEquals("hello", commands.get(commands.size() - 1).name());
+        assertNoDuplicates(commands);
+    }
+
+    private List<CommandInfo> loadCommands(Optional<CommandIndex> index) throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { extension.getRoot().toURI().toURL() }, getClass().getClassLoader())) {
+            return ServiceLoadingCommandInfoRegistry.loadCommands(index, classLoader);
+        }
+    }
+
+    private void assertNoDuplicates(List<CommandInfo> commands) {
+        List<String> names = commands.stream().map(CommandInfo::name)
+                .collect(Collectors.toList());
+        assertEquals(names.toString(), names.size(), new HashSet<>(names).size());
+    }
+
+    private class ExtensionlessIndex implements CommandIndex {
+
+        @Override
+        public Map<String, CommandBinding> bindings() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public List<CommandInfo> commands() {
+            return Collections.singletonList(indexed);
+        }
+    }
+
+    public static class ExtensionCommandInfo extends AbstractCommandInfo {
+
+        public ExtensionCommandInfo() {
+            super(RepoCommand.class, "hello");
+        }
+
+        @Override
+        public String description() {
+            return "Say hello";
+        }
+
+        @Override
+        public String detail() {
+            return "Command contributed by an extension";
+        }
+
+        @Override
+        public String usage() {
+            return "hello";
+        }
+    }
+}
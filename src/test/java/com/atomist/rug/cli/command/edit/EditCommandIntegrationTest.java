@@ -1,10 +1,17 @@
 package com.atomist.rug.cli.command.edit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.junit.Test;
 
 import com.atomist.rug.cli.AbstractCommandTest;
@@ -35,6 +42,80 @@ public class EditCommandIntegrationTest extends AbstractCommandTest {
 
     }
 
+    @Test
+    public void testSuccessfulEditIntoPatch() throws Exception {
+        File patch = new File("target/AddReadme.patch");
+        FileUtils.deleteQuietly(patch);
+
+        assertCommandLine(0, () -> {
+            assertTrue(FileUtils.readFileToString(patch, "UTF-8").contains("+++ b/README.md"));
+            // Keep git from looking for a repository above the project so that paths in the
+            // patch are taken relative to the project
+            ProcessBuilder git = new ProcessBuilder("git", "apply", "--check",
+                    patch.getAbsolutePath()).redirectErrorStream(true);
+            git.environment().put("GIT_CEILING_DIRECTORIES",
+                    new File(".").getAbsoluteFile().getParentFile().getParent());
+            Process process = git.start();
+            String output = IOUtils.toString(process.getInputStream(), "UTF-8");
+            assertEquals(output, 0, process.waitFor());
+            FileUtils.deleteQuietly(patch);
+        }, "edit", "atomist-rugs:common-editors:AddReadme", "project_name=TheName",
+                "description=SomeDescription", "-a", "0.5.0", "--patch", patch.getPath());
+    }
+
+    @Test
+    public void testSuccessfulEditOfMultipleProjects() throws Exception {
+        File projects = new File("target/edit-projects");
+        FileUtils.deleteQuietly(projects);
+        FileUtils.forceMkdir(new File(projects, "one"));
+        FileUtils.forceMkdir(new File(projects, "two"));
+
+        assertCommandLine(0, () -> {
+            assertTrue(new File(projects, "one/README.md").exists());
+            assertTrue(new File(projects, "two/README.md").exists());
+            FileUtils.deleteQuietly(projects);
+            String out = systemOutRule.getLogWithNormalizedLineSeparator();
+            assertTrue(out.contains("Successfully edited 2 of 2 projects"));
+            assertTrue(out.matches("(?s).*one/? modified \\(\\d+ of \\d+ files written\\).*"));
+        }, "edit", "atomist-rugs:common-editors:AddReadme", "project_name=TheName",
+                "description=SomeDescription", "-a", "0.5.0", "--projects",
+                "target/edit-projects/*", "--parallel", "2");
+    }
+
+    @Test
+    public void testSuccessfulEditCommittedToRepository() throws Exception {
+        File project = new File("target/edit-repo");
+        FileUtils.deleteQuietly(project);
+        FileUtils.write(new File(project, ".gitignore"), ".provenance.txt\n", "UTF-8");
+        try (Git git = Git.init().setDirectory(project).call()) {
+            git.add().addFilepattern(".gitignore").call();
+            git.commit().setMessage("Initial commit").setAuthor("Test", "test@atomist.com")
+                    .call();
+            // Work the user staged before running the editor
+            FileUtils.write(new File(project, "staged.txt"), "staged", "UTF-8");
+            git.add().addFilepattern("staged.txt").call();
+        }
+
+        assertCommandLine(0, () -> {
+            try (Git git = Git.open(project)) {
+                RevCommit head = git.log().call().iterator().next();
+                assertTrue(head.getFullMessage().startsWith("Commit by editor"));
+                assertNotNull(TreeWalk.forPath(git.getRepository(), "README.md",
+                        head.getTree()));
+                // Files excluded by .gitignore don't get force-added
+                assertNull(TreeWalk.forPath(git.getRepository(), ".provenance.txt",
+                        head.getTree()));
+                // Only the files of the editor get committed
+                assertNull(TreeWalk.forPath(git.getRepository(), "staged.txt", head.getTree()));
+                assertTrue(git.status().call().getAdded().contains("staged.txt"));
+            }
+            FileUtils.deleteQuietly(project);
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Not committing files excluded by .gitignore: .provenance.txt"));
+        }, "edit", "atomist-rugs:common-editors:AddReadme", "project_name=TheName",
+                "description=SomeDescription", "-a", "0.5.0", "-C", project.getPath(), "-R");
+    }
+
     @Test
     public void testUnSuccessfulEditWithInvalidParameter() throws Exception {
         assertFailure("Invalid parameter value\n  project_name = $#%$#%$#^$%$W...@432", "edit",
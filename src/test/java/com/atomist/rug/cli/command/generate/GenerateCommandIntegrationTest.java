@@ -1,5 +1,6 @@
 package com.atomist.rug.cli.command.generate;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -23,6 +24,60 @@ public class GenerateCommandIntegrationTest extends AbstractCommandTest {
         testGenerationAt(id, System.getProperty("java.io.tmpdir"));
     }
 
+    @Test
+    public void testSuccessfulGenerateFromMatrix() throws Exception {
+        String id = System.currentTimeMillis() + "";
+        File location = new File(System.getProperty("java.io.tmpdir"), id);
+        File matrix = new File(location, "projects.csv");
+        FileUtils.write(matrix, "project_name,root_package\n" + "first,my.first\n"
+                + "second,\"my.second\"\n", "UTF-8");
+
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Successfully generated 2 new projects"));
+            assertTrue(new File(location, "first/src/main/java/my/first/HomeController.java")
+                    .exists());
+            assertTrue(new File(location, "second/src/main/java/my/second/HomeController.java")
+                    .exists());
+            FileUtils.deleteQuietly(location);
+        }, "generate", "atomist-rugs:spring-boot-rest-service:NewSpringBootRestService",
+                "--matrix", matrix.getAbsolutePath(), "-C", location.getAbsolutePath());
+    }
+
+    @Test
+    public void testUnSuccessfulGenerateFromMatrixWithInvalidRow() throws Exception {
+        File matrix = new File(System.getProperty("java.io.tmpdir"),
+                System.currentTimeMillis() + ".ndjson");
+        FileUtils.write(matrix, "{\"project_name\": \"valid\"}\n"
+                + "{\"project_name\": \"1234567891234567891212345678912345678912\"}\n", "UTF-8");
+        try {
+            assertFailure("Row 2: invalid project_name", "generate",
+                    "atomist-rugs:spring-boot-rest-service:NewSpringBootRestService", "--matrix",
+                    matrix.getAbsolutePath());
+        }
+        finally {
+            FileUtils.deleteQuietly(matrix);
+        }
+    }
+
+    @Test
+    public void testUnSuccessfulGenerateFromMatrixWithDuplicateRowCreatesNothing()
+            throws Exception {
+        File location = new File(System.getProperty("java.io.tmpdir"),
+                System.currentTimeMillis() + "");
+        File matrix = new File(location, "projects.csv");
+        File target = new File(location, "out");
+        FileUtils.write(matrix, "project_name\n" + "first\n" + "first\n", "UTF-8");
+
+        assertCommandLine(1, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Project first is listed more than once"));
+            assertFalse(target.exists());
+            FileUtils.deleteQuietly(location);
+        }, "generate", "atomist-rugs:spring-boot-rest-service:NewSpringBootRestService",
+                "--matrix", matrix.getAbsolutePath(), "-C", target.getAbsolutePath());
+    }
+
     @Test
     public void testUnSuccessfulGenerateWithInvalidParameter() throws Exception {
         assertFailure(
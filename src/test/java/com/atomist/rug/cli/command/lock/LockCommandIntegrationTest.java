@@ -0,0 +1,45 @@
+package com.atomist.rug.cli.command.lock;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import com.atomist.rug.cli.AbstractCommandTest;
+
+public class LockCommandIntegrationTest extends AbstractCommandTest {
+
+    private final File lockFile = new File(".atomist" + File.separator + "rug.lock");
+
+    @After
+    public void cleanUp() throws IOException {
+        FileUtils.deleteQuietly(lockFile);
+    }
+
+    @Test
+    public void testSuccessfulLock() throws Exception {
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Successfully locked"));
+            assertTrue(lockFile.exists());
+            String lock = FileUtils.readFileToString(lockFile, "UTF-8");
+            assertTrue(lock.contains("rug-cli-tests:common-editors:3.2.2 local"));
+            assertTrue(lock.contains("\"sha1\""));
+        }, "lock", "-Vu");
+    }
+
+    @Test
+    public void testSuccessfulDescribeWithLock() throws Exception {
+        assertCommandLine(0, () -> {
+            assertTrue(lockFile.exists());
+        }, "lock");
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("rug-cli-tests:common-editors:3.2.2"));
+        }, "describe", "-l", "archive");
+    }
+}
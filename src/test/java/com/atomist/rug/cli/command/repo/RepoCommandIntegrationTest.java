@@ -0,0 +1,18 @@
+package com.atomist.rug.cli.command.repo;
+
+import org.junit.Test;
+
+import com.atomist.rug.cli.AbstractCommandTest;
+
+public class RepoCommandIntegrationTest extends AbstractCommandTest {
+
+    @Test
+    public void testUnsuccessfulInvalidSubcommand() throws Exception {
+        assertFailure("No or invalid SUBCOMMAND provided.", "repo", "start");
+    }
+
+    @Test
+    public void testUnsuccessfulInvalidPort() throws Exception {
+        assertFailure("Invalid PORT eighty provided.", "repo", "serve", "--port", "eighty");
+    }
+}
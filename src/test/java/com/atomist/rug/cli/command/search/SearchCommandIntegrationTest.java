@@ -31,4 +31,24 @@ public class SearchCommandIntegrationTest extends AbstractCommandTest {
                         .contains("atomist-rugs:spring-boot-editors")),
                 "search", "docker", "--type", "editor", "--tag", "spring");
     }
+
+    @Test
+    public void testOfflineSearchesLocalRepository() throws Exception {
+        assertSuccess("Local Archives", "search", "docker", "--offline");
+    }
+
+    @Test
+    public void testLocalAndRemoteResultsInSeparateSections() throws Exception {
+        assertCommandLine(0, () -> {
+            String out = systemOutRule.getLogWithNormalizedLineSeparator();
+            assertTrue(out.contains("Local Archives"));
+            assertTrue(out.contains("Remote Archives"));
+            assertTrue(out.indexOf("Local Archives") < out.indexOf("Remote Archives"));
+        }, "search", "docker");
+    }
+
+    @Test
+    public void testInvalidTimeout() throws Exception {
+        assertFailure("Invalid timeout abc", "search", "docker", "--timeout", "abc");
+    }
 }
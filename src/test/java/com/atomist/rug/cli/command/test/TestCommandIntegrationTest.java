@@ -2,6 +2,9 @@ package com.atomist.rug.cli.command.test;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
 import com.atomist.rug.cli.AbstractCommandTest;
@@ -28,6 +31,17 @@ public class TestCommandIntegrationTest extends AbstractCommandTest {
         }, "test", "AddGitIgnore");
     }
 
+    @Test
+    public void testSuccessfulTestsInParallel() throws Exception {
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("rug-cli-tests:common-editors:3.2.2"));
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator().contains("on 4 workers"));
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Successfully executed 13 of 13 scenarios: Test SUCCESS"));
+        }, "test", "--parallel", "4");
+    }
+
     @Test
     public void testSuccessfulTestsWithResolverInformation() throws Exception {
         assertCommandLine(0, () -> {
@@ -38,6 +52,46 @@ public class TestCommandIntegrationTest extends AbstractCommandTest {
         }, "test", "-ru");
     }
 
+    @Test
+    public void testSuccessfulTestsWithJUnitReport() throws Exception {
+        File report = new File(System.getProperty("java.io.tmpdir"),
+                System.currentTimeMillis() + "-junit.xml");
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Successfully executed 13 of 13 scenarios: Test SUCCESS"));
+            assertTrue(FileUtils.readFileToString(report, "UTF-8").contains("tests=\"13\""));
+            FileUtils.deleteQuietly(report);
+        }, "test", "--junit", report.getAbsolutePath());
+    }
+
+    @Test
+    public void testSuccessfulTestsForSingleShard() throws Exception {
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Running shard 1 of 1 with 13 of the test scenarios"));
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Successfully executed 13 of 13 scenarios: Test SUCCESS"));
+        }, "test", "--shard", "1/1");
+    }
+
+    @Test
+    public void testSuccessfulTestsRecordSharedTimings() throws Exception {
+        File timings = new File("target/timings.json");
+        FileUtils.deleteQuietly(timings);
+
+        assertCommandLine(0, () -> {
+            assertTrue(systemOutRule.getLogWithNormalizedLineSeparator()
+                    .contains("Running shard 1 of 1 with 13 of the test scenarios"));
+            assertTrue(FileUtils.readFileToString(timings, "UTF-8").contains("\"scenarios\""));
+            FileUtils.deleteQuietly(timings);
+        }, "test", "--shard", "1/1", "--timings", timings.getPath());
+    }
+
+    @Test
+    public void testUnSuccessfulForInvalidShard() throws Exception {
+        assertFailure("Invalid value 3/2 for --shard", "test", "--shard", "3/2");
+    }
+
     @Test
     public void testUnSuccessfulForNonExistingTest() throws Exception {
         assertFailure("Specified test scenario or test file bla could not be found", "test", "bla");
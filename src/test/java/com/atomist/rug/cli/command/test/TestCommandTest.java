@@ -0,0 +1,77 @@
+package com.atomist.rug.cli.command.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestCommandTest {
+
+    @Rule
+    public TemporaryFolder project = new TemporaryFolder();
+
+    private final List<String> operations = Arrays.asList("AddReadme", "AddLicense");
+    private final Map<String, String> tests = new HashMap<>();
+
+    @Before
+    public void setup() throws Exception {
+        write(".atomist/editors/AddReadme.ts", "export const editor = new AddReadme();");
+        write(".atomist/editors/Util.ts", "export function util() {}");
+        tests.put(".atomist/tests/AddReadme.rt", "scenario Readme\nrunning AddReadme");
+        tests.put(".atomist/tests/AddLicense.rt", "scenario License\nrunning AddLicense");
+    }
+
+    @Test
+    public void testChangedTestIsAffected() throws Exception {
+        assertAffected(set(".atomist/tests/AddLicense.rt"), set(".atomist/tests/AddLicense.rt"));
+    }
+
+    @Test
+    public void testTestsOfChangedOperationAreAffected() throws Exception {
+        assertAffected(set(".atomist/tests/AddReadme.rt"), set(".atomist/editors/AddReadme.ts"));
+    }
+
+    @Test
+    public void testUnattributableChangeAffectsAll() throws Exception {
+        assertFalse(affected(set(".atomist/editors/Util.ts")).isPresent());
+    }
+
+    @Test
+    public void testDeletedSourceAffectsAll() throws Exception {
+        assertFalse(affected(set(".atomist/editors/Removed.ts")).isPresent());
+    }
+
+    @Test
+    public void testLostEventsAffectAll() throws Exception {
+        assertFalse(affected(null).isPresent());
+    }
+
+    private void assertAffected(Set<String> expected, Set<String> changes) {
+        assertEquals(Optional.of(expected), affected(changes));
+    }
+
+    private Optional<Set<String>> affected(Set<String> changes) {
+        return TestCommand.affectedTests(project.getRoot(), changes, operations, tests);
+    }
+
+    private Set<String> set(String... paths) {
+        return new HashSet<>(Arrays.asList(paths));
+    }
+
+    private void write(String path, String content) throws Exception {
+        FileUtils.write(new File(project.getRoot(), path), content, "UTF-8");
+    }
+}
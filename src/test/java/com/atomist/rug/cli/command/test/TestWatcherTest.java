@@ -0,0 +1,66 @@
+package com.atomist.rug.cli.command.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestWatcherTest {
+
+    @Rule
+    public TemporaryFolder project = new TemporaryFolder();
+
+    private TestWatcher watcher;
+
+    @Before
+    public void setup() throws Exception {
+        write(".atomist/editors/AddReadme.ts", "export class AddReadme {}");
+        write(".atomist/target/AddReadme.js", "");
+        watcher = new TestWatcher(project.getRoot());
+    }
+
+    @After
+    public void close() throws Exception {
+        watcher.close();
+    }
+
+    @Test
+    public void testChangedFile() throws Exception {
+        write(".atomist/editors/AddReadme.ts", "export class AddReadme { }");
+
+        Set<String> changes = watcher.awaitChanges();
+        assertTrue(changes.contains(".atomist/editors/AddReadme.ts"));
+    }
+
+    @Test
+    public void testFilesInNewDirectory() throws Exception {
+        write(".atomist/tests/project/AddReadmeSteps.ts", "");
+        write(".atomist/tests/project/AddReadme.feature", "");
+
+        Set<String> changes = watcher.awaitChanges();
+        assertTrue(changes.contains(".atomist/tests/project/AddReadmeSteps.ts"));
+        assertTrue(changes.contains(".atomist/tests/project/AddReadme.feature"));
+    }
+
+    @Test
+    public void testBuildOutputIgnored() throws Exception {
+        write(".atomist/target/AddReadme.js", "compiled");
+        write(".atomist/editors/AddReadme.ts", "export class AddReadme { }");
+
+        Set<String> changes = watcher.awaitChanges();
+        assertTrue(changes.contains(".atomist/editors/AddReadme.ts"));
+        assertFalse(changes.contains(".atomist/target/AddReadme.js"));
+    }
+
+    private void write(String path, String content) throws Exception {
+        FileUtils.write(new File(project.getRoot(), path), content, "UTF-8");
+    }
+}
@@ -0,0 +1,107 @@
+package com.atomist.rug.cli.command.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.cli.RunnerException;
+import com.atomist.source.Delta;
+import com.atomist.source.FileAdditionDelta;
+import com.atomist.source.FileArtifact;
+import com.atomist.source.FileUpdateDelta;
+import com.atomist.source.StringFileArtifact;
+
+public class DeltaTransactionIntegrationTest {
+
+    @Rule
+    public TemporaryFolder project = new TemporaryFolder();
+
+    @Test
+    public void testIdenticalContentIsNotWritten() throws Exception {
+        File same = write("same.txt", "same");
+        File changed = write("changed.txt", "old");
+        long lastModified = same.lastModified() - 10000;
+        same.setLastModified(lastModified);
+
+        List<Delta> applied = new DeltaTransaction(project.getRoot()).apply(Arrays.asList(
+                new FileUpdateDelta(file("same.txt", "same"), file("same.txt", "same")),
+                new FileUpdateDelta(file("changed.txt", "old"), file("changed.txt", "new")),
+                new FileAdditionDelta(file("added.txt", "added"))));
+
+        assertEquals(2, applied.size());
+        assertEquals("changed.txt", applied.get(0).path());
+        assertEquals("added.txt", applied.get(1).path());
+        assertEquals(lastModified, same.lastModified());
+        assertEquals("new", FileUtils.readFileToString(changed, "UTF-8"));
+        assertEquals("added",
+                FileUtils.readFileToString(new File(project.getRoot(), "added.txt"), "UTF-8"));
+        assertNoStagingLeft();
+    }
+
+    @Test
+    public void testLastDeltaForTheSamePathWins() throws Exception {
+        File changed = write("changed.txt", "old");
+
+        List<Delta> applied = new DeltaTransaction(project.getRoot()).apply(Arrays.asList(
+                new FileAdditionDelta(file("added.txt", "first")),
+                new FileUpdateDelta(file("changed.txt", "old"), file("changed.txt", "newer")),
+                new FileUpdateDelta(file("added.txt", "first"), file("added.txt", "second")),
+                new FileUpdateDelta(file("changed.txt", "newer"),
+                        file("changed.txt", "newest"))));
+
+        assertEquals(2, applied.size());
+        assertEquals("second",
+                FileUtils.readFileToString(new File(project.getRoot(), "added.txt"), "UTF-8"));
+        assertEquals("newest", FileUtils.readFileToString(changed, "UTF-8"));
+        assertNoStagingLeft();
+    }
+
+    @Test
+    public void testFailedMoveRollsBackAllChanges() throws Exception {
+        File keep = write("keep.txt", "original");
+        // A file where a directory is needed makes moving the second change into place fail
+        write("blocked", "not a directory");
+
+        try {
+            new DeltaTransaction(project.getRoot()).apply(Arrays.asList(
+                    new FileUpdateDelta(file("keep.txt", "original"),
+                            file("keep.txt", "modified")),
+                    new FileAdditionDelta(file("blocked/added.txt", "added"))));
+            fail("Expected the transaction to fail");
+        }
+        catch (RunnerException e) {
+            assertTrue(e.getMessage().contains("all changes have been rolled back"));
+        }
+
+        assertEquals("original", FileUtils.readFileToString(keep, "UTF-8"));
+        assertEquals("not a directory", FileUtils
+                .readFileToString(new File(project.getRoot(), "blocked"), "UTF-8"));
+        assertNoStagingLeft();
+    }
+
+    private File write(String path, String content) throws Exception {
+        File file = new File(project.getRoot(), path);
+        FileUtils.write(file, content, "UTF-8");
+        return file;
+    }
+
+    private FileArtifact file(String path, String content) {
+        int ix = path.lastIndexOf('/');
+        return (ix < 0 ? new StringFileArtifact(path, "", content)
+                : new StringFileArtifact(path.substring(ix + 1), path.substring(0, ix), content));
+    }
+
+    private void assertNoStagingLeft() {
+        String[] files = project.getRoot().list((dir, name) -> name.startsWith(".rug-staging"));
+        assertEquals(0, files.length);
+    }
+}
@@ -0,0 +1,77 @@
+package com.atomist.rug.cli.command.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GitIgnoreFilterTest {
+
+    @Rule
+    public TemporaryFolder project = new TemporaryFolder();
+
+    private GitIgnoreFilter filter;
+
+    @Before
+    public void setup() throws Exception {
+        write(".gitignore", "*.log\n!keep.log\nbuild/\n/local.txt\n");
+        write("module/.gitignore", "!debug.log\ngenerated/\n*.tmp\n");
+        write("module/nested/.gitignore", "!*.tmp\nkeep.log\n");
+        write(".git/info/exclude", "secret.txt\n");
+        filter = new GitIgnoreFilter(project.getRoot());
+    }
+
+    @Test
+    public void testRootRules() throws Exception {
+        assertFalse(accepts("app.log"));
+        assertTrue(accepts("keep.log"));
+        assertTrue(accepts("src/Main.java"));
+        assertFalse(accepts("src/error.log"));
+        assertFalse(accepts("secret.txt"));
+    }
+
+    @Test
+    public void testAnchoredRuleOnlyMatchesNextToIgnoreFile() throws Exception {
+        assertFalse(accepts("local.txt"));
+        assertTrue(accepts("src/local.txt"));
+    }
+
+    @Test
+    public void testIgnoredDirectoriesExcludeTheirContents() throws Exception {
+        assertFalse(accepts("build"));
+        assertFalse(accepts("build/classes/Main.class"));
+        assertFalse(accepts("module/generated/Model.java"));
+        assertTrue(accepts("module/Model.java"));
+    }
+
+    @Test
+    public void testNestedIgnoreFilesOverrideParents() throws Exception {
+        assertTrue(accepts("module/debug.log"));
+        assertFalse(accepts("module/trace.log"));
+        assertFalse(accepts("module/cache.tmp"));
+        assertTrue(accepts("module/nested/cache.tmp"));
+        assertFalse(accepts("module/nested/keep.log"));
+        assertTrue(accepts("module/keep.log"));
+    }
+
+    private boolean accepts(String path) throws Exception {
+        File file = new File(project.getRoot(), path);
+        if (!path.contains(".")) {
+            file.mkdirs();
+        }
+        else {
+            write(path, "");
+        }
+        return filter.apply(file.getAbsolutePath());
+    }
+
+    private void write(String path, String content) throws Exception {
+        FileUtils.write(new File(project.getRoot(), path), content, "UTF-8");
+    }
+}
@@ -0,0 +1,141 @@
+package com.atomist.rug.cli.command.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static scala.collection.JavaConversions.asJavaCollection;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.cli.output.ProgressReporter;
+import com.atomist.rug.compiler.Compiler;
+import com.atomist.source.ArtifactSource;
+import com.atomist.source.EmptyArtifactSource;
+import com.atomist.source.FileArtifact;
+import com.atomist.source.StringFileArtifact;
+
+public class IncrementalTypeScriptCompilerTest {
+
+    @Rule
+    public TemporaryFolder cache = new TemporaryFolder();
+
+    // Sources handed to the compiler, across all workers
+    private final Set<String> compiled = Collections.synchronizedSet(new HashSet<>());
+    private final Map<String, String> files = new LinkedHashMap<>();
+
+    private IncrementalTypeScriptCompiler compiler;
+
+    @Before
+    public void setup() {
+        compiler = new IncrementalTypeScriptCompiler(this::createCompiler, cache.getRoot());
+
+        files.put(".atomist/manifest.yml", "group: atomist");
+        files.put(".atomist/editors/Editor.ts", "import { helper } from \"./Helper\";\n");
+        files.put(".atomist/editors/Helper.ts", "export function helper() {}\n");
+        files.put(".atomist/editors/Other.ts", "export class Other {}\n");
+    }
+
+    @Test
+    public void testUnchangedSourcesAreNotCompiledAgain() throws Exception {
+        compile();
+        assertEquals(set("Editor", "Helper", "Other"), compiled);
+
+        compiled.clear();
+        ArtifactSource result = compile();
+        assertTrue(compiled.isEmpty());
+        assertEquals("compiled Editor.ts", output(result, "Editor").get());
+        assertEquals("compiled Other.ts", output(result, "Other").get());
+    }
+
+    @Test
+    public void testImportersOfEditedSourcesAreCompiled() throws Exception {
+        compile();
+
+        compiled.clear();
+        files.put(".atomist/editors/Helper.ts", "export function helper(name: string) {}\n");
+        ArtifactSource result = compile();
+
+        assertEquals(set("Editor", "Helper"), compiled);
+        assertTrue(output(result, "Other").isPresent());
+    }
+
+    @Test
+    public void testImportersOfDeletedSourcesAreCompiled() throws Exception {
+        compile();
+
+        compiled.clear();
+        files.remove(".atomist/editors/Helper.ts");
+        ArtifactSource result = compile();
+
+        assertEquals(set("Editor"), compiled);
+        assertFalse(output(result, "Helper").isPresent());
+        assertFalse(new File(cache.getRoot(), "incremental/.atomist/editors/Helper.js").exists());
+        assertTrue(output(result, "Other").isPresent());
+    }
+
+    private ArtifactSource compile() {
+        ArtifactSource source = new EmptyArtifactSource("test");
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            source = source.plus(file(file.getKey(), file.getValue()));
+        }
+        return compiler.compile(source, new ProgressReporter() {
+
+            @Override
+            public void finish(boolean success, float duration) {
+            }
+
+            @Override
+            public void report(String message) {
+            }
+        });
+    }
+
+    // Only compile gets called by the incremental compiler; it turns every TypeScript source
+    // into a JavaScript file next to it
+    private Compiler createCompiler() {
+        return (Compiler) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Compiler.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("compile")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    ArtifactSource result = (ArtifactSource) args[0];
+                    for (FileArtifact file : asJavaCollection(result.allFiles())) {
+                        if (file.path().endsWith(".ts")) {
+                            compiled.add(file.name().replace(".ts", ""));
+                            result = result.plus(file(file.path().replace(".ts", ".js"),
+                                    "compiled " + file.name()));
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    private Optional<String> output(ArtifactSource result, String name) {
+        return asJavaCollection(result.allFiles()).stream()
+                .filter(f -> f.path().equals(".atomist/editors/" + name + ".js"))
+                .map(FileArtifact::content).findFirst();
+    }
+
+    private Set<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private FileArtifact file(String path, String content) {
+        int ix = path.lastIndexOf('/');
+        return (ix < 0 ? new StringFileArtifact(path, "", content)
+                : new StringFileArtifact(path.substring(ix + 1), path.substring(0, ix), content));
+    }
+}
@@ -0,0 +1,30 @@
+package com.atomist.rug.cli.daemon;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DaemonClientTest {
+
+    @Test
+    public void testInteractiveArgs() {
+        assertTrue(DaemonClient.isInteractive(new String[] { "shell" }));
+        assertTrue(DaemonClient.isInteractive(new String[] { "test", "-w" }));
+        assertTrue(DaemonClient.isInteractive(new String[] { "test", "--watch" }));
+        assertTrue(DaemonClient.isInteractive(new String[] { "test", "-Vw" }));
+        assertTrue(DaemonClient.isInteractive(new String[] { "edit", "Foo", "-lI" }));
+        assertTrue(DaemonClient.isInteractive(new String[] { "repo", "serve" }));
+        assertTrue(DaemonClient.isInteractive(new String[] { "repo", "--port", "9000", "serve" }));
+        assertFalse(DaemonClient.isInteractive(new String[] { "test", "-V" }));
+        assertFalse(DaemonClient.isInteractive(new String[] { "edit", "Foo", "name=-w" }));
+    }
+
+    @Test
+    public void testStdinArgs() {
+        assertTrue(DaemonClient.readsStdin(new String[] { "edit", "Foo", "--projects", "-" }));
+        assertTrue(DaemonClient.readsStdin(new String[] { "edit", "Foo", "-P", "-" }));
+        assertTrue(DaemonClient.readsStdin(new String[] { "edit", "Foo", "--projects=-" }));
+        assertFalse(DaemonClient.readsStdin(new String[] { "edit", "Foo", "-P", "list.txt" }));
+    }
+}
@@ -0,0 +1,188 @@
+package com.atomist.rug.cli.daemon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.cli.command.ServiceLoadingCommandInfoRegistry;
+
+public class DaemonServerIntegrationTest {
+
+    @Rule
+    public TemporaryFolder home = new TemporaryFolder();
+
+    private String originalHome;
+    private DaemonServer daemon;
+    private Thread server;
+
+    @Before
+    public void startServer() throws Exception {
+        originalHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getRoot().getAbsolutePath());
+
+        daemon = new DaemonServer(new ServiceLoadingCommandInfoRegistry());
+        server = new Thread(() -> {
+            try {
+                daemon.serve();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!DaemonProtocol.daemonFile().exists()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Daemon didn't start");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        DaemonClient.stop();
+        server.join(10000);
+        System.setProperty("user.home", originalHome);
+    }
+
+    @Test
+    public void testProtocolRoundTrip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DaemonProtocol.writeString(out, "/work");
+        DaemonProtocol.writeArray(out, new String[] { "edit", "-a", "1.0.0" });
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("/work", DaemonProtocol.readString(in));
+        assertArrayEquals(new String[] { "edit", "-a", "1.0.0" }, DaemonProtocol.readArray(in));
+    }
+
+    @Test
+    public void testOversizedLengthIsRejected() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(Integer.MAX_VALUE);
+        try {
+            DaemonProtocol.readString(
+                    new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Expected IOException");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().contains("Invalid length"));
+        }
+    }
+
+    @Test
+    public void testInvalidTokenIsRejected() throws Exception {
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DaemonProtocol.writeString(out, "not-the-token");
+            out.writeInt(DaemonProtocol.REQUEST_STOP);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        // Still serving
+        assertTrue(server.isAlive());
+        assertEquals(0, run("-?").exitCode);
+    }
+
+    @Test
+    public void testOversizedTokenIsRejected() throws Exception {
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        assertTrue(server.isAlive());
+    }
+
+    @Test
+    public void testBusyDaemonTurnsAwayRequests() throws Exception {
+        daemon.busy.set(true);
+        assertEquals(DaemonProtocol.CHANNEL_BUSY, run("-?").exitCode);
+
+        daemon.busy.set(false);
+        assertEquals(0, run("-?").exitCode);
+    }
+
+    @Test
+    public void testRunAndStop() throws Exception {
+        Result result = run("-?");
+        assertEquals(0, result.exitCode);
+        assertTrue(result.out.contains("Usage: rug [OPTION]... [COMMAND]..."));
+
+        assertEquals(0, DaemonClient.stop());
+        server.join(10000);
+        assertFalse(server.isAlive());
+        assertFalse(DaemonProtocol.daemonFile().exists());
+    }
+
+    private Socket connect() throws IOException {
+        Properties props = DaemonProtocol.readDaemonFile().get();
+        return new Socket(InetAddress.getLoopbackAddress(), DaemonProtocol.port(props));
+    }
+
+    private Result run(String... args) throws IOException {
+        Properties props = DaemonProtocol.readDaemonFile().get();
+        try (Socket socket = connect()) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DaemonProtocol.writeString(out, DaemonProtocol.token(props));
+            out.writeInt(DaemonProtocol.REQUEST_RUN);
+            DaemonProtocol.writeString(out, System.getProperty("user.dir"));
+            DaemonProtocol.writeArray(out, args);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            while (true) {
+                byte channel = in.readByte();
+                if (channel == DaemonProtocol.CHANNEL_EXIT) {
+                    return new Result(in.readInt(),
+                            new String(output.toByteArray(), StandardCharsets.UTF_8));
+                }
+                else if (channel == DaemonProtocol.CHANNEL_BUSY) {
+                    return new Result(channel, "");
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                output.write(bytes);
+            }
+        }
+        catch (EOFException e) {
+            throw new IOException("Daemon closed the connection", e);
+        }
+    }
+
+    private static class Result {
+
+        private final int exitCode;
+        private final String out;
+
+        Result(int exitCode, String out) {
+            this.exitCode = exitCode;
+            this.out = out;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.atomist.rug.cli.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.cli.resolver.ClasspathCache.Entry;
+import com.atomist.rug.cli.settings.Settings;
+import com.atomist.rug.cli.settings.Settings.RemoteRepository;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
+import com.atomist.rug.resolver.ArtifactDescriptor.Scope;
+import com.atomist.rug.resolver.DefaultArtifactDescriptor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ClasspathCacheTest {
+
+    private static final long TWO_HOURS = 1000 * 60 * 60 * 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private File repository;
+    private List<ArtifactDescriptor> dependencies;
+
+    @Before
+    public void setup() throws Exception {
+        root = folder.newFolder("classpath");
+        repository = folder.newFolder("repository");
+
+        File jar = new File(repository, "com/example/lib/1.0/lib-1.0.jar");
+        FileUtils.write(jar, "lib", "UTF-8");
+        Scope scope = Scope.values()[Scope.values().length - 1];
+        dependencies = Collections.singletonList(new DefaultArtifactDescriptor("com.example",
+                "lib", "1.0", Extension.JAR, scope, jar.toURI()));
+    }
+
+    @Test
+    public void testKeyCoversDeclaredDependenciesAndRepositories() throws Exception {
+        String key = cache(settings("https://repo.example.com")).key(archive("1.0.0"));
+        assertEquals(key, cache(settings("https://repo.example.com")).key(archive("1.0.0")));
+
+        assertNotEquals(key, cache(settings("https://repo.example.com")).key(archive("1.0.1")));
+        assertNotEquals(key, cache(settings("https://repo.example.com"))
+                .key(archive("1.0.0", "com.atomist:rug:1.0.0")));
+        assertNotEquals(key, cache(settings("https://mirror.example.com")).key(archive("1.0.0")));
+
+        Settings otherRepository = settings("https://repo.example.com");
+        otherRepository.getLocalRepository().setPath(folder.newFolder("other").getPath());
+        assertNotEquals(key, cache(otherRepository).key(archive("1.0.0")));
+    }
+
+    @Test
+    public void testResolvedClasspathIsCached() throws Exception {
+        ClasspathCache cache = cache(settings("https://repo.example.com"));
+        ArtifactDescriptor archive = archive("1.0.0", "com.atomist:rug:1.0.0");
+        assertFalse(cache.get(archive).isPresent());
+
+        cache.put(archive, dependencies);
+        List<ArtifactDescriptor> cached = cache.get(archive).get();
+        assertEquals(1, cached.size());
+        assertEquals(dependencies.get(0).uri(), cached.get(0).uri());
+        assertEquals(dependencies.get(0).scope(), cached.get(0).scope());
+
+        // Changes to the local repository invalidate the entry
+        FileUtils.write(new File(dependencies.get(0).uri()), "changed", "UTF-8");
+        assertFalse(cache.get(archive).isPresent());
+    }
+
+    @Test
+    public void testEntriesWithDynamicDependencyVersionsExpire() throws Exception {
+        ClasspathCache cache = cache(settings("https://repo.example.com"));
+        ArtifactDescriptor pinned = archive("1.0.0", "com.atomist:rug:1.0.0");
+        ArtifactDescriptor range = archive("1.0.0", "com.atomist:rug:[1.0.0,2.0.0)");
+        ArtifactDescriptor snapshot = archive("1.0.0", "com.atomist:rug:1.1.0-SNAPSHOT");
+        ArtifactDescriptor latest = archive("latest");
+
+        for (ArtifactDescriptor archive : new ArtifactDescriptor[] { pinned, range, snapshot,
+                latest }) {
+            cache.put(archive, dependencies);
+            assertTrue(cache.get(archive).isPresent());
+        }
+        age(TWO_HOURS);
+
+        assertTrue(cache.get(pinned).isPresent());
+        assertFalse(cache.get(range).isPresent());
+        assertFalse(cache.get(snapshot).isPresent());
+        assertFalse(cache.get(latest).isPresent());
+    }
+
+    private void age(long millis) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        for (File file : root.listFiles()) {
+            Entry entry = mapper.readValue(file, Entry.class);
+            entry.setCreated(entry.getCreated() - millis);
+            mapper.writeValue(file, entry);
+        }
+    }
+
+    private ClasspathCache cache(Settings settings) {
+        return new ClasspathCache(root, settings);
+    }
+
+    private Settings settings(String url) {
+        Settings settings = new Settings();
+        settings.getLocalRepository().setPath(repository.getPath());
+        RemoteRepository remote = new RemoteRepository();
+        remote.setUrl(url);
+        settings.getRemoteRepositories().put("rugs", remote);
+        return settings;
+    }
+
+    private ArtifactDescriptor archive(String version, String... declared) {
+        DefaultArtifactDescriptor archive = new DefaultArtifactDescriptor("atomist", "archive",
+                version, Extension.ZIP);
+        for (String coordinate : declared) {
+            String[] parts = coordinate.split(":");
+            archive.addDependency(new DefaultArtifactDescriptor(parts[0], parts[1], parts[2],
+                    Extension.JAR));
+        }
+        return archive;
+    }
+}
@@ -0,0 +1,91 @@
+package com.atomist.rug.cli.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
+import com.atomist.rug.resolver.ArtifactDescriptor.Scope;
+import com.atomist.rug.resolver.DefaultArtifactDescriptor;
+
+public class LockFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String originalHome;
+    private File repository;
+    private LockFile lockFile;
+
+    @Before
+    public void setup() throws Exception {
+        // Verified checksums are cached below the user's home
+        originalHome = System.getProperty("user.home");
+        System.setProperty("user.home", folder.newFolder("home").getAbsolutePath());
+
+        repository = folder.newFolder("repository");
+        File projectRoot = folder.newFolder("project", ".atomist").getParentFile();
+        lockFile = new LockFile(projectRoot, repository);
+    }
+
+    @After
+    public void cleanup() {
+        System.setProperty("user.home", originalHome);
+    }
+
+    @Test
+    public void testScopesAreRestored() throws Exception {
+        ArtifactDescriptor archive = new DefaultArtifactDescriptor("atomist", "archive", "1.0.0",
+                Extension.ZIP);
+        List<ArtifactDescriptor> dependencies = new ArrayList<>();
+        for (Scope scope : Scope.values()) {
+            String name = scope.toString().toLowerCase();
+            File jar = new File(repository, "com/example/" + name + "/1.0/" + name + "-1.0.jar");
+            FileUtils.write(jar, name, "UTF-8");
+            dependencies.add(new DefaultArtifactDescriptor("com.example", name, "1.0",
+                    Extension.JAR, scope, jar.toURI()));
+        }
+        lockFile.put(archive, dependencies);
+        assertTrue(lockFile.exists());
+
+        List<ArtifactDescriptor> locked = lockFile.get(archive).get();
+        assertEquals(dependencies.size(), locked.size());
+        for (int i = 0; i < locked.size(); i++) {
+            assertEquals(dependencies.get(i).artifact(), locked.get(i).artifact());
+            assertEquals(dependencies.get(i).scope(), locked.get(i).scope());
+            assertEquals(dependencies.get(i).uri(), locked.get(i).uri());
+        }
+    }
+
+    @Test
+    public void testEntriesWithoutScopeAreCompileScoped() throws Exception {
+        ArtifactDescriptor archive = new DefaultArtifactDescriptor("atomist", "archive", "1.0.0",
+                Extension.ZIP);
+        File jar = new File(repository, "com/example/lib/1.0/lib-1.0.jar");
+        FileUtils.write(jar, "lib", "UTF-8");
+        Scope scope = Scope.values()[Scope.values().length - 1];
+        lockFile.put(archive, Collections.singletonList(new DefaultArtifactDescriptor(
+                "com.example", "lib", "1.0", Extension.JAR, scope, jar.toURI())));
+
+        // Lockfiles written before the scope was recorded
+        String content = FileUtils.readFileToString(lockFile.file(), "UTF-8");
+        FileUtils.write(lockFile.file(), content.replaceAll("\\s*\"scope\" : \"\\w+\",", ""),
+                "UTF-8");
+        assertFalse(FileUtils.readFileToString(lockFile.file(), "UTF-8").contains("scope"));
+
+        assertEquals(Scope.COMPILE, lockFile.get(archive).get().get(0).scope());
+    }
+}
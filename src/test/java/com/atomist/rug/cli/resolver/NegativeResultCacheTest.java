@@ -0,0 +1,107 @@
+package com.atomist.rug.cli.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NegativeResultCacheTest {
+
+    private static final String CENTRAL = "https://repo.maven.apache.org/maven2";
+    private static final String RUGS = "https://atomist.jfrog.io/atomist/rugs-release/";
+    private static final String COORDINATE = "atomist:missing:1.0.0";
+    private static final long TTL = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setup() {
+        file = new File(folder.getRoot(), "cache/missing.json");
+    }
+
+    @Test
+    public void testMissingIsRememberedPerRepository() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(file, TTL);
+        cache.missing(Collections.singletonList(CENTRAL + "/"), COORDINATE);
+
+        assertTrue(cache.isMissing(CENTRAL, COORDINATE));
+        assertFalse(cache.isMissing(CENTRAL, "atomist:missing:2.0.0"));
+        assertFalse(cache.isMissing(RUGS, COORDINATE));
+        // Only missing if none of the repositories has it
+        assertFalse(cache.isMissing(Arrays.asList(CENTRAL, RUGS), COORDINATE));
+        assertFalse(cache.isMissing(Collections.emptyList(), COORDINATE));
+
+        cache.missing(Collections.singletonList(RUGS), COORDINATE);
+        assertTrue(cache.isMissing(Arrays.asList(CENTRAL, RUGS), COORDINATE));
+    }
+
+    @Test
+    public void testEntriesAreSharedThroughTheFile() throws Exception {
+        List<String> urls = Arrays.asList(CENTRAL, RUGS);
+        new NegativeResultCache(file, TTL).missing(urls, COORDINATE);
+        assertTrue(new NegativeResultCache(file, TTL).isMissing(urls, COORDINATE));
+
+        // Entries written by another instance in the meantime survive an update
+        NegativeResultCache first = new NegativeResultCache(file, TTL);
+        assertTrue(first.isMissing(urls, COORDINATE));
+        new NegativeResultCache(file, TTL).missing(urls, "atomist:other:1.0.0");
+        first.missing(urls, "atomist:third:1.0.0");
+        NegativeResultCache reread = new NegativeResultCache(file, TTL);
+        assertTrue(reread.isMissing(urls, "atomist:other:1.0.0"));
+        assertTrue(reread.isMissing(urls, "atomist:third:1.0.0"));
+
+        assertEquals(0, file.getParentFile()
+                .list((dir, name) -> name.endsWith(".tmp")).length);
+    }
+
+    @Test
+    public void testFoundClearsEntries() throws Exception {
+        List<String> urls = Arrays.asList(CENTRAL, RUGS);
+        NegativeResultCache cache = new NegativeResultCache(file, TTL);
+        cache.missing(urls, COORDINATE);
+
+        cache.found(Collections.singletonList(RUGS), COORDINATE);
+        assertFalse(cache.isMissing(urls, COORDINATE));
+        assertTrue(cache.isMissing(CENTRAL, COORDINATE));
+        assertFalse(new NegativeResultCache(file, TTL).isMissing(RUGS, COORDINATE));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(file, 50);
+        cache.missing(Collections.singletonList(CENTRAL), COORDINATE);
+        assertTrue(cache.isMissing(CENTRAL, COORDINATE));
+        Thread.sleep(100);
+        assertFalse(cache.isMissing(CENTRAL, COORDINATE));
+    }
+
+    @Test
+    public void testDisabledWithoutTtl() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(file, 0);
+        cache.missing(Collections.singletonList(CENTRAL), COORDINATE);
+        assertFalse(cache.isMissing(CENTRAL, COORDINATE));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testCorruptFileIsIgnored() throws Exception {
+        FileUtils.write(file, "{ not json", "UTF-8");
+        NegativeResultCache cache = new NegativeResultCache(file, TTL);
+        assertFalse(cache.isMissing(CENTRAL, COORDINATE));
+        cache.missing(Collections.singletonList(CENTRAL), COORDINATE);
+        assertTrue(new NegativeResultCache(file, TTL).isMissing(CENTRAL, COORDINATE));
+    }
+}
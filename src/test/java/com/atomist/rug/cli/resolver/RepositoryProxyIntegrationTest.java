@@ -0,0 +1,206 @@
+package com.atomist.rug.cli.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.DigestUtils;
+
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.resolver.maven.MavenProperties.Repo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class RepositoryProxyIntegrationTest {
+
+    private static final String JAR = "com/example/lib/1.0/lib-1.0.jar";
+    private static final String METADATA = "com/example/lib/maven-metadata.xml";
+    private static final String METADATA_CONTENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<metadata><groupId>com.example</groupId><artifactId>lib</artifactId>"
+            + "<versioning><latest>1.0</latest><release>1.0</release>"
+            + "<versions><version>1.0</version></versions>"
+            + "<lastUpdated>20170101000000</lastUpdated></versioning></metadata>\n";
+
+    private static final int CLIENTS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, byte[]> upstreamFiles = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> upstreamRequests = new ConcurrentHashMap<>();
+
+    private HttpServer upstream;
+    private RepositoryProxy proxy;
+    private String proxyUrl;
+
+    @Before
+    public void setup() throws Exception {
+        put(JAR, "jar content".getBytes(StandardCharsets.UTF_8));
+        put(METADATA, METADATA_CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/", this::serveUpstream);
+        upstream.start();
+
+        Repo repo = new Repo();
+        repo.setUrl(String.format("http://%s:%s/", upstream.getAddress().getHostString(),
+                upstream.getAddress().getPort()));
+        proxy = new RepositoryProxy(folder.newFolder("store"),
+                Collections.singletonMap("upstream", repo), l -> {
+                });
+        // Fewer request threads than clients asking for the same file at once
+        InetSocketAddress address = proxy.start(null, 0, 2);
+        proxyUrl = String.format("http://%s:%s/", address.getHostString(), address.getPort());
+    }
+
+    @After
+    public void shutdown() {
+        proxy.close();
+        upstream.stop(0);
+    }
+
+    @Test
+    public void testConcurrentArtifactRequestsShareOneDownload() throws Exception {
+        for (Response response : getConcurrently(JAR)) {
+            assertEquals(HttpURLConnection.HTTP_OK, response.status);
+            assertEquals("jar content", response.content);
+        }
+        assertEquals(1, upstreamRequests.get(JAR).get());
+        assertTrue(proxy.coalesced() > 0);
+    }
+
+    @Test
+    public void testConcurrentMetadataRequestsShareOneDownload() throws Exception {
+        for (Response response : getConcurrently(METADATA)) {
+            assertEquals(HttpURLConnection.HTTP_OK, response.status);
+            assertTrue(response.content.contains("<version>1.0</version>"));
+        }
+        assertEquals(1, upstreamRequests.get(METADATA).get());
+        assertTrue(proxy.coalesced() > 0);
+    }
+
+    @Test
+    public void testUnchangedFileIsNotSentAgain() throws Exception {
+        Response response = get(JAR, null);
+        assertEquals(HttpURLConnection.HTTP_OK, response.status);
+        String sha1 = ChecksumUtils.sha1(upstreamFiles.get(JAR));
+        assertEquals("\"" + sha1 + "\"", response.etag);
+
+        Response revalidated = get(JAR, response.etag);
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, revalidated.status);
+        assertEquals(response.etag, revalidated.etag);
+
+        assertEquals(HttpURLConnection.HTTP_OK, get(JAR, "\"outdated\"").status);
+        assertEquals(sha1, get(JAR + ".sha1", null).content);
+        assertEquals(1, upstreamRequests.get(JAR).get());
+    }
+
+    private List<Response> getConcurrently(String path) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                futures.add(clients.submit(() -> {
+                    start.await();
+                    return get(path, null);
+                }));
+            }
+            start.countDown();
+            List<Response> responses = new ArrayList<>();
+            for (Future<Response> future : futures) {
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return responses;
+        }
+        finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private Response get(String path, String etag) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxyUrl + path)
+                .openConnection();
+        // A stuck proxy fails the test instead of hanging it
+        connection.setReadTimeout(20000);
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        response.etag = connection.getHeaderField("ETag");
+        if (response.status == HttpURLConnection.HTTP_OK) {
+            try (InputStream is = connection.getInputStream()) {
+                response.content = IOUtils.toString(is, StandardCharsets.UTF_8);
+            }
+        }
+        return response;
+    }
+
+    private void put(String path, byte[] content) {
+        upstreamFiles.put(path, content);
+        upstreamFiles.put(path + ".sha1",
+                ChecksumUtils.sha1(content).getBytes(StandardCharsets.UTF_8));
+        upstreamFiles.put(path + ".md5",
+                DigestUtils.md5DigestAsHex(content).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void serveUpstream(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring(1);
+        upstreamRequests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        try {
+            // Slow enough for all clients to arrive while the first download is in progress
+            Thread.sleep(500);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] content = upstreamFiles.get(path);
+        if (content == null) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+        }
+        else if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+        }
+        else {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content);
+            }
+        }
+        exchange.close();
+    }
+
+    private static class Response {
+        private int status;
+        private String etag;
+        private String content;
+    }
+}
@@ -0,0 +1,180 @@
+package com.atomist.rug.cli.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.atomist.rug.cli.utils.ChecksumUtils;
+import com.atomist.rug.resolver.ArtifactDescriptor;
+import com.atomist.rug.resolver.ArtifactDescriptor.Extension;
+import com.atomist.rug.resolver.DefaultArtifactDescriptor;
+import com.atomist.rug.resolver.maven.MavenProperties.Repo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class RepositoryRouterIntegrationTest {
+
+    private static final String METADATA = "com/example/lib/maven-metadata.xml";
+    private static final String METADATA_CONTENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<metadata><groupId>com.example</groupId><artifactId>lib</artifactId>"
+            + "<versioning><release>1.0</release><versions><version>1.0</version></versions>"
+            + "</versioning></metadata>\n";
+    private static final String COORDINATE = "com.example:lib";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Upstream> upstreams = new ArrayList<>();
+    private final ArtifactDescriptor artifact = new DefaultArtifactDescriptor("com.example",
+            "lib", "1.0", Extension.ZIP);
+
+    private ExecutorService executor;
+    private File routesFile;
+    private NegativeResultCache negativeCache;
+
+    @Before
+    public void setup() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        routesFile = new File(folder.getRoot(), "routes/routes.json");
+        negativeCache = new NegativeResultCache(new File(folder.getRoot(), "missing.json"),
+                60 * 1000);
+    }
+
+    @After
+    public void shutdown() {
+        upstreams.forEach(u -> u.server.stop(0));
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFastestRepositoryWithTheArchiveWins() throws Exception {
+        Map<String, Repo> repos = new HashMap<>();
+        repos.put("a-empty", start(0).repo());
+        repos.put("b-slow", start(1500).serve(METADATA, METADATA_CONTENT).repo());
+        repos.put("c-fast", start(200).serve(METADATA, METADATA_CONTENT).repo());
+
+        Map<String, Repo> ordered = router().order(repos, artifact, true, executor);
+
+        // The repository without the archive goes last
+        assertEquals(Arrays.asList("c-fast", "b-slow", "a-empty"),
+                new ArrayList<>(ordered.keySet()));
+        assertTrue(negativeCache.isMissing(repos.get("a-empty").getUrl(), COORDINATE));
+        assertFalse(negativeCache.isMissing(repos.get("c-fast").getUrl(), COORDINATE));
+        assertTrue(routesFile.exists());
+        assertEquals(0, routesFile.getParentFile()
+                .list((dir, name) -> name.endsWith(".tmp")).length);
+    }
+
+    @Test
+    public void testResponseWithWrongChecksumIsRejected() throws Exception {
+        Map<String, Repo> repos = new HashMap<>();
+        repos.put("a-corrupt", start(0).serve(METADATA, METADATA_CONTENT)
+                .serve(METADATA + ".sha1", ChecksumUtils.sha1("something else")).repo());
+        repos.put("b-valid", start(500).serve(METADATA, METADATA_CONTENT).repo());
+
+        Map<String, Repo> ordered = router().order(repos, artifact, true, executor);
+
+        assertEquals("b-valid", ordered.keySet().iterator().next());
+    }
+
+    @Test
+    public void testRouteIsReused() throws Exception {
+        Upstream empty = start(0);
+        Upstream serving = start(200).serve(METADATA, METADATA_CONTENT);
+        Map<String, Repo> repos = new HashMap<>();
+        repos.put("a-empty", empty.repo());
+        repos.put("b-serving", serving.repo());
+
+        assertEquals("b-serving",
+                router().order(repos, artifact, true, executor).keySet().iterator().next());
+        int requests = empty.requests.get() + serving.requests.get();
+
+        // A new router reads the route back from the file and doesn't race again
+        assertEquals("b-serving",
+                router().order(repos, artifact, true, executor).keySet().iterator().next());
+        assertEquals(requests, empty.requests.get() + serving.requests.get());
+    }
+
+    private RepositoryRouter router() {
+        return new RepositoryRouter(routesFile, negativeCache);
+    }
+
+    private Upstream start(long delay) throws IOException {
+        Upstream upstream = new Upstream(delay);
+        upstreams.add(upstream);
+        return upstream;
+    }
+
+    private static class Upstream {
+
+        private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final long delay;
+        private final HttpServer server;
+
+        Upstream(long delay) throws IOException {
+            this.delay = delay;
+            this.server = HttpServer.create(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        Upstream serve(String path, String content) {
+            files.put(path, content.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        Repo repo() {
+            Repo repo = new Repo();
+            repo.setUrl(String.format("http://%s:%s/", server.getAddress().getHostString(),
+                    server.getAddress().getPort()));
+            return repo;
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] content = files.get(exchange.getRequestURI().getPath().substring(1));
+            if (content == null) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            }
+            else {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(content);
+                }
+            }
+            exchange.close();
+        }
+    }
+}